@@ -1,16 +1,35 @@
 package org.malsati.xrest.controller;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.malsati.xrest.dto.FieldSet;
+import org.malsati.xrest.dto.ManyByIdsResponse;
+import org.malsati.xrest.dto.ResourceVersion;
 import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.aggregation.AggregateRequest;
+import org.malsati.xrest.dto.aggregation.AggregateResponse;
+import org.malsati.xrest.dto.errors.AppError;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.dto.pagination.KeysetPageRequest;
 import org.malsati.xrest.dto.pagination.PaginatedResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import org.malsati.xrest.service.CrudService;
 
@@ -42,6 +61,9 @@ public abstract class CrudController<T,
             DeleteOneOutputDto,
             GetOneOutputDto> crudService;
 
+    @Autowired
+    protected ObjectMapper objectMapper;
+
     public CrudController(
             CrudService<T,
                     TKeyType,
@@ -270,6 +292,11 @@ public abstract class CrudController<T,
     /**
      * This API allows for getting the entity by its id
      * @param id the id of the entity you request for
+     * @param fields the properties to return, e.g. fields=id,fullName,books.title (Optional). All of them if not specified.
+     * @param webRequest the If-None-Match and If-Modified-Since headers. When the entity has a {@code @Version} attribute,
+     *                   the response has an ETag (and a Last-Modified if the version is a timestamp),
+     *                   and a 304 without body is returned when the entity hasn't changed since: only its version is read.
+     *                   Without these headers, the ETag is derived from the version read with the entity: no version query is run.
      * @return a service response with GetOneOutputDto that you have defined initially. <br>
      *
      * sample request: /app/author/getOne/1 <br>
@@ -325,8 +352,73 @@ public abstract class CrudController<T,
      *
      */
     @GetMapping(CrudEndpoints.GET_ONE + "/{id}")
-    protected ResponseEntity<ServiceResponse<GetOneOutputDto>> getOneById(@PathVariable TKeyType id) {
-        var res = this.crudService.getOneById(id);
+    protected ResponseEntity<ServiceResponse<?>> getOneById(
+            @PathVariable TKeyType id,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest
+    ) {
+        FieldSet fieldSet;
+        try {
+            fieldSet = FieldSet.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return badFields(e);
+        }
+        if (isConditional(webRequest)) {
+            if (isNotModified(webRequest, this.crudService.getOneVersionById(id, fieldSet))) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+            var res = this.crudService.getOneById(id, fieldSet);
+            if (res.isSuccess()) {
+                return new ResponseEntity<>(selectFields(res, fieldSet), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+        }
+        var resWithVersion = this.crudService.getOneByIdWithVersion(id, fieldSet);
+        var res = resWithVersion.first();
+        if (res.isSuccess()) {
+            return new ResponseEntity<>(selectFields(res, fieldSet), validatorHeaders(resWithVersion.second()), HttpStatus.OK);
+        }
+        return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * This API allows for getting many entities at once by their Ids
+     * @param ids the ids of the entities
+     * @return a service response with the entities found, in the order of the requested ids, and the ids not found
+     *
+     * example request:
+     * <pre>
+     * [2, 42, 1]
+     * </pre>
+     *
+     * example response:
+     * <pre>
+     * {
+     *   "data": {
+     *     "data": [
+     *       {
+     *         "id": 2,
+     *         "fullName": "Stephen King",
+     *         ...
+     *       },
+     *       {
+     *         "id": 1,
+     *         "fullName": "J.K. Rowling",
+     *         ...
+     *       }
+     *     ],
+     *     "notFoundIds": [42]
+     *   },
+     *   "isSuccess": true,
+     *   "errors": null
+     * }
+     * </pre>
+     *
+     * note: if the entity is soft delete, the soft deleted entities are reported as not found.
+     */
+    @GetMapping(CrudEndpoints.GET_MANY_BY_IDS)
+    protected ResponseEntity<ServiceResponse<ManyByIdsResponse<GetOneOutputDto, TKeyType>>> getManyByIds(@RequestBody(required = false) List<TKeyType> ids) {
+        var res = this.crudService.getManyByIds(ids);
         if (res.isSuccess()) {
             return new ResponseEntity<>(res, HttpStatus.OK);
         }
@@ -335,6 +427,7 @@ public abstract class CrudController<T,
 
     /**
      * This API allows for getting an entity by a JSON where condition
+     * @param fields the properties to return, e.g. fields=id,title (Optional). All of them if not specified.
      * @param condition The where condition in JSON notation (Optional)
      * @return a service response with the details of an entity that is defined in the output dto
      *
@@ -373,12 +466,19 @@ public abstract class CrudController<T,
      * note: if the entity is soft delete, only an entity that is not soft deleted is returned.
      */
     @GetMapping(CrudEndpoints.GET_ONE)
-    protected ResponseEntity<ServiceResponse<GetOneOutputDto>> getOneWhere(
+    protected ResponseEntity<ServiceResponse<?>> getOneWhere(
+            @RequestParam(required = false) String fields,
             @RequestBody(required = false) String condition
     ) {
-        var res = this.crudService.getOne(condition);
+        FieldSet fieldSet;
+        try {
+            fieldSet = FieldSet.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return badFields(e);
+        }
+        var res = this.crudService.getOne(condition, fieldSet);
         if (res.isSuccess()) {
-            return new ResponseEntity<>(res, HttpStatus.OK);
+            return new ResponseEntity<>(selectFields(res, fieldSet), HttpStatus.OK);
         }
         return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
     }
@@ -390,7 +490,18 @@ public abstract class CrudController<T,
      * @param pageSize defaults to 20 if not specified
      * @param sortBy defaults to id if not specified.
      * @param sortDir ASC or DESC. Defaults to ASC if not specified.
+     * @param paginationMode offset (default) or keyset.
+     *                       In keyset mode pageNo is ignored: the next page is requested by passing the nextCursor of the previous page.
+     * @param cursor keyset mode only: the nextCursor returned by the previous page. Not specified for the first page.
+     * @param withTotal offset mode only: true to compute totalPages and totalItems (an extra count query),
+     *                  false to return only hasNext (slice mode). Defaults to the service setting if not specified.
+     * @param fields the properties of the entities to return, e.g. fields=id,title (Optional). All of them if not specified.
+     *               When they are all columns of the entity, only these columns are selected and no relation is read.
+     *               A dotted path (authors.fullName) selects the properties of a nested DTO.
      * @param condition JSON where condition
+     * @param webRequest offset mode only: the If-None-Match header. When the entity has a {@code @Version} attribute, the response has an ETag
+     *                   hashed from the ids and the versions of the page, and a 304 without body is returned when the page hasn't changed since:
+     *                   only the ids and the versions are read. Without the header, the ETag is hashed from the rows read for the page.
      * @return service response with Paginated response of the output dto you have defined initially.<br>
      *
      * example request:
@@ -483,22 +594,111 @@ public abstract class CrudController<T,
      * note: if the entity is soft delete, only entities that are not soft deleted are returned.
      */
     @GetMapping(CrudEndpoints.GET_MANY)
-    protected ResponseEntity<ServiceResponse<PaginatedResponse<GetOneOutputDto>>> getMany(
+    protected ResponseEntity<ServiceResponse<?>> getMany(
             @RequestParam(defaultValue = "1") Integer pageNo,
             @RequestParam(defaultValue = "20") Integer pageSize,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "ASC") String sortDir,
-            @RequestBody(required = false) String condition
+            @RequestParam(defaultValue = "offset") String paginationMode,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Boolean withTotal,
+            @RequestParam(required = false) String fields,
+            @RequestBody(required = false) String condition,
+            WebRequest webRequest
     ) {
+        FieldSet fieldSet;
+        try {
+            fieldSet = FieldSet.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return badFields(e);
+        }
+        if (paginationMode.equalsIgnoreCase("keyset")) {
+            var direction = sortDir.equalsIgnoreCase("ASC") ? Sort.Direction.ASC : Sort.Direction.DESC;
+            var res = this.crudService.getManyByKeyset(condition, new KeysetPageRequest(pageSize, sortBy, direction, cursor));
+            if (res.isSuccess()) {
+                return new ResponseEntity<>(selectPageFields(res, fieldSet), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+        }
         var sort = Sort.by(sortBy);
         Pageable pageRequest = PageRequest.of(pageNo - 1, pageSize, sortDir.equalsIgnoreCase("ASC") ? sort.ascending() : sort.descending());
-        var res = this.crudService.getMany(condition, pageRequest);
+        if (isConditional(webRequest)) {
+            if (isNotModified(webRequest, this.crudService.getManyVersion(condition, pageRequest, withTotal, fieldSet))) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+            var res = this.crudService.getMany(condition, pageRequest, withTotal, fieldSet);
+            if (res.isSuccess()) {
+                return new ResponseEntity<>(selectPageFields(res, fieldSet), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+        }
+        var resWithVersion = this.crudService.getManyWithVersion(condition, pageRequest, withTotal, fieldSet);
+        var res = resWithVersion.first();
         if (res.isSuccess()) {
-            return new ResponseEntity<>(res, HttpStatus.OK);
+            return new ResponseEntity<>(selectPageFields(res, fieldSet), validatorHeaders(resWithVersion.second()), HttpStatus.OK);
+        }
+        return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+    }
+
+    /*
+     * true if the request has validators to check: only then the version is read before the entities.
+     */
+    private static boolean isConditional(WebRequest webRequest) {
+        return webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null || webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /*
+     * The ETag and Last-Modified headers of a response read without conditional headers.
+     */
+    private static HttpHeaders validatorHeaders(ResourceVersion version) {
+        var headers = new HttpHeaders();
+        if (version != null) {
+            headers.setETag(version.etag());
+            if (version.lastModified() != null) {
+                headers.setLastModified(version.lastModified());
+            }
+        }
+        return headers;
+    }
+
+    /*
+     * Sets the ETag and Last-Modified headers of the response, and checks them against the conditional headers of the request.
+     */
+    private static boolean isNotModified(WebRequest webRequest, ResourceVersion version) {
+        if (version == null) {
+            return false;
         }
+        long lastModified = version.lastModified() != null ? version.lastModified().toEpochMilli() : -1;
+        return webRequest.checkNotModified(version.etag(), lastModified);
+    }
+
+    private ResponseEntity<ServiceResponse<?>> badFields(IllegalArgumentException e) {
+        var res = new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.InvalidInput, "bad fields.", e.getMessage()));
         return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
     }
 
+    /*
+     * Serializes the requested properties only: the DTO is turned into a JSON tree and trimmed.
+     */
+    private ServiceResponse<?> selectFields(ServiceResponse<GetOneOutputDto> res, FieldSet fieldSet) {
+        if (fieldSet.isAll()) {
+            return res;
+        }
+        return new ServiceResponse<>(fieldSet.select(objectMapper.valueToTree(res.data())));
+    }
+
+    private ServiceResponse<?> selectPageFields(ServiceResponse<PaginatedResponse<GetOneOutputDto>> res, FieldSet fieldSet) {
+        if (fieldSet.isAll()) {
+            return res;
+        }
+        var page = res.data();
+        var data = new ArrayList<JsonNode>(page.data().size());
+        for (var dto : page.data()) {
+            data.add(fieldSet.select(objectMapper.valueToTree(dto)));
+        }
+        return new ServiceResponse<>(new PaginatedResponse<>(page.currentPage(), page.pageSize(), page.totalPages(), page.totalItems(), data, page.hasNext(), page.nextCursor()));
+    }
+
     /**
      * This API allows for requesting for the count of entities that satisfies a JSON where condition.
      * @param condition JSON where condition (optional). If not specified, all entities count is returned.
@@ -540,6 +740,151 @@ public abstract class CrudController<T,
         return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * This API counts the entities of several named JSON where conditions with one query:
+     * the entities are scanned once, whatever the number of conditions.
+     * @param conditions the JSON where conditions by name. An empty condition ({}) counts all the entities.
+     *
+     * example request:
+     *
+     * <pre>
+     * GET /app/book/countMany
+     * {
+     *     "bloomsbury": { "op": "=", "lhs": "press", "rhs": "Bloomsbury Publishing" },
+     *     "long": { "op": "&gt;", "lhs": "noPages", "rhs": 500 },
+     *     "all": {}
+     * }
+     * </pre>
+     *
+     * Example JSON response:
+     * <pre>
+     * {
+     *     "data": {
+     *         "bloomsbury": 2,
+     *         "long": 4,
+     *         "all": 10
+     *     },
+     *     "isSuccess": true,
+     *     "errors": null
+     * }
+     * </pre>
+     *
+     * note: if the entity is soft delete, only entities that are not soft deleted are counted.
+     */
+    @GetMapping(CrudEndpoints.COUNT_MANY)
+    protected ResponseEntity<ServiceResponse<Map<String, Long>>> countMany(
+            @RequestBody(required = false) Map<String, JsonNode> conditions
+    ) {
+        Map<String, String> conditionsAsText = null;
+        if (conditions != null) {
+            conditionsAsText = new LinkedHashMap<>();
+            for (var condition : conditions.entrySet()) {
+                JsonNode value = condition.getValue();
+                conditionsAsText.put(condition.getKey(), value == null || value.isNull() ? null : value.isTextual() ? value.asText() : value.toString());
+            }
+        }
+        var res = this.crudService.countMany(conditionsAsText);
+        if (res.isSuccess()) {
+            return new ResponseEntity<>(res, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * This API groups the entities that satisfy a JSON where condition and computes aggregates per group,
+     * with one GROUP BY query: the entities aren't loaded.
+     * @param request the condition (optional), the group by paths and the aggregate functions:
+     *                count, count(path), sum(path), avg(path), min(path) or max(path)
+     *
+     * example request:
+     *
+     * <pre>
+     * GET /app/book/aggregate
+     * {
+     *     "condition": { "op": "&gt;", "lhs": "noPages", "rhs": 300 },
+     *     "groupBy": ["press"],
+     *     "aggregates": ["count", "sum(noPages)"]
+     * }
+     * </pre>
+     *
+     * Example JSON response:
+     * <pre>
+     * {
+     *     "data": {
+     *         "columns": ["press", "count", "sum(noPages)"],
+     *         "rows": [
+     *             ["Bantam Spectra", 2, 1462],
+     *             ["Doubleday", 1, 447]
+     *         ]
+     *     },
+     *     "isSuccess": true,
+     *     "errors": null
+     * }
+     * </pre>
+     *
+     * note: if the entity is soft delete, only entities that are not soft deleted are aggregated.
+     */
+    @GetMapping(CrudEndpoints.AGGREGATE)
+    protected ResponseEntity<ServiceResponse<AggregateResponse>> aggregate(
+            @RequestBody AggregateRequest request
+    ) {
+        var res = this.crudService.aggregate(request.conditionAsText(), request.groupBy(), request.aggregates());
+        if (res.isSuccess()) {
+            return new ResponseEntity<>(res, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * This API streams all the entities that satisfy a JSON where condition, without pagination.
+     * The condition is executed once and every row is written to the response as soon as it's mapped,
+     * so the memory used doesn't depend on the number of rows.
+     * @param sortBy the sort attribute
+     * @param sortDir ASC or DESC
+     * @param format ndjson (default): one JSON document per line, or json: one JSON array
+     * @param condition JSON where condition (optional). If not specified, all entities are exported.
+     *
+     * example request:
+     *
+     * <pre>
+     * GET /app/book/exportMany?sortBy=publishDate
+     * {
+     *     "op": "=",
+     *     "lhs": "press",
+     *     "rhs": "Bloomsbury Publishing"
+     * }
+     * </pre>
+     *
+     * example response (application/x-ndjson):
+     *
+     * <pre>
+     * {"id":1,"title":"Harry Potter and the Philosopher's Stone","publishDate":"1997-06-26",...}
+     * {"id":2,"title":"Harry Potter and the Chamber of Secrets","publishDate":"1998-07-02",...}
+     * </pre>
+     *
+     * If the condition is rejected, the response is the usual service response with the errors and a 400 status code.<br>
+     * note: if the entity is soft delete, only entities that are not soft deleted are exported.
+     */
+    @GetMapping(CrudEndpoints.EXPORT_MANY)
+    protected void exportMany(
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "ASC") String sortDir,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestBody(required = false) String condition,
+            HttpServletResponse response
+    ) throws IOException {
+        var sort = Sort.by(sortBy);
+        var rowsWriter = new JsonRowsWriter(response, objectMapper, format.equalsIgnoreCase("json"));
+        var res = this.crudService.exportMany(condition, sortDir.equalsIgnoreCase("ASC") ? sort.ascending() : sort.descending(), rowsWriter);
+        if (res.isSuccess()) {
+            rowsWriter.finish();
+            return;
+        }
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), res);
+    }
+
     /**
      * This API deletes an entity by its Id (soft or hard)
      * @param id The id of the entity to delete
@@ -13,11 +13,31 @@ public final class CrudEndpoints {
      */
     public static final String GET_MANY = "/getMany";
 
+    /**
+     * Will allow you to retrieve many entities at once based on a list of Ids
+     */
+    public static final String GET_MANY_BY_IDS = "/getManyByIds";
+
     /**
      * Will allow you to retrieve the count of entities that satisfy a JSON condition
      */
     public static final String COUNT = "/count";
 
+    /**
+     * Will allow you to retrieve the counts of several named JSON conditions with one query
+     */
+    public static final String COUNT_MANY = "/countMany";
+
+    /**
+     * Will allow you to group the entities that satisfy a JSON condition and compute aggregates per group
+     */
+    public static final String AGGREGATE = "/aggregate";
+
+    /**
+     * Will allow you to stream all the entities that satisfy a JSON condition as NDJSON or as a JSON array
+     */
+    public static final String EXPORT_MANY = "/exportMany";
+
     /**
      * Will allow you to create one entity based on the CreateOneDto passed
      */
@@ -0,0 +1,69 @@
+package org.malsati.xrest.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes rows to the HTTP response as they come, either one JSON document per line (NDJSON) or as one JSON array.<br>
+ * The response is only started by the first row (or by {@link #finish()}), so it can still report an error until then.
+ */
+final class JsonRowsWriter implements Consumer<Object> {
+    private final HttpServletResponse response;
+    private final ObjectMapper objectMapper;
+    private final boolean isJsonArray;
+    private JsonGenerator generator;
+
+    JsonRowsWriter(HttpServletResponse response, ObjectMapper objectMapper, boolean isJsonArray) {
+        this.response = response;
+        this.objectMapper = objectMapper;
+        this.isJsonArray = isJsonArray;
+    }
+
+    @Override
+    public void accept(Object row) {
+        try {
+            if (generator == null) {
+                start();
+            }
+            generator.writeObject(row);
+            if (!isJsonArray) {
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the array and flushes the response.
+     */
+    void finish() throws IOException {
+        if (generator == null) {
+            start();
+        }
+        if (isJsonArray) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    private void start() throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(isJsonArray ? MediaType.APPLICATION_JSON_VALUE : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        // NDJSON separates the documents by new lines, not by the default space
+        generator.setRootValueSeparator(null);
+        if (isJsonArray) {
+            generator.writeStartArray();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.malsati.xrest.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The properties of the output DTOs requested by a client (sparse fieldset), e.g. {@code fields=id,title,authors.fullName}.<br>
+ * A dotted path selects the properties of a nested DTO, or of the elements of a nested collection.
+ * A property requested without a dotted path is kept whole.
+ * <pre>{@code
+ * FieldSet.parse("id,title,authors.fullName").select(bookAsJson)
+ * // {"id": 1, "title": "Harry Potter and the Philosopher's Stone", "authors": [{"fullName": "J.K. Rowling"}]}
+ * }</pre>
+ */
+public final class FieldSet {
+    /**
+     * all the properties: the DTOs are returned whole.
+     */
+    public static final FieldSet ALL = new FieldSet(Collections.emptyMap());
+
+    private static final Pattern fieldPattern = Pattern.compile("^\\w+(\\.\\w+)*$");
+
+    // property -> the properties kept from its value (ALL when it's kept whole)
+    private final Map<String, FieldSet> properties;
+
+    private FieldSet(Map<String, FieldSet> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param fields comma separated property paths. null or blank means all the properties.
+     * @throws IllegalArgumentException if a path isn't made of property names separated by dots
+     */
+    public static FieldSet parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        var fieldSet = new FieldSet(new LinkedHashMap<>());
+        for (String field : fields.split(",")) {
+            String path = field.trim();
+            if (!fieldPattern.matcher(path).matches()) {
+                throw new IllegalArgumentException("invalid field: '%s'".formatted(field));
+            }
+            fieldSet.add(path.split("\\."), 0);
+        }
+        return fieldSet;
+    }
+
+    private void add(String[] path, int index) {
+        boolean isLast = index == path.length - 1;
+        FieldSet nested = properties.get(path[index]);
+        if (isLast) {
+            // the whole property wins over its nested properties
+            properties.put(path[index], ALL);
+            return;
+        }
+        if (nested == null) {
+            nested = new FieldSet(new LinkedHashMap<>());
+            properties.put(path[index], nested);
+        }
+        // a nested set still empty isn't ALL: only ALL means the property is kept whole
+        if (nested != ALL) {
+            nested.add(path, index + 1);
+        }
+    }
+
+    public boolean isAll() {
+        return properties.isEmpty();
+    }
+
+    /**
+     * @return the requested properties of the DTO itself (the first name of every path)
+     */
+    public Set<String> getProperties() {
+        return Collections.unmodifiableSet(properties.keySet());
+    }
+
+    /**
+     * @param node a DTO, or an array of DTOs, as JSON
+     * @return a copy of the node with the requested properties only. The properties missing from the node are skipped.
+     */
+    public JsonNode select(JsonNode node) {
+        if (isAll() || node == null) {
+            return node;
+        }
+        if (node.isArray()) {
+            ArrayNode selected = JsonNodeFactory.instance.arrayNode(node.size());
+            for (JsonNode element : node) {
+                selected.add(select(element));
+            }
+            return selected;
+        }
+        if (!node.isObject()) {
+            return node;
+        }
+        ObjectNode selected = JsonNodeFactory.instance.objectNode();
+        for (var property : properties.entrySet()) {
+            JsonNode value = node.get(property.getKey());
+            if (value != null) {
+                selected.set(property.getKey(), property.getValue().select(value));
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return isAll() ? "*" : properties.toString();
+    }
+}
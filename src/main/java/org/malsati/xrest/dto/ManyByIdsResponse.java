@@ -0,0 +1,14 @@
+package org.malsati.xrest.dto;
+
+import java.util.List;
+
+/**
+ * The response of getManyByIds.
+ *
+ * @param data the entities found, in the order of the requested ids (a repeated id is returned once)
+ * @param notFoundIds the requested ids that don't match any entity (or only a soft deleted one), in the order of the request
+ * @param <D> the output dto
+ * @param <K> the type of the entity key
+ */
+public record ManyByIdsResponse<D, K>(List<D> data, List<K> notFoundIds) {
+}
@@ -0,0 +1,68 @@
+package org.malsati.xrest.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * The validators of a read response, for HTTP conditional requests (If-None-Match, If-Modified-Since).<br>
+ * They are computed from the id and the {@code @Version} attribute of the entities, without reading nor mapping the entities,
+ * so a client polling unchanged data gets a 304 for the price of a version query.
+ * <pre>
+ * ETag: "5d41402abc4b2a76b9719d911017c592"
+ * Last-Modified: Tue, 15 Oct 2024 08:12:31 GMT
+ * </pre>
+ *
+ * @param etag a strong entity tag, quoted
+ * @param lastModified the last modification time. null when the version isn't a timestamp.
+ */
+public record ResourceVersion(String etag, Instant lastModified) {
+    /**
+     * @param parts what identifies the representation: entity, ids, versions, requested fields, page...
+     * @param lastModified the last modification time, null if unknown
+     */
+    public static ResourceVersion of(List<?> parts, Instant lastModified) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (Object part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return new ResourceVersion("\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"", lastModified);
+    }
+
+    /**
+     * @param version the value of a version attribute
+     * @return the version as an instant if it's a timestamp, null if it's a counter
+     */
+    public static Instant toInstant(Object version) {
+        if (version instanceof Instant instant) {
+            return instant;
+        }
+        if (version instanceof LocalDateTime localDateTime) {
+            return localDateTime.atZone(ZoneId.systemDefault()).toInstant();
+        }
+        if (version instanceof OffsetDateTime offsetDateTime) {
+            return offsetDateTime.toInstant();
+        }
+        if (version instanceof ZonedDateTime zonedDateTime) {
+            return zonedDateTime.toInstant();
+        }
+        if (version instanceof Date date) {
+            return date.toInstant();
+        }
+        return null;
+    }
+}
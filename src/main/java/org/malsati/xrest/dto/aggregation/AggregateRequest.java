@@ -0,0 +1,31 @@
+package org.malsati.xrest.dto.aggregation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * The body of the aggregate API.
+ * <pre>
+ * {
+ *     "condition": { "op": "&gt;", "lhs": "noPages", "rhs": 300 },
+ *     "groupBy": ["press"],
+ *     "aggregates": ["count", "sum(noPages)", "max(publishDate)"]
+ * }
+ * </pre>
+ *
+ * @param condition JSON where condition (optional)
+ * @param groupBy the attribute paths to group by (optional)
+ * @param aggregates the aggregate functions: count, count(path), sum(path), avg(path), min(path), max(path)
+ */
+public record AggregateRequest(JsonNode condition, List<String> groupBy, List<String> aggregates) {
+    /**
+     * @return the condition as JSON text, or null
+     */
+    public String conditionAsText() {
+        if (condition == null || condition.isNull()) {
+            return null;
+        }
+        return condition.isTextual() ? condition.asText() : condition.toString();
+    }
+}
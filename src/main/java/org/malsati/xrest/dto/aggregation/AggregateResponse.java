@@ -0,0 +1,21 @@
+package org.malsati.xrest.dto.aggregation;
+
+import java.util.List;
+
+/**
+ * The rows of an aggregation: one row per group, with the values in the order of the columns.
+ * <pre>
+ * {
+ *     "columns": ["press", "count", "sum(noPages)"],
+ *     "rows": [
+ *         ["Bantam Spectra", 2, 1462],
+ *         ["Bloomsbury Publishing", 2, 474]
+ *     ]
+ * }
+ * </pre>
+ *
+ * @param columns the group by paths, then the aggregates, as requested
+ * @param rows the groups, sorted by the group by values
+ */
+public record AggregateResponse(List<String> columns, List<List<Object>> rows) {
+}
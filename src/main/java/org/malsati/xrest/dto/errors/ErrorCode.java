@@ -7,4 +7,6 @@ public final class ErrorCode {
     public static final String InternalSystemError = "5005";
     public static final String AlreadyDeleted = "5006";
     public static final String AlreadyFound = "5007";
+    public static final String ConditionTooComplex = "5008";
+    public static final String UnindexedFilter = "5009";
 }
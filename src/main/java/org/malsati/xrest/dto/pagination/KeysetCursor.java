@@ -0,0 +1,47 @@
+package org.malsati.xrest.dto.pagination;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of the last row of a keyset page. It is handed to clients as an opaque token (see {@link #encode()}).<br>
+ * The token carries the sort attribute and direction, so a cursor can't be replayed against another sort.
+ *
+ * @param sortBy the sort attribute path
+ * @param direction ASC or DESC
+ * @param sortValue the textual value of the sort attribute of the last row
+ * @param id the textual value of the id of the last row (the tie-breaker)
+ */
+public record KeysetCursor(String sortBy, String direction, String sortValue, String id) {
+    private static final ObjectMapper jsonParser = new ObjectMapper();
+
+    public String encode() {
+        try {
+            byte[] json = jsonParser.writeValueAsBytes(this);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param token a token produced by {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token.getBytes(StandardCharsets.US_ASCII));
+            var cursor = jsonParser.readValue(json, KeysetCursor.class);
+            if (cursor.sortBy() == null || cursor.direction() == null || cursor.id() == null) {
+                throw new IllegalArgumentException("incomplete cursor");
+            }
+            return cursor;
+        } catch (java.io.IOException e) {
+            throw new IllegalArgumentException("malformed cursor", e);
+        }
+    }
+}
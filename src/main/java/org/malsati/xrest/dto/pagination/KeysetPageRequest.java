@@ -0,0 +1,14 @@
+package org.malsati.xrest.dto.pagination;
+
+import org.springframework.data.domain.Sort;
+
+/**
+ * A request for one page in keyset (seek) pagination mode.
+ *
+ * @param pageSize the number of rows per page
+ * @param sortBy the sort attribute (the entity id is always added as a tie-breaker)
+ * @param direction the sort direction
+ * @param cursor the token returned as nextCursor by the previous page. null for the first page.
+ */
+public record KeysetPageRequest(int pageSize, String sortBy, Sort.Direction direction, String cursor) {
+}
@@ -1,5 +1,7 @@
 package org.malsati.xrest.dto.pagination;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 /**
@@ -34,17 +36,25 @@ import java.util.List;
  * }
  * </pre>
  *
- * @param currentPage
+ * In keyset (seek) pagination mode, there is no page number nor totals. The response carries instead
+ * hasNext and nextCursor: an opaque token to pass back to get the next page.
+ *
+ * @param currentPage the page number (1-based). null in keyset mode.
  * @param pageSize
- * @param totalPages
- * @param totalItems
+ * @param totalPages null when totals are not computed
+ * @param totalItems null when totals are not computed
  * @param data
+ * @param hasNext true if there are more rows after this page
+ * @param nextCursor keyset mode only: the token of the next page, null on the last page.
  * @param <T>
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record PaginatedResponse<T> (
-        int currentPage,        // First page index is 0
+        Integer currentPage,
         int pageSize,
-        long totalPages,
-        long totalItems,
-        List<T> data
+        Long totalPages,
+        Long totalItems,
+        List<T> data,
+        Boolean hasNext,
+        String nextCursor
 ) {}
\ No newline at end of file
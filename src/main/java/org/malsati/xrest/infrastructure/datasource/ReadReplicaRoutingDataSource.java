@@ -0,0 +1,83 @@
+package org.malsati.xrest.infrastructure.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends the connections of read-only transactions to a replica, and everything else to the primary.<br>
+ * The reads of {@link org.malsati.xrest.service.CrudServiceORM} (getOne, getOneById, getManyByIds, getMany, getManyByKeyset,
+ * exportMany, count) run in read-only transactions; the writes don't. Declare the result of {@link #of(DataSource, DataSource)}
+ * as the DataSource of the application:
+ * <pre>{@code
+ * @Bean
+ * @Primary
+ * public DataSource dataSource(DataSource primaryPool, DataSource replicaPool) {
+ *     return ReadReplicaRoutingDataSource.of(primaryPool, replicaPool);
+ * }
+ * }</pre>
+ * A read that has to see the writes just committed (the replica may lag) is sent to the primary with {@link #onPrimary(Supplier)}:
+ * <pre>{@code
+ * var book = ReadReplicaRoutingDataSource.onPrimary(() -> bookService.getOneById(id));
+ * }</pre>
+ * A transaction keeps the connection it started with: a read joining a read-write transaction runs on the primary.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private static final ThreadLocal<Route> forcedRoute = new ThreadLocal<>();
+
+    /**
+     * @param primary the pool of the primary database
+     * @param replica the pool of the replica(s)
+     * @return the routing data source, behind a lazy proxy: the connection is only taken at the first statement,
+     * once the transaction is known to be read-only or not.
+     */
+    public static DataSource of(DataSource primary, DataSource replica) {
+        var routingDataSource = new ReadReplicaRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Runs the operation, and the transactions it starts, on the primary.
+     */
+    public static <R> R onPrimary(Supplier<R> operation) {
+        return on(Route.PRIMARY, operation);
+    }
+
+    /**
+     * Runs the operation, and the transactions it starts, on the given route whether they are read-only or not.
+     */
+    public static <R> R on(Route route, Supplier<R> operation) {
+        Route previous = forcedRoute.get();
+        forcedRoute.set(route);
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                forcedRoute.remove();
+            } else {
+                forcedRoute.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Route route = forcedRoute.get();
+        if (route != null) {
+            return route;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
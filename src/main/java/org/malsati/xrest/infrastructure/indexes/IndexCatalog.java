@@ -0,0 +1,210 @@
+package org.malsati.xrest.infrastructure.indexes;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Index;
+import jakarta.persistence.PersistenceUnit;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.mapping.ModelPart;
+import org.hibernate.metamodel.mapping.ModelPartContainer;
+import org.hibernate.metamodel.mapping.SelectableMapping;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows which attributes of an entity lead an index, so a filter or a sort on them can seek instead of scanning the table.<br>
+ * The indexes of the entities are collected once, at startup, from:
+ * <ul>
+ *     <li>the id and the unique columns ({@code @Column(unique = true)}, {@code @Table(uniqueConstraints = ...)})</li>
+ *     <li>the indexes declared by {@code @Table(indexes = ...)}</li>
+ *     <li>the indexes of the database, read over JDBC when xrest.indexes.database-metadata is true</li>
+ * </ul>
+ * Only the leading column of an index counts: an index on (title, press) serves a filter on title, not a filter on press alone.
+ */
+@Component
+public class IndexCatalog implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(IndexCatalog.class);
+
+    /*
+     * The mapping of an entity and the leading columns of its indexes (lower case, unquoted).
+     */
+    private record EntityIndexes(EntityPersister persister, Set<String> leadingColumns) {
+    }
+
+    private final ConcurrentHashMap<Class<?>, EntityIndexes> entityIndexes = new ConcurrentHashMap<>();
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @Value("${xrest.indexes.database-metadata:false}")
+    private boolean isDatabaseMetadataRead = false;
+
+    /**
+     * Reads the indexes of every entity before the first request, so checking a request never opens a connection of its own.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            if (entity.getJavaType() != null) {
+                entityIndexes.computeIfAbsent(entity.getJavaType(), this::collectIndexes);
+            }
+        }
+    }
+
+    /**
+     * @param entityType the root entity of the path
+     * @param dottedPath an attribute path as written in a condition or a sort, for example authors.fullName
+     * @return true if the last attribute of the path is an id or the leading column of an index of the entity owning it.
+     * @throws IllegalArgumentException if an attribute of the path doesn't exist
+     */
+    public boolean isIndexed(Class<?> entityType, String dottedPath) {
+        String[] attributes = dottedPath.split("\\.");
+        ManagedType<?> current = entityManagerFactory.getMetamodel().managedType(entityType);
+        Class<?> ownerEntity = entityType;
+        int ownerPathStart = 0;
+        for (int i = 0; i < attributes.length; i++) {
+            Attribute<?, ?> attribute = current.getAttribute(attributes[i]);
+            if (i == attributes.length - 1) {
+                if (attribute instanceof SingularAttribute<?, ?> singularAttribute && singularAttribute.isId()) {
+                    return true;
+                }
+                break;
+            }
+            Type<?> type = attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute
+                    ? pluralAttribute.getElementType()
+                    : ((SingularAttribute<?, ?>) attribute).getType();
+            if (!(type instanceof ManagedType<?> managedType)) {
+                throw new IllegalArgumentException("invalid path %s: %s is not a relation nor an embeddable".formatted(dottedPath, attributes[i]));
+            }
+            current = managedType;
+            // the columns of an embeddable belong to the table of the entity embedding it
+            if (managedType instanceof EntityType<?>) {
+                ownerEntity = managedType.getJavaType();
+                ownerPathStart = i + 1;
+            }
+        }
+        EntityIndexes indexes = entityIndexes.computeIfAbsent(ownerEntity, this::collectIndexes);
+        String column = columnOf(indexes.persister(), Arrays.copyOfRange(attributes, ownerPathStart, attributes.length));
+        return column != null && indexes.leadingColumns().contains(column);
+    }
+
+    private EntityIndexes collectIndexes(Class<?> entityType) {
+        EntityPersister persister = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityType);
+        var leadingColumns = new HashSet<String>();
+        for (Class<?> type = entityType; type != null && type != Object.class; type = type.getSuperclass()) {
+            Table table = type.getAnnotation(Table.class);
+            if (table != null) {
+                for (Index index : table.indexes()) {
+                    leadingColumns.add(normalize(index.columnList().split(",")[0]));
+                }
+                for (UniqueConstraint uniqueConstraint : table.uniqueConstraints()) {
+                    if (uniqueConstraint.columnNames().length > 0) {
+                        leadingColumns.add(normalize(uniqueConstraint.columnNames()[0]));
+                    }
+                }
+            }
+            for (Field field : type.getDeclaredFields()) {
+                Column column = field.getAnnotation(Column.class);
+                if (column != null && column.unique()) {
+                    String columnName = columnOf(persister, new String[]{field.getName()});
+                    if (columnName != null) {
+                        leadingColumns.add(columnName);
+                    }
+                }
+            }
+        }
+        if (isDatabaseMetadataRead && dataSource != null) {
+            readDatabaseIndexes(persister.getMappedTableDetails().getTableName(), leadingColumns);
+        }
+        return new EntityIndexes(persister, Set.copyOf(leadingColumns));
+    }
+
+    private void readDatabaseIndexes(String qualifiedTableName, Set<String> leadingColumns) {
+        int schemaEnd = qualifiedTableName.lastIndexOf('.');
+        String schema = schemaEnd > 0 ? unquote(qualifiedTableName.substring(0, schemaEnd)) : null;
+        String tableName = unquote(qualifiedTableName.substring(schemaEnd + 1));
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // the case of the stored names depends on the database
+            for (String name : List.of(tableName, tableName.toUpperCase(), tableName.toLowerCase())) {
+                boolean isTableFound = false;
+                try (ResultSet indexInfo = metaData.getIndexInfo(connection.getCatalog(), schema, name, false, true)) {
+                    while (indexInfo.next()) {
+                        isTableFound = true;
+                        String columnName = indexInfo.getString("COLUMN_NAME");
+                        if (indexInfo.getShort("ORDINAL_POSITION") == 1 && columnName != null) {
+                            leadingColumns.add(normalize(columnName));
+                        }
+                    }
+                }
+                if (isTableFound) {
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("unable to read the indexes of the table {}", qualifiedTableName, e);
+        }
+    }
+
+    /*
+     * the column of a basic attribute, null for a relation or an embeddable (they span zero or several columns).
+     */
+    private static String columnOf(EntityPersister persister, String[] attributes) {
+        Object part = persister;
+        for (String attribute : attributes) {
+            if (!(part instanceof ModelPartContainer container)) {
+                return null;
+            }
+            ModelPart subPart = container.findSubPart(attribute, null);
+            if (subPart == null) {
+                return null;
+            }
+            part = subPart;
+        }
+        return part instanceof SelectableMapping selectable ? normalize(selectable.getSelectionExpression()) : null;
+    }
+
+    // "Title DESC" and "`title`" are the column title
+    private static String normalize(String column) {
+        String name = column.trim().split("\\s+")[0];
+        return unquote(name).toLowerCase();
+    }
+
+    private static String unquote(String name) {
+        if (name.length() > 1 && "\"`[".indexOf(name.charAt(0)) >= 0) {
+            return name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,37 @@
+package org.malsati.xrest.infrastructure.indexes;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the filters and sorts that can't use an index, grouped by shape.<br>
+ * A shape is the entity and the offending attributes with their operators, the values are left out, for example:
+ * <pre>{@code
+ * Book: noPages >, press =, sort publishDate
+ * }</pre>
+ */
+@Component
+public class UnindexedFilterReport {
+    private final ConcurrentHashMap<String, LongAdder> occurrences = new ConcurrentHashMap<>();
+
+    public void record(String shape) {
+        occurrences.computeIfAbsent(shape, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return the number of times each shape has been seen, sorted by shape.
+     */
+    public Map<String, Long> getOccurrences() {
+        var snapshot = new TreeMap<String, Long>();
+        occurrences.forEach((shape, count) -> snapshot.put(shape, count.sum()));
+        return snapshot;
+    }
+
+    public void clear() {
+        occurrences.clear();
+    }
+}
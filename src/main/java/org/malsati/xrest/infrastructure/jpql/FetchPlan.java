@@ -0,0 +1,32 @@
+package org.malsati.xrest.infrastructure.jpql;
+
+import java.util.List;
+
+/**
+ * The relations to load with the entities of a read, before they are mapped to DTOs (see {@link FetchPlanLoader}):
+ * either attribute paths, or the name of an entity graph declared by {@code @NamedEntityGraph}.
+ *
+ * example: the authors of a page, their books and the authors of these books, in 3 statements whatever the page size
+ * <pre>{@code
+ * getManyFetchPlan = FetchPlan.of("books.authors");
+ * getOneFetchPlan = FetchPlan.ofEntityGraph("Author.books");
+ * }</pre>
+ *
+ * @param attributePaths dotted paths of relations, every relation of a path is loaded
+ * @param entityGraphName the name of a named entity graph, whose attribute nodes and subgraphs are the paths to load
+ */
+public record FetchPlan(List<String> attributePaths, String entityGraphName) {
+    public static final FetchPlan NONE = new FetchPlan(List.of(), null);
+
+    public static FetchPlan of(String... attributePaths) {
+        return new FetchPlan(List.of(attributePaths), null);
+    }
+
+    public static FetchPlan ofEntityGraph(String entityGraphName) {
+        return new FetchPlan(List.of(), entityGraphName);
+    }
+
+    public boolean isEmpty() {
+        return attributePaths.isEmpty() && entityGraphName == null;
+    }
+}
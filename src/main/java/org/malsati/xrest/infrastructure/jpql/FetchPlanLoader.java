@@ -0,0 +1,206 @@
+package org.malsati.xrest.infrastructure.jpql;
+
+import jakarta.persistence.AttributeNode;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the relations of a {@link FetchPlan} for entities already read, one level of the plan at a time:
+ * <ul>
+ * <li>a collection is loaded for all the owners at once:
+ * {@code select o from Owner o left join fetch o.collection where o.id in (:ids)}</li>
+ * <li>a to-one relation is loaded for all the owners at once: {@code select t from Target t where t.id in (:ids)}</li>
+ * </ul>
+ * The page itself is read without any fetch join, so its limit and offset stay in SQL,
+ * and the number of statements depends on the plan, not on the number of rows
+ * (as long as the ids of a level fit in one in list, see xrest.condition.in-list.chunk-size).
+ * The relations already loaded are skipped.<br>
+ * The entities must be managed: the loader has to run in the persistence context that read them.
+ */
+@Component
+public class FetchPlanLoader {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final SpecificationBuilder<?> specificationBuilder;
+
+    @Autowired
+    public FetchPlanLoader(SpecificationBuilder<?> specificationBuilder) {
+        this.specificationBuilder = specificationBuilder;
+    }
+
+    /*
+     * The paths of a plan as a tree: "books.authors" and "books.press" give books -> (authors, press).
+     */
+    private static final class PathNode {
+        private final Map<String, PathNode> children = new LinkedHashMap<>();
+
+        void add(String dottedPath) {
+            PathNode node = this;
+            for (String attribute : dottedPath.split("\\.")) {
+                node = node.children.computeIfAbsent(attribute, key -> new PathNode());
+            }
+        }
+    }
+
+    private record Level(Class<?> entityType, Collection<Object> owners, PathNode node) {
+    }
+
+    /**
+     * @param entityType the class of the entities
+     * @param entities the entities read, managed by the current persistence context
+     * @param fetchPlan the relations to load
+     * @throws IllegalArgumentException if a path of the plan isn't made of relations, or the entity graph doesn't exist
+     */
+    public void load(Class<?> entityType, Collection<?> entities, FetchPlan fetchPlan) {
+        if (fetchPlan.isEmpty() || entities.isEmpty()) {
+            return;
+        }
+        Deque<Level> pending = new ArrayDeque<>();
+        pending.push(new Level(entityType, new ArrayList<>(entities), toPathTree(fetchPlan)));
+        while (!pending.isEmpty()) {
+            Level level = pending.pop();
+            EntityType<?> ownerType = entityManager.getMetamodel().entity(level.entityType());
+            for (var child : level.node().children.entrySet()) {
+                Attribute<?, ?> attribute = ownerType.getAttribute(child.getKey());
+                if (!attribute.isAssociation()) {
+                    throw new IllegalArgumentException("%s of %s is not a relation".formatted(child.getKey(), ownerType.getName()));
+                }
+                Class<?> targetType;
+                Collection<Object> targets;
+                if (attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute) {
+                    targetType = pluralAttribute.getElementType().getJavaType();
+                    targets = loadCollection(ownerType, level.owners(), attribute.getName());
+                } else {
+                    targetType = attribute.getJavaType();
+                    targets = loadReference(ownerType, targetType, level.owners(), attribute.getName());
+                }
+                if (!child.getValue().children.isEmpty() && !targets.isEmpty()) {
+                    pending.push(new Level(targetType, targets, child.getValue()));
+                }
+            }
+        }
+    }
+
+    private Collection<Object> loadCollection(EntityType<?> ownerType, Collection<Object> owners, String attribute) {
+        EntityPersister persister = persisterOf(ownerType.getJavaType());
+        var uninitializedOwnerIds = new ArrayList<Object>();
+        for (Object owner : owners) {
+            if (!Hibernate.isInitialized(persister.getPropertyValue(Hibernate.unproxy(owner), attribute))) {
+                uninitializedOwnerIds.add(idOf(owner));
+            }
+        }
+        if (!uninitializedOwnerIds.isEmpty()) {
+            String jpql = "select o from %s o left join fetch o.%s where o.%s in (:ids)"
+                    .formatted(ownerType.getName(), attribute, idAttributeOf(ownerType));
+            for (var ids : chunksOf(uninitializedOwnerIds)) {
+                entityManager.createQuery(jpql, ownerType.getJavaType()).setParameter("ids", ids).getResultList();
+            }
+        }
+        Set<Object> elements = identitySet();
+        for (Object owner : owners) {
+            var collection = (Collection<?>) persister.getPropertyValue(Hibernate.unproxy(owner), attribute);
+            if (collection != null) {
+                elements.addAll(collection);
+            }
+        }
+        return elements;
+    }
+
+    private Collection<Object> loadReference(EntityType<?> ownerType, Class<?> targetType, Collection<Object> owners, String attribute) {
+        EntityPersister persister = persisterOf(ownerType.getJavaType());
+        Set<Object> targets = identitySet();
+        var uninitializedTargetIds = new LinkedHashSet<Object>();
+        for (Object owner : owners) {
+            Object target = persister.getPropertyValue(Hibernate.unproxy(owner), attribute);
+            if (target == null) {
+                continue;
+            }
+            targets.add(target);
+            if (!Hibernate.isInitialized(target)) {
+                uninitializedTargetIds.add(idOf(target));
+            }
+        }
+        if (!uninitializedTargetIds.isEmpty()) {
+            EntityType<?> targetEntityType = entityManager.getMetamodel().entity(targetType);
+            String jpql = "select t from %s t where t.%s in (:ids)".formatted(targetEntityType.getName(), idAttributeOf(targetEntityType));
+            for (var ids : chunksOf(new ArrayList<>(uninitializedTargetIds))) {
+                entityManager.createQuery(jpql, targetType).setParameter("ids", ids).getResultList();
+            }
+        }
+        return targets;
+    }
+
+    private PathNode toPathTree(FetchPlan fetchPlan) {
+        var root = new PathNode();
+        fetchPlan.attributePaths().forEach(root::add);
+        if (fetchPlan.entityGraphName() != null) {
+            EntityGraph<?> entityGraph = entityManager.getEntityGraph(fetchPlan.entityGraphName());
+            if (entityGraph == null) {
+                throw new IllegalArgumentException("unknown entity graph: %s".formatted(fetchPlan.entityGraphName()));
+            }
+            addAttributeNodes(root, "", entityGraph.getAttributeNodes());
+        }
+        return root;
+    }
+
+    private static void addAttributeNodes(PathNode root, String prefix, List<AttributeNode<?>> attributeNodes) {
+        for (AttributeNode<?> attributeNode : attributeNodes) {
+            String path = prefix + attributeNode.getAttributeName();
+            root.add(path);
+            for (Subgraph<?> subgraph : attributeNode.getSubgraphs().values()) {
+                addAttributeNodes(root, path + ".", subgraph.getAttributeNodes());
+            }
+        }
+    }
+
+    private List<List<Object>> chunksOf(List<Object> ids) {
+        int chunkSize = specificationBuilder.getInListChunkSize();
+        var chunks = new ArrayList<List<Object>>();
+        for (int start = 0; start < ids.size(); start += chunkSize) {
+            chunks.add(ids.subList(start, Math.min(start + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    // entities may define equals and hashCode over their relations (Lombok's @Data), the instances of a persistence context are unique anyway
+    private static Set<Object> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private Object idOf(Object entity) {
+        return entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    private static String idAttributeOf(EntityType<?> entityType) {
+        return entityType.getId(entityType.getIdType().getJavaType()).getName();
+    }
+
+    private EntityPersister persisterOf(Class<?> entityType) {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityType);
+    }
+}
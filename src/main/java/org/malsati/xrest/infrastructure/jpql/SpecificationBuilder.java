@@ -1,27 +1,56 @@
 package org.malsati.xrest.infrastructure.jpql;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
 import org.malsati.xrest.infrastructure.jpql.condition_builder.BinaryOperators;
 import org.malsati.xrest.infrastructure.jpql.condition_builder.BuilderPredicate;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.AttributePathResolver;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.CompiledCondition;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionBudget;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionCost;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionNodes;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionShape;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.JoinRegistry;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.LeafValue;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.LogicalOperators;
 import org.malsati.xrest.infrastructure.jpql.condition_builder.MainTreeKeys;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ParameterScope;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.QuantifierOperators;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ResolvedPath;
+import org.malsati.xrest.utilities.cache.BoundedLruCache;
+import org.malsati.xrest.utilities.cache.CacheStatistics;
+import org.malsati.xrest.utilities.json.JsonCanonicalizer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.PersistenceUnit;
 import jakarta.persistence.criteria.*;
-
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * This is the core class for handling JSON where condition.
- * It parses the JSON condition recursively and generated a list of specification to be executed later by JPAExecutor
+ * It parses the JSON condition and generated a list of specification to be executed later by JPAExecutor
  *
  * @param <T> This the entity type
  *            <br>
@@ -39,9 +68,12 @@ import java.util.stream.Collectors;
  *                                  }
  *                                  </pre>
  *            This is used with Binary operators, where: <br>
- *            op: operator type( &lt;, =, &lt;=, &gt;, &gt;=, !=, like )<br>
+ *            op: operator type( &lt;, =, &lt;=, &gt;, &gt;=, !=, like, in )<br>
  *            lhs: left hand side, should be the entity field name.<br>
  *            rhs: right hand side, should be the value<br>
+ *            For the in operator, rhs is a JSON array (e.g. [1, 2, 3]) or a text of comma separated values (e.g. "1, 2, 3").
+ *            The values are deduplicated, and lists longer than xrest.condition.in-list.chunk-size (default 1000,
+ *            lowered to the dialect limit) are split into ORed IN lists.<br>
  *            <p>
  *            Example1: all entities which have a title similar to the form: %Harry Potter%
  *            <pre>{@code
@@ -63,7 +95,9 @@ import java.util.stream.Collectors;
  *                                  }
  *                                  </pre>
  *            <p>
- *            If the type of the rhs is not scalar, you need to provide a hint what it is through the "type" key.
+ *            The values are converted to the exact java type of the attribute, as resolved from the JPA metamodel
+ *            (Long, BigDecimal, LocalDate, LocalDateTime, UUID, enums...), so dates and other non scalar values can be given as text.<br>
+ *            The "type" hint is still accepted, it's only used for attributes whose type can't be converted (for example an embeddable).
  *            For example:
  *            <p>
  *            Example3: all entities whose publishDate is after 2009-01-01
@@ -140,6 +174,26 @@ import java.util.stream.Collectors;
  *            either<br>
  *            its name is similar to the token " of "<br>
  *            or its number of pages is more than 800<br>
+ *            <p>
+ *            N-ARY format:
+ *            The logical operators also accept any number of conditions in an args array, where:
+ *            op: &amp;&amp; or || (and, or are accepted as well)
+ *            args: the conditions to combine
+ *            <p>
+ *            Example6b: all entities whose id is 1, 5 or 9
+ *            <pre>{@code
+ *                                  {
+ *                                      "op": "||",
+ *                                      "args": [
+ *                                          { "op": "=", "lhs": "id", "rhs": 1 },
+ *                                          { "op": "=", "lhs": "id", "rhs": 5 },
+ *                                          { "op": "=", "lhs": "id", "rhs": 9 }
+ *                                      ]
+ *                                  }
+ *                                  }
+ *                                  </pre>
+ *            Nested nodes having the same operator are flattened (a binary chain of || is compiled like one n-ary ||),
+ *            and the conditions are compiled without recursion, so the depth of a condition is not limited by the call stack.<br>
  *            <br><br><br>
  *            <p>
  *            Example7:
@@ -156,10 +210,75 @@ import java.util.stream.Collectors;
  *            and there is a list inside the Author called books<br>
  *            This will allow you to query for nested entities inside the root entity<br>
  *            The nesting level is infinite as long as there is a relation.<br>
+ *            A leaf whose path crosses a to-many relation (detected from the JPA metamodel) is compiled as a correlated EXISTS subquery,
+ *            so each root entity is returned once whatever the size of its collections. Example 7 becomes:<br>
+ *            where exists (select 1 from Book b where b member of author.books and b.title = 'Artificial Intelligence')<br>
+ *            To-one relations are joined, and the leaves navigating the same to-one path share one join (see {@link JoinRegistry}).<br>
+ *            <p>
+ *            QUANTIFIER format:
+ *            This is used to apply a condition to the elements of a collection, where:
+ *            op: any, none or all
+ *            lhs: the collection attribute path
+ *            rhs: a condition relative to one element of the collection (optional for any and none)
+ *            <p>
+ *            Example8: all the authors who authored a book of more than 500 pages published after 2000-01-01 (the same book satisfies both leaves)
+ *            <pre>{@code
+ *                                  {
+ *                                      "op": "any",
+ *                                      "lhs": "books",
+ *                                      "rhs": {
+ *                                          "op": "&&",
+ *                                          "lhs": { "op": ">", "lhs": "noPages", "rhs": 500 },
+ *                                          "rhs": { "op": ">", "lhs": "publishDate", "rhs": "2000-01-01", "type": "Date" }
+ *                                      }
+ *                                  }
+ *                                  }
+ *                                  </pre>
+ *            "none" selects the authors having no such book, "all" selects the authors whose books all satisfy the condition
+ *            (including authors without books).<br>
+ *
+ *            <H2>Compiled conditions cache</H2>
+ *            Compiled specifications are kept in a bounded LRU cache, so the same condition is parsed and compiled once.<br>
+ *            The cache is looked up by the raw text of the condition first, then by its normalized form
+ *            (see {@link JsonCanonicalizer}), so conditions that only differ in whitespace or keys order share one entry.<br>
+ *            The cache bounds can be tuned by the properties:<br>
+ *            xrest.condition-cache.max-entries (default 2048, 0 disables the cache)<br>
+ *            xrest.condition-cache.max-weight (default 4194304): the sum of the cached keys lengths in characters<br>
+ *            The counters are exposed by {@link #getCacheStatistics()}.
+ *
+ *            <H2>Condition cost</H2>
+ *            The structure of a condition is measured when it's compiled (depth, leaves, like patterns starting with a wildcard),
+ *            and {@link #estimateCost(String, Class)} completes it with the joins and the to-many navigations of an entity,
+ *            so a service can reject a condition before any SQL is executed (see {@link ConditionBudget}).<br>
+ *            The parser rejects the conditions longer than xrest.condition.max-length (default 262144 characters)
+ *            or nested deeper than xrest.condition.max-nesting-depth (default 1000).
  */
 @Component
 public class SpecificationBuilder<T> {
+    public static final int DEFAULT_CACHE_MAX_ENTRIES = 2048;
+    public static final long DEFAULT_CACHE_MAX_WEIGHT = 4 * 1024 * 1024;
+    private static final long CACHE_ENTRY_OVERHEAD = 64;
+    public static final int DEFAULT_IN_LIST_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_MAX_CONDITION_LENGTH = 256 * 1024;
+    public static final int DEFAULT_MAX_CONDITION_NESTING_DEPTH = 1000;
+
     public SpecificationBuilder() {
+        this(DEFAULT_CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_WEIGHT, DEFAULT_MAX_CONDITION_LENGTH, DEFAULT_MAX_CONDITION_NESTING_DEPTH);
+    }
+
+    @Autowired
+    public SpecificationBuilder(@Value("${xrest.condition-cache.max-entries:" + DEFAULT_CACHE_MAX_ENTRIES + "}") int cacheMaxEntries,
+                                @Value("${xrest.condition-cache.max-weight:" + DEFAULT_CACHE_MAX_WEIGHT + "}") long cacheMaxWeight,
+                                @Value("${xrest.condition.max-length:" + DEFAULT_MAX_CONDITION_LENGTH + "}") int maxConditionLength,
+                                @Value("${xrest.condition.max-nesting-depth:" + DEFAULT_MAX_CONDITION_NESTING_DEPTH + "}") int maxConditionNestingDepth) {
+        conditionCache = new BoundedLruCache<>(cacheMaxEntries, cacheMaxWeight,
+                (condition, entry) -> condition.length() + CACHE_ENTRY_OVERHEAD);
+        this.maxConditionLength = maxConditionLength;
+        // the nesting depth is enforced by the parser itself, so a hostile condition is rejected before its tree is built
+        jsonParser = new ObjectMapper(JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxNestingDepth(maxConditionNestingDepth).build())
+                .build());
+
         binaryOperatorsMap.put(BinaryOperators.equal, this::isEqualPredicate);
         binaryOperatorsMap.put(BinaryOperators.notEqual, this::isNotEqualPredicate);
         binaryOperatorsMap.put(BinaryOperators.lessThan, this::isLessPredicate);
@@ -171,17 +290,144 @@ public class SpecificationBuilder<T> {
         binaryOperatorsMap.put(BinaryOperators.in, this::isInPredicate);
     }
 
-    ObjectMapper jsonParser = new ObjectMapper();
+    final ObjectMapper jsonParser;
+
+    private final int maxConditionLength;
+
+    /*
+     * A compiled condition and its structure, measured once for the cost estimations.
+     */
+    private record CompiledEntry<T>(Specification<T> specification, ConditionShape shape, String normalizedCondition) {
+    }
+
+    private final BoundedLruCache<String, CompiledEntry<T>> conditionCache;
 
+    /**
+     * Compiles a JSON where condition into a reusable specification.
+     * The result is cached, so compiling the same condition again is a cache lookup.
+     * @param whereCondition the condition in JSON notation
+     * @return the compiled specification
+     * @throws IllegalArgumentException if the condition is malformed, longer than xrest.condition.max-length (default 262144 characters)
+     * or nested deeper than xrest.condition.max-nesting-depth (default 1000)
+     */
     public Specification<T> build(String whereCondition) {
+        return compileEntry(whereCondition).specification();
+    }
+
+    /**
+     * Estimates the cost of a condition applied to an entity, without executing anything.
+     * The condition is compiled (and cached) if needed, then its paths are resolved against the metamodel of the entity
+     * to count the to-one joins and the to-many navigations.
+     * @param whereCondition the condition in JSON notation
+     * @param entityType the entity the condition is applied to
+     * @return the estimated cost
+     * @throws IllegalArgumentException if the condition is malformed or refers to an attribute the entity doesn't have
+     */
+    public ConditionCost estimateCost(String whereCondition, Class<?> entityType) {
+        ConditionShape shape = compileEntry(whereCondition).shape();
+        ManagedType<?> ownerType = entityManagerFactory != null ? entityManagerFactory.getMetamodel().managedType(entityType) : null;
+        int toManyCount = 0;
+        var joinedPaths = new HashSet<String>();
+        for (var navigation : shape.navigations()) {
+            String[] attributePath = navigation.dottedPath().split("\\.");
+            // without a metamodel, every navigated relation is counted as a join
+            ResolvedPath resolvedPath = ownerType != null ? attributePathResolver.resolve(ownerType, navigation.dottedPath(), attributePath) : null;
+            for (int i = navigation.scopeLength(); i < navigation.navigatedLength(); i++) {
+                if (resolvedPath != null && resolvedPath.isToMany(i)) {
+                    toManyCount++;
+                } else {
+                    joinedPaths.add(String.join(".", Arrays.copyOf(attributePath, i + 1)));
+                }
+            }
+        }
+        return new ConditionCost(shape.depth(), shape.leafCount(), joinedPaths.size(), toManyCount, shape.unanchoredLikeCount());
+    }
+
+    /**
+     * @param whereCondition the condition in JSON notation
+     * @return the structure of the condition (it's compiled and cached if needed)
+     * @throws IllegalArgumentException if the condition is malformed
+     */
+    public ConditionShape getShape(String whereCondition) {
+        return compileEntry(whereCondition).shape();
+    }
+
+    /**
+     * Builds the expression of a basic attribute for a select or a group by, e.g. {@code press} or {@code authors.fullName}.<br>
+     * The path is resolved against the metamodel like the paths of the conditions. The relations of the path are left joined,
+     * and the joins are shared by all the paths of the query (see {@link JoinRegistry}).
+     * @param root the root of the query
+     * @param dottedPath the attribute path
+     * @param isToManyAllowed whether the path may go through a collection (the join multiplies the rows)
+     * @return the expression of the last attribute
+     * @throws IllegalArgumentException if an attribute doesn't exist, the path goes through a collection and it isn't allowed,
+     * or the last attribute isn't a basic one
+     */
+    public Path<?> selectPath(Root<?> root, String dottedPath, boolean isToManyAllowed) {
+        String[] attributePath = dottedPath.split("\\.");
+        ResolvedPath resolvedPath = attributePathResolver.resolve(root.getModel(), dottedPath, attributePath);
+        From<?, ?> current = root;
+        for (int i = 0; i < attributePath.length - 1; i++) {
+            if (resolvedPath.isToMany(i) && !isToManyAllowed) {
+                throw new IllegalArgumentException("invalid path %s: %s is a collection".formatted(dottedPath, attributePath[i]));
+            }
+            current = JoinRegistry.getOrCreate(current, attributePath[i], JoinType.LEFT);
+        }
+        String lastAttribute = attributePath[attributePath.length - 1];
+        if (managedTypeOf(current).getAttribute(lastAttribute).getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+            throw new IllegalArgumentException("invalid path %s: %s is not a basic attribute".formatted(dottedPath, lastAttribute));
+        }
+        return current.get(lastAttribute);
+    }
+
+    /**
+     * @param whereCondition the condition in JSON notation
+     * @return the condition without insignificant whitespace and with the keys of its objects sorted:
+     * two conditions that only differ in their formatting have the same normalized text (it's compiled and cached if needed).
+     * @throws IllegalArgumentException if the condition is malformed
+     */
+    public String normalize(String whereCondition) {
+        return compileEntry(whereCondition).normalizedCondition();
+    }
+
+    private CompiledEntry<T> compileEntry(String whereCondition) {
+        if (whereCondition.length() > maxConditionLength) {
+            throw new IllegalArgumentException("the condition is longer than %d characters".formatted(maxConditionLength));
+        }
+        var entry = conditionCache.get(whereCondition);
+        if (entry != null) {
+            return entry;
+        }
         try {
             JsonNode rootNode = jsonParser.readTree(whereCondition);
-            return buildSpecificationList(rootNode);
+            String normalizedCondition = JsonCanonicalizer.canonicalize(rootNode);
+            if (!normalizedCondition.equals(whereCondition)) {
+                entry = conditionCache.get(normalizedCondition);
+            }
+            if (entry == null) {
+                entry = new CompiledEntry<>(buildSpecificationList(rootNode), measure(rootNode), normalizedCondition);
+                conditionCache.put(normalizedCondition, entry);
+            }
+            conditionCache.put(whereCondition, entry);
+            return entry;
         } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
+            throw new IllegalArgumentException("malformed JSON condition: %s".formatted(e.getOriginalMessage()), e);
         }
     }
 
+    /**
+     * @return the counters of the compiled conditions cache.<br>
+     * note: a condition whose text is seen for the first time but whose normalized form is already cached
+     * counts as a miss (raw text) followed by a hit (normalized form).
+     */
+    public CacheStatistics getCacheStatistics() {
+        return conditionCache.getStatistics();
+    }
+
+    public void clearCache() {
+        conditionCache.clear();
+    }
+
     public Specification<T> buildWithAnd(String condition1, String condition2) {
         Specification<T> condition1Specification = build(condition1);
         Specification<T> condition2Specification = build(condition2);
@@ -193,243 +439,427 @@ public class SpecificationBuilder<T> {
     }
 
     private Specification<T> buildSpecificationList(JsonNode node) {
-        String operator = node.get(MainTreeKeys.operator).asText();
-        if (isLeaf(operator)) {
-            if (isTernaryOperator(operator)) {
-                return (root, query, builder) -> buildPredicateForTernaryOperator(root, node, builder);
+        CompiledCondition condition = compile(node);
+        return (root, query, builder) -> condition.toPredicate(root, query, builder);
+    }
+
+    /*
+     * The predicate of a leaf, applied on the attribute (expression) once its path has been navigated.
+     * javaType is the type of the attribute resolved from the metamodel, the leaf values are converted to it.
+     */
+    @FunctionalInterface
+    private interface FieldPredicate {
+        Predicate toPredicate(Path<?> expression, Class<?> javaType, CriteriaBuilder builder);
+    }
+
+    /*
+     * The and/or nodes are compiled iteratively (post-order on an explicit stack), so a deep condition can't overflow the call stack.
+     * Each and/or node is flattened with its same-operator descendants, and becomes a single builder.and(...)/builder.or(...).
+     */
+    private CompiledCondition compile(JsonNode node) {
+        if (!ConditionNodes.isLogical(node)) {
+            return compileOperand(node);
+        }
+        Deque<LogicalFrame> frames = new ArrayDeque<>();
+        frames.push(new LogicalFrame(node));
+        while (true) {
+            LogicalFrame frame = frames.peek();
+            if (frame.hasPendingOperand()) {
+                JsonNode operand = frame.nextOperand();
+                if (ConditionNodes.isLogical(operand)) {
+                    frames.push(new LogicalFrame(operand));
+                } else {
+                    frame.compiledOperands.add(compileOperand(operand));
+                }
+                continue;
             }
+            frames.pop();
+            CompiledCondition condition = frame.toCompiledCondition();
+            if (frames.isEmpty()) {
+                return condition;
+            }
+            frames.peek().compiledOperands.add(condition);
+        }
+    }
 
-            return (root, query, builder) -> buildPredicateForBinaryOperator(root, node, builder);
+    private CompiledCondition compileOperand(JsonNode node) {
+        String operator = ConditionNodes.operatorOf(node);
+        if (ConditionNodes.isQuantifier(operator)) {
+            return compileQuantifier(node, operator);
         }
+        String dottedPath = node.get(MainTreeKeys.lhs).asText();
+        String[] attributePath = dottedPath.split("\\.");
+        String fieldName = attributePath[attributePath.length - 1];
+        FieldPredicate fieldPredicate = isTernaryOperator(operator)
+                ? compileTernaryOperator(node, operator)
+                : compileBinaryOperator(node, operator);
+        return (from, query, builder) -> {
+            ResolvedPath resolvedPath = attributePathResolver.resolve(managedTypeOf(from), dottedPath, attributePath);
+            return navigate(from, query, builder, resolvedPath, 0,
+                    (owner, ownerQuery, ownerBuilder) -> fieldPredicate.toPredicate(owner.get(fieldName), resolvedPath.javaType(), ownerBuilder));
+        };
+    }
 
-        JsonNode lhs = node.get(MainTreeKeys.lhs);
-        JsonNode rhs = node.get(MainTreeKeys.rhs);
+    /*
+     * An and/or node being compiled: its flattened operands and the conditions compiled from them so far.
+     */
+    private static final class LogicalFrame {
+        private final boolean isConjunction;
+        private final List<JsonNode> operands;
+        private final List<CompiledCondition> compiledOperands;
+        private int nextOperandIndex = 0;
+
+        LogicalFrame(JsonNode node) {
+            isConjunction = ConditionNodes.isConjunction(ConditionNodes.operatorOf(node));
+            operands = ConditionNodes.flattenOperands(node, isConjunction);
+            compiledOperands = new ArrayList<>(operands.size());
+        }
 
-        // Code for internal nodes
-        Specification<T> lhsSpecification = buildSpecificationList(lhs);
-        Specification<T> rhsSpecification = buildSpecificationList(rhs);
-        return (root, query, builder) -> {
-            Predicate lhsPredicate = lhsSpecification.toPredicate(root, query, builder);
-            Predicate rhsPredicate = rhsSpecification.toPredicate(root, query, builder);
-            if (operator.equalsIgnoreCase("&&")) {
-                return builder.and(lhsPredicate, rhsPredicate);
+        boolean hasPendingOperand() {
+            return nextOperandIndex < operands.size();
+        }
+
+        JsonNode nextOperand() {
+            return operands.get(nextOperandIndex++);
+        }
+
+        CompiledCondition toCompiledCondition() {
+            CompiledCondition[] conditions = compiledOperands.toArray(new CompiledCondition[0]);
+            if (conditions.length == 1) {
+                return conditions[0];
             }
-            return builder.or(lhsPredicate, rhsPredicate);
-        };
+            boolean isAnd = isConjunction;
+            return (from, query, builder) -> {
+                Predicate[] predicates = new Predicate[conditions.length];
+                for (int i = 0; i < conditions.length; i++) {
+                    predicates[i] = conditions[i].toPredicate(from, query, builder);
+                }
+                return isAnd ? builder.and(predicates) : builder.or(predicates);
+            };
+        }
     }
 
-    private boolean isLeaf(String operator) {
-        return !operator.equalsIgnoreCase("&&") &&
-                !operator.equalsIgnoreCase("||");
+    /*
+     * A node waiting to be measured, with the state inherited from its ancestors.
+     */
+    private record MeasuredNode(JsonNode node, String parentOperator, int depth, String scope, int scopeLength) {
     }
 
-    private boolean isTernaryOperator(String operator) {
-        return operator.equalsIgnoreCase("between");
-    }
+    /*
+     * Walks the condition (without recursion) to measure what doesn't depend on the entity: depth, leaves, unanchored like patterns,
+     * and the paths navigated. The paths of the leaves under a quantifier are prefixed by the path of the quantifier.
+     */
+    private static ConditionShape measure(JsonNode rootNode) {
+        int maxDepth = 0;
+        int leafCount = 0;
+        int unanchoredLikeCount = 0;
+        var navigations = new ArrayList<ConditionShape.Navigation>();
+        var comparisons = new ArrayList<ConditionShape.Comparison>();
+        Deque<MeasuredNode> pending = new ArrayDeque<>();
+        pending.push(new MeasuredNode(rootNode, null, 0, "", 0));
+        while (!pending.isEmpty()) {
+            MeasuredNode current = pending.pop();
+            JsonNode node = current.node();
+            if (ConditionNodes.isLogical(node)) {
+                String operator = ConditionNodes.isConjunction(ConditionNodes.operatorOf(node)) ? LogicalOperators.and : LogicalOperators.or;
+                // a chain of the same operator is flattened when compiled, so it's one level
+                int depth = operator.equals(current.parentOperator()) ? current.depth() : current.depth() + 1;
+                maxDepth = Math.max(maxDepth, depth);
+                for (JsonNode child : ConditionNodes.childrenOf(node)) {
+                    pending.push(new MeasuredNode(child, operator, depth, current.scope(), current.scopeLength()));
+                }
+                continue;
+            }
 
-    private Predicate isEqualPredicate(Root<T> root,
-                                       Join<T, ?> join,
-                                       String operator,
-                                       String fieldName,
-                                       JsonNode value,
-                                       String hint,
-                                       CriteriaBuilder criteriaBuilder) {
-
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        Object realTypeValue = calculateValueRealType(value, hint);
-        return criteriaBuilder.equal(expression, realTypeValue);
-    }
-
-    private Predicate isNotEqualPredicate(Root<T> root,
-                                          Join<T, ?> join,
-                                          String operator,
-                                          String fieldName,
-                                          JsonNode value,
-                                          String hint,
-                                          CriteriaBuilder criteriaBuilder) {
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        var valueRealType = calculateValueRealType(value, hint);
-        return criteriaBuilder.notEqual(expression, valueRealType);
-    }
-
-    private Predicate isLessOrEqualPredicate(Root<T> root,
-                                             Join<T, ?> join,
-                                             String operator,
-                                             String fieldName,
-                                             JsonNode value,
-                                             String hint,
-                                             CriteriaBuilder criteriaBuilder) {
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        var valueRealType = calculateValueRealType(value, hint);
-        return criteriaBuilder.lessThanOrEqualTo(expression, (Comparable) valueRealType);
-    }
-
-    private Predicate isLessPredicate(Root<T> root,
-                                      Join<T, ?> join,
-                                      String operator,
-                                      String fieldName,
-                                      JsonNode value,
-                                      String hint,
-                                      CriteriaBuilder criteriaBuilder) {
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        var valueRealType = calculateValueRealType(value, hint);
-        return criteriaBuilder.lessThan(expression, (Comparable) valueRealType);
-    }
-
-    private Predicate isGreaterPredicate(Root<T> root,
-                                         Join<T, ?> join,
-                                         String operator,
-                                         String fieldName,
-                                         JsonNode value,
-                                         String hint,
-                                         CriteriaBuilder criteriaBuilder) {
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        var valueRealType = calculateValueRealType(value, hint);
-        return criteriaBuilder.greaterThan(expression, (Comparable) valueRealType);
-    }
-
-    private Predicate isGreaterOrEqualPredicate(Root<T> root,
-                                                Join<T, ?> join,
-                                                String operator,
-                                                String fieldName,
-                                                JsonNode value,
-                                                String hint,
-                                                CriteriaBuilder criteriaBuilder) {
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        var valueRealType = calculateValueRealType(value, hint);
-        return criteriaBuilder.greaterThanOrEqualTo(expression, (Comparable) valueRealType);
-    }
-
-    private Predicate isLikePredicate(Root<T> root,
-                                      Join<T, ?> join,
-                                      String operator,
-                                      String fieldName,
-                                      JsonNode value,
-                                      String hint,
-                                      CriteriaBuilder criteriaBuilder) {
-        Expression expression = calculateQueryExpression(root, join, fieldName);
-        return criteriaBuilder.like(expression, value.asText());
-    }
-
-    private Expression<T> calculateQueryExpression(
-            Root<T> root,
-            Join<T, ?> join,
-            String fieldName
-    ) {
-        return join != null ? join.get(fieldName) : root.get(fieldName);
-    }
-
-    private Object calculateValueRealType(JsonNode rhs, String hint) {
-        if (hint != null && hint.equalsIgnoreCase("Date")) {
-            return LocalDate.parse(rhs.asText());
-        }
-        if (rhs.isBoolean()) {
-            return rhs.asBoolean();
-        }
-        if (rhs.isInt()) {
-            return rhs.asInt();
-        }
-        if (rhs.isTextual()) {
-            return rhs.asText();
-        }
-        throw new IllegalArgumentException("Unsupported rhs data type");
-    }
-
-    private Predicate isInPredicate(Root<T> root,
-                                    Join<T, ?> join,
-                                    String operator,
-                                    String fieldName,
-                                    JsonNode value,
-                                    String hint,
-                                    CriteriaBuilder criteriaBuilder) {
-        var expression = calculateQueryExpression(root, join, fieldName);
-        List<String> tokens = Arrays.asList((value.asText()).split(",\\s*"));
-        if (hint != null && hint.equalsIgnoreCase("Date")) {
-            List<LocalDate> dates = tokens.stream().map(s -> LocalDate.parse(s, DateTimeFormatter.ISO_LOCAL_DATE)).collect(Collectors.toList());
-            return expression.in(dates);
-        }
-        return expression.in(tokens);
-    }
-
-    private HashMap<String, BuilderPredicate<T>> binaryOperatorsMap = new HashMap<>();
-
-
-    private Predicate buildPredicateForBinaryOperator(
-            Root<T> root,
-            JsonNode node,
-            CriteriaBuilder criteriaBuilder
-    ) {
-        JsonNode lhs = node.get(MainTreeKeys.lhs);
-        String operator = node.get(MainTreeKeys.operator).asText();
-        String fieldName = lhs.asText();
-
-        Join<T, ?> join = null;
-        if (fieldName.contains(".")) { // Check for related entity
-            // Split the attribute path
-            String[] attributePath = fieldName.split("\\.");
-
-            // Navigate through the join for each attribute except the last one
-            join = root.join(attributePath[0]);
-            if (attributePath.length > 1) {
-                for (int i = 1; i < attributePath.length - 1; i++) {
-                    join = join.join(attributePath[i]);
+            String operator = ConditionNodes.operatorOf(node);
+            JsonNode lhs = node.get(MainTreeKeys.lhs);
+            if (lhs == null) {
+                throw new IllegalArgumentException("the %s operator requires a lhs".formatted(operator));
+            }
+            String dottedPath = current.scope() + lhs.asText();
+            int pathLength = dottedPath.split("\\.").length;
+            int depth = current.depth() + 1;
+            maxDepth = Math.max(maxDepth, depth);
+            if (ConditionNodes.isQuantifier(operator)) {
+                navigations.add(new ConditionShape.Navigation(dottedPath, current.scopeLength(), pathLength));
+                JsonNode rhs = node.get(MainTreeKeys.rhs);
+                if (rhs != null) {
+                    pending.push(new MeasuredNode(rhs, null, depth, dottedPath + ".", pathLength));
                 }
+                continue;
             }
+            leafCount++;
+            if (pathLength - 1 > current.scopeLength()) {
+                navigations.add(new ConditionShape.Navigation(dottedPath, current.scopeLength(), pathLength - 1));
+            }
+            boolean isUnanchoredLike = operator.equalsIgnoreCase(BinaryOperators.like) && isUnanchoredPattern(node.get(MainTreeKeys.rhs));
+            if (isUnanchoredLike) {
+                unanchoredLikeCount++;
+            }
+            comparisons.add(new ConditionShape.Comparison(dottedPath, operator.toLowerCase(), isUnanchoredLike));
+        }
+        return new ConditionShape(maxDepth, leafCount, unanchoredLikeCount, navigations, comparisons);
+    }
 
-            fieldName = attributePath[attributePath.length - 1];
+    private static boolean isUnanchoredPattern(JsonNode pattern) {
+        if (pattern == null) {
+            return false;
         }
+        String text = pattern.asText();
+        return text.startsWith("%") || text.startsWith("_");
+    }
 
+    private FieldPredicate compileBinaryOperator(JsonNode node, String operator) {
+        BuilderPredicate operatorPredicate = binaryOperatorsMap.get(operator);
+        if (operatorPredicate == null) {
+            throw new IllegalArgumentException("Unsupported binary operator");
+        }
+        JsonNode hint = node.get(MainTreeKeys.type);
         JsonNode rhs = node.get(MainTreeKeys.rhs);
+        if (operator.equals(BinaryOperators.like)) {
+            String pattern = LeafValue.of(rhs, null).text();
+            return (expression, javaType, builder) -> operatorPredicate.execute(expression, pattern, builder);
+        }
+        LeafValue value = operator.equals(BinaryOperators.in)
+                ? LeafValue.listOf(rhs, hint != null ? hint.asText() : null)
+                : LeafValue.of(rhs, hint != null ? hint.asText() : null);
+        return (expression, javaType, builder) -> operatorPredicate.execute(expression, value.as(javaType), builder);
+    }
+
+    private FieldPredicate compileTernaryOperator(JsonNode node, String operator) {
+        if (!operator.equals("between")) {
+            throw new IllegalArgumentException("Unsupported ternary operator");
+        }
         JsonNode hint = node.get(MainTreeKeys.type);
+        LeafValue rangeStart = LeafValue.of(node.get(MainTreeKeys.rangeStart), hint != null ? hint.asText() : null);
+        LeafValue rangeEnd = LeafValue.of(node.get(MainTreeKeys.rangeEnd), hint != null ? hint.asText() : null);
+        return (expression, javaType, builder) -> {
+            Object rangeStartValue = rangeStart.as(javaType);
+            Object rangeEndValue = rangeEnd.as(javaType);
+            if (!(rangeStartValue instanceof Comparable<?> start) || !(rangeEndValue instanceof Comparable<?> end)) {
+                throw new IllegalArgumentException("Invalid rangeStart or rangeEnd data type");
+            }
+            return between(expression, start, end, builder);
+        };
+    }
 
-        if (!binaryOperatorsMap.containsKey(operator)) {
-            throw new IllegalArgumentException("Unsupported binary operator");
+    /*
+     * any:  exists (select 1 from <collection> e where <rhs on e>)
+     * none: not exists (select 1 from <collection> e where <rhs on e>)
+     * all:  not exists (select 1 from <collection> e where not <rhs on e>)
+     */
+    private CompiledCondition compileQuantifier(JsonNode node, String operator) {
+        String dottedPath = node.get(MainTreeKeys.lhs).asText();
+        String[] attributePath = dottedPath.split("\\.");
+        String collectionAttribute = attributePath[attributePath.length - 1];
+        JsonNode rhs = node.get(MainTreeKeys.rhs);
+        if (rhs == null && operator.equalsIgnoreCase(QuantifierOperators.all)) {
+            throw new IllegalArgumentException("the all operator requires a rhs condition");
         }
-        return binaryOperatorsMap.get(operator).execute(root, join, operator, fieldName, rhs, hint != null ? hint.asText() : null, criteriaBuilder);
+        CompiledCondition elementCondition = rhs != null ? compile(rhs) : null;
+
+        CompiledCondition quantifiedCondition = (from, query, builder) -> {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            Join<?, ?> element = correlate(subquery, from).join(collectionAttribute);
+            subquery.select(builder.literal(1));
+            if (elementCondition != null) {
+                Predicate elementPredicate = elementCondition.toPredicate(element, subquery, builder);
+                subquery.where(operator.equalsIgnoreCase(QuantifierOperators.all) ? builder.not(elementPredicate) : elementPredicate);
+            }
+            if (operator.equalsIgnoreCase(QuantifierOperators.any)) {
+                return builder.exists(subquery);
+            }
+            return builder.not(builder.exists(subquery));
+        };
+        return (from, query, builder) -> {
+            ResolvedPath resolvedPath = attributePathResolver.resolve(managedTypeOf(from), dottedPath, attributePath);
+            return navigate(from, query, builder, resolvedPath, 0, quantifiedCondition);
+        };
     }
 
-    private Predicate buildPredicateForTernaryOperator(
-            Root<T> root,
-            JsonNode node,
-            CriteriaBuilder criteriaBuilder
-    ) {
-        String operator = node.get(MainTreeKeys.operator).asText();
-        JsonNode lhs = node.get(MainTreeKeys.lhs);
-        String fieldName = lhs.asText();
-        JsonNode hint = node.get(MainTreeKeys.type);
-        JsonNode rangeStart = node.get(MainTreeKeys.rangeStart);
-        JsonNode rangeEnd = node.get(MainTreeKeys.rangeEnd);
+    /*
+     * Walks the attribute path from "from" up to the before last attribute, then applies ownerCondition on the owner of the last attribute.
+     * To-one attributes are joined (the joins are shared by all the leaves, see JoinRegistry).
+     * A to-many attribute opens a correlated EXISTS subquery and the rest of the path is walked inside it,
+     * so the root rows are never multiplied by the collection.
+     */
+    private Predicate navigate(From<?, ?> from,
+                               AbstractQuery<?> query,
+                               CriteriaBuilder builder,
+                               ResolvedPath path,
+                               int index,
+                               CompiledCondition ownerCondition) {
+        String[] attributes = path.attributes();
+        From<?, ?> current = from;
+        for (int i = index; i < attributes.length - 1; i++) {
+            if (path.isToMany(i)) {
+                Subquery<Integer> subquery = query.subquery(Integer.class);
+                Join<?, ?> element = correlate(subquery, current).join(attributes[i]);
+                Predicate elementPredicate = navigate(element, subquery, builder, path, i + 1, ownerCondition);
+                subquery.select(builder.literal(1)).where(elementPredicate);
+                return builder.exists(subquery);
+            }
+            current = JoinRegistry.getOrCreate(current, attributes[i], JoinType.INNER);
+        }
+        return ownerCondition.toPredicate(current, query, builder);
+    }
 
-        Join<T, ?> join = null;
-        if (fieldName.contains(".")) {
-            String[] attributePath = fieldName.split("\\.");
+    private From<?, ?> correlate(Subquery<?> subquery, From<?, ?> from) {
+        if (from instanceof Root<?> root) {
+            return subquery.correlate(root);
+        }
+        if (from instanceof Join<?, ?> join) {
+            return subquery.correlate(join);
+        }
+        throw new IllegalArgumentException("unable to correlate %s".formatted(from.getJavaType().getName()));
+    }
 
-            join = root.join(attributePath[0]);
-            if (attributePath.length > 1) {
-                for (int i = 1; i < attributePath.length - 1; i++) {
-                    join = join.join(attributePath[i]);
-                }
+    private ManagedType<?> managedTypeOf(From<?, ?> from) {
+        if (from instanceof Root<?> root) {
+            return root.getModel();
+        }
+        if (from instanceof Join<?, ?> join) {
+            Attribute<?, ?> attribute = join.getAttribute();
+            Type<?> type = attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute
+                    ? pluralAttribute.getElementType()
+                    : ((SingularAttribute<?, ?>) attribute).getType();
+            if (type instanceof ManagedType<?> managedType) {
+                return managedType;
             }
         }
+        throw new IllegalArgumentException("%s is not an entity nor an embeddable".formatted(from.getJavaType().getName()));
+    }
 
-        switch (operator) {
-            case "between":
-                if (hint != null && hint.asText().equals("Date")) {
-                    LocalDate ranteStartAsDate = LocalDate.parse(rangeStart.asText());
-                    LocalDate ranteEndAsDate = LocalDate.parse(rangeEnd.asText());
-                    return criteriaBuilder.between(join != null ? join.get(fieldName) : root.get(fieldName), ranteStartAsDate, ranteEndAsDate);
-                }
+    private boolean isTernaryOperator(String operator) {
+        return operator.equalsIgnoreCase("between");
+    }
 
-                if (rangeStart.isInt()) {
-                    return criteriaBuilder.between(join != null ? join.get(fieldName) : root.get(fieldName), rangeStart.asInt(), rangeEnd.asInt());
-                }
-                if (rangeStart.isFloat()) {
-                    return criteriaBuilder.between(join != null ? join.get(fieldName) : root.get(fieldName), rangeStart.asDouble(), rangeEnd.asDouble());
-                }
-                throw new IllegalArgumentException("Invalid rangeStart or rangeEnd data type");
+    private Predicate isEqualPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.equal(expression, parameter) : criteriaBuilder.equal(expression, value);
+    }
+
+    private Predicate isNotEqualPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.notEqual(expression, parameter) : criteriaBuilder.notEqual(expression, value);
+    }
+
+    private Predicate isLessOrEqualPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.lessThanOrEqualTo(expression, parameter) : criteriaBuilder.lessThanOrEqualTo(expression, (Comparable) value);
+    }
+
+    private Predicate isLessPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.lessThan(expression, parameter) : criteriaBuilder.lessThan(expression, (Comparable) value);
+    }
+
+    private Predicate isGreaterPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.greaterThan(expression, parameter) : criteriaBuilder.greaterThan(expression, (Comparable) value);
+    }
+
+    private Predicate isGreaterOrEqualPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.greaterThanOrEqualTo(expression, parameter) : criteriaBuilder.greaterThanOrEqualTo(expression, (Comparable) value);
+    }
+
+    private Predicate isLikePredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        Expression parameter = bindParameter(expression, value, criteriaBuilder);
+        return parameter != null ? criteriaBuilder.like(expression, parameter) : criteriaBuilder.like(expression, (String) value);
+    }
+
+    /*
+     * The values are already converted and deduplicated (see LeafValue). The strategy depends on their number:
+     * up to the chunk size: one IN list.
+     * above: IN lists of chunk size values each, ORed, so no list exceeds the dialect limit (1000 on Oracle for example).
+     */
+    private Predicate isInPredicate(Expression expression, Object value, CriteriaBuilder criteriaBuilder) {
+        List<?> values = (List<?>) value;
+        int chunkSize = getInListChunkSize();
+        if (values.size() <= chunkSize) {
+            return inPredicate(expression, values, chunkSize, criteriaBuilder);
+        }
+        var chunks = new ArrayList<Predicate>(values.size() / chunkSize + 1);
+        for (int start = 0; start < values.size(); start += chunkSize) {
+            var chunk = values.subList(start, Math.min(start + chunkSize, values.size()));
+            chunks.add(inPredicate(expression, chunk, chunkSize, criteriaBuilder));
+        }
+        return criteriaBuilder.or(chunks.toArray(new Predicate[0]));
+    }
+
+    private Predicate inPredicate(Expression<?> expression, List<?> values, int chunkSize, CriteriaBuilder criteriaBuilder) {
+        var parameterScope = ParameterScope.current();
+        return parameterScope != null ? bindInParameters(expression, values, chunkSize, parameterScope, criteriaBuilder) : expression.in(values);
+    }
 
-            default:
-                throw new IllegalArgumentException("Unsupported ternary operator");
+    /**
+     * @return the max number of values of one IN list: xrest.condition.in-list.chunk-size,
+     * lowered to the IN list limit of the database dialect if there is one.
+     */
+    public int getInListChunkSize() {
+        if (effectiveInListChunkSize == 0) {
+            int dialectLimit = getDialectInListLimit();
+            effectiveInListChunkSize = Math.max(1, dialectLimit > 0 ? Math.min(inListChunkSize, dialectLimit) : inListChunkSize);
         }
+        return effectiveInListChunkSize;
     }
-}
\ No newline at end of file
+
+    private int getDialectInListLimit() {
+        if (entityManagerFactory == null) {
+            return 0;
+        }
+        try {
+            return entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect().getInExpressionCountLimit();
+        } catch (PersistenceException e) {
+            return 0;
+        }
+    }
+
+    private Predicate between(Expression expression, Comparable rangeStart, Comparable rangeEnd, CriteriaBuilder criteriaBuilder) {
+        Expression rangeStartParameter = bindParameter(expression, rangeStart, criteriaBuilder);
+        if (rangeStartParameter == null) {
+            return criteriaBuilder.between(expression, rangeStart, rangeEnd);
+        }
+        Expression rangeEndParameter = bindParameter(expression, rangeEnd, criteriaBuilder);
+        return criteriaBuilder.between(expression, rangeStartParameter, rangeEndParameter);
+    }
+
+    /*
+     * When a ParameterScope is open, the value is replaced by a query parameter (bound later by the scope owner).
+     * returns null otherwise: the value is handed to the criteria builder as is.
+     */
+    private Expression<?> bindParameter(Expression<?> expression, Object value, CriteriaBuilder criteriaBuilder) {
+        var parameterScope = ParameterScope.current();
+        if (parameterScope == null) {
+            return null;
+        }
+        return parameterScope.bind(criteriaBuilder, expression.getJavaType(), value);
+    }
+
+    /*
+     * In lists are padded to the next power of two (at most the chunk size) by repeating their last value,
+     * so lists of 5 to 8 values share one SQL text (same as hibernate.query.in_clause_parameter_padding).
+     */
+    private Predicate bindInParameters(Expression<?> expression, List<?> values, int chunkSize, ParameterScope parameterScope, CriteriaBuilder criteriaBuilder) {
+        int paddedSize = values.size() <= 1 ? values.size() : Math.min(Integer.highestOneBit(values.size() - 1) << 1, chunkSize);
+        var parameters = new Expression<?>[paddedSize];
+        for (int i = 0; i < paddedSize; i++) {
+            Object value = values.get(Math.min(i, values.size() - 1));
+            parameters[i] = parameterScope.bind(criteriaBuilder, expression.getJavaType(), value);
+        }
+        return expression.in(parameters);
+    }
+
+    private final HashMap<String, BuilderPredicate> binaryOperatorsMap = new HashMap<>();
+
+    private final AttributePathResolver attributePathResolver = new AttributePathResolver();
+
+    @Value("${xrest.condition.in-list.chunk-size:" + DEFAULT_IN_LIST_CHUNK_SIZE + "}")
+    private int inListChunkSize = DEFAULT_IN_LIST_CHUNK_SIZE;
+
+    private volatile int effectiveInListChunkSize;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+}
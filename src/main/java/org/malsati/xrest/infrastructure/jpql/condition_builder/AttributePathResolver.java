@@ -0,0 +1,57 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the attribute paths of JSON conditions against the JPA metamodel, once per owner type and path.<br>
+ * The result (which attributes are collections, and the java type of the last attribute) is cached,
+ * so applying a compiled condition doesn't walk the metamodel again.
+ */
+public class AttributePathResolver {
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, ResolvedPath>> resolvedPaths = new ConcurrentHashMap<>();
+
+    /**
+     * @param ownerType the entity (or embeddable) the path starts from
+     * @param dottedPath the path as written in the condition, for example books.title
+     * @param attributes the path split by '.'
+     * @return the resolved path
+     * @throws IllegalArgumentException if an attribute of the path doesn't exist
+     */
+    public ResolvedPath resolve(ManagedType<?> ownerType, String dottedPath, String[] attributes) {
+        var ownerPaths = resolvedPaths.computeIfAbsent(ownerType.getJavaType(), type -> new ConcurrentHashMap<>());
+        var resolvedPath = ownerPaths.get(dottedPath);
+        if (resolvedPath == null) {
+            resolvedPath = walk(ownerType, dottedPath, attributes);
+            ownerPaths.putIfAbsent(dottedPath, resolvedPath);
+        }
+        return resolvedPath;
+    }
+
+    private static ResolvedPath walk(ManagedType<?> ownerType, String dottedPath, String[] attributes) {
+        boolean[] toMany = new boolean[attributes.length];
+        ManagedType<?> current = ownerType;
+        Class<?> javaType = null;
+        for (int i = 0; i < attributes.length; i++) {
+            if (current == null) {
+                throw new IllegalArgumentException("invalid path %s: %s is not a relation nor an embeddable".formatted(dottedPath, attributes[i - 1]));
+            }
+            Attribute<?, ?> attribute = current.getAttribute(attributes[i]);
+            Type<?> type;
+            if (attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute) {
+                toMany[i] = true;
+                type = pluralAttribute.getElementType();
+            } else {
+                type = ((SingularAttribute<?, ?>) attribute).getType();
+            }
+            javaType = type.getJavaType();
+            current = type instanceof ManagedType<?> managedType ? managedType : null;
+        }
+        return new ResolvedPath(attributes, toMany, javaType);
+    }
+}
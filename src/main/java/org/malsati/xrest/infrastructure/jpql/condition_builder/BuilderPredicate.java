@@ -1,18 +1,16 @@
 package org.malsati.xrest.infrastructure.jpql.condition_builder;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
-import jakarta.persistence.criteria.Root;
 
+/**
+ * Builds the predicate of a binary operator.
+ * The value is already converted to the java type of the expression (a List for the in operator).
+ */
 @FunctionalInterface
-public interface BuilderPredicate<T> {
-    Predicate execute(Root<T> root,
-                      Join<T, ?> join,
-                      String operator,
-                      String fieldName,
-                      JsonNode value,
-                      String hint,
+public interface BuilderPredicate {
+    Predicate execute(Expression<?> expression,
+                      Object value,
                       CriteriaBuilder criteriaBuilder);
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Predicate;
+
+/**
+ * A compiled node of a JSON condition.<br>
+ * Unlike a Specification, it's applied relative to any {@link From} (the query root, or a collection element inside a subquery),
+ * and the query is the one the predicate belongs to (the main query or a subquery).
+ */
+@FunctionalInterface
+public interface CompiledCondition {
+    Predicate toPredicate(From<?, ?> from, AbstractQuery<?> query, CriteriaBuilder builder);
+}
@@ -0,0 +1,84 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+/**
+ * The limits a JSON condition has to fit in before it's executed (see {@link ConditionCost}).<br>
+ * A condition exceeding one of the max limits is rejected. A condition whose weight exceeds maxWeightWithTotal is still executed,
+ * but without a count query: getMany rejects an explicit withTotal = true and otherwise returns a slice (hasNext instead of totalPages and totalItems).<br>
+ * Services are {@link #UNLIMITED} unless they set their own budget.
+ *
+ * example: a service accepting at most 2 unanchored like leaves
+ * <pre>{@code
+ * conditionBudget = ConditionBudget.DEFAULT.withMaxUnanchoredLikes(2);
+ * }</pre>
+ */
+public record ConditionBudget(int maxDepth,
+                              int maxLeaves,
+                              int maxJoins,
+                              int maxToMany,
+                              int maxUnanchoredLikes,
+                              int maxWeight,
+                              int maxWeightWithTotal) {
+    public static final ConditionBudget DEFAULT = new ConditionBudget(16, 1024, 16, 32, 8, 2048, 64);
+    public static final ConditionBudget UNLIMITED = new ConditionBudget(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * @return a description of the first exceeded limit, or null if the cost fits in the budget.
+     */
+    public String findExceededLimit(ConditionCost cost) {
+        if (cost.depth() > maxDepth) {
+            return "depth %d exceeds %d".formatted(cost.depth(), maxDepth);
+        }
+        if (cost.leafCount() > maxLeaves) {
+            return "%d leaves exceed %d".formatted(cost.leafCount(), maxLeaves);
+        }
+        if (cost.joinCount() > maxJoins) {
+            return "%d joins exceed %d".formatted(cost.joinCount(), maxJoins);
+        }
+        if (cost.toManyCount() > maxToMany) {
+            return "%d to-many navigations exceed %d".formatted(cost.toManyCount(), maxToMany);
+        }
+        if (cost.unanchoredLikeCount() > maxUnanchoredLikes) {
+            return "%d like patterns starting with a wildcard exceed %d".formatted(cost.unanchoredLikeCount(), maxUnanchoredLikes);
+        }
+        if (cost.weight() > maxWeight) {
+            return "weight %d exceeds %d".formatted(cost.weight(), maxWeight);
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the matching rows can be counted for a paginated response.
+     */
+    public boolean isTotalAffordable(ConditionCost cost) {
+        return cost.weight() <= maxWeightWithTotal;
+    }
+
+    public ConditionBudget withMaxDepth(int maxDepth) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+
+    public ConditionBudget withMaxLeaves(int maxLeaves) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+
+    public ConditionBudget withMaxJoins(int maxJoins) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+
+    public ConditionBudget withMaxToMany(int maxToMany) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+
+    public ConditionBudget withMaxUnanchoredLikes(int maxUnanchoredLikes) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+
+    public ConditionBudget withMaxWeight(int maxWeight) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+
+    public ConditionBudget withMaxWeightWithTotal(int maxWeightWithTotal) {
+        return new ConditionBudget(maxDepth, maxLeaves, maxJoins, maxToMany, maxUnanchoredLikes, maxWeight, maxWeightWithTotal);
+    }
+}
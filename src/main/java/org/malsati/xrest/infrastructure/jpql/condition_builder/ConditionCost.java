@@ -0,0 +1,27 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+/**
+ * The estimated cost of a JSON condition applied to an entity.
+ *
+ * @param depth the nesting depth of the condition, a chain of the same logical operator counts as one level
+ * @param leafCount the number of leaves (comparisons)
+ * @param joinCount the number of distinct to-one relations joined
+ * @param toManyCount the number of to-many relations navigated, each one is an EXISTS subquery
+ * @param unanchoredLikeCount the number of like leaves whose pattern starts with a wildcard
+ */
+public record ConditionCost(int depth, int leafCount, int joinCount, int toManyCount, int unanchoredLikeCount) {
+    public static final int LEAF_WEIGHT = 1;
+    public static final int JOIN_WEIGHT = 2;
+    public static final int TO_MANY_WEIGHT = 4;
+    public static final int UNANCHORED_LIKE_WEIGHT = 8;
+
+    /**
+     * @return a single figure summing the weighted counts, an unanchored like is 8 times a plain leaf.
+     */
+    public int weight() {
+        return leafCount * LEAF_WEIGHT +
+                joinCount * JOIN_WEIGHT +
+                toManyCount * TO_MANY_WEIGHT +
+                unanchoredLikeCount * UNANCHORED_LIKE_WEIGHT;
+    }
+}
@@ -0,0 +1,97 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reads the nodes of a JSON condition: operators, children of the and/or nodes (binary or n-ary).
+ * Shared by the compilers of the condition grammar.
+ */
+public final class ConditionNodes {
+    private ConditionNodes() {
+    }
+
+    /**
+     * The operands of an and/or node, where the descendants having the same operator are replaced by their own operands:
+     * a &amp;&amp; (b &amp;&amp; (c || d)) gives [a, b, (c || d)].
+     */
+    public static List<JsonNode> flattenOperands(JsonNode node, boolean isConjunction) {
+        List<JsonNode> operands = new ArrayList<>();
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        pushChildren(node, pending);
+        while (!pending.isEmpty()) {
+            JsonNode child = pending.pop();
+            if (isLogical(child) && isConjunction(operatorOf(child)) == isConjunction) {
+                pushChildren(child, pending);
+            } else {
+                operands.add(child);
+            }
+        }
+        if (operands.isEmpty()) {
+            throw new IllegalArgumentException("the %s operator requires at least one operand".formatted(operatorOf(node)));
+        }
+        return operands;
+    }
+
+    // pushed in reverse, so they are popped in the order of the condition
+    private static void pushChildren(JsonNode node, Deque<JsonNode> pending) {
+        List<JsonNode> children = childrenOf(node);
+        for (int i = children.size() - 1; i >= 0; i--) {
+            pending.push(children.get(i));
+        }
+    }
+
+    /**
+     * @return the children of an and/or node: the args array, or lhs and rhs.
+     */
+    public static List<JsonNode> childrenOf(JsonNode node) {
+        JsonNode args = node.get(MainTreeKeys.args);
+        if (args != null) {
+            if (!args.isArray()) {
+                throw new IllegalArgumentException("the args of the %s operator must be an array".formatted(operatorOf(node)));
+            }
+            var children = new ArrayList<JsonNode>(args.size());
+            args.forEach(children::add);
+            return children;
+        }
+        JsonNode lhs = node.get(MainTreeKeys.lhs);
+        JsonNode rhs = node.get(MainTreeKeys.rhs);
+        if (lhs == null || rhs == null) {
+            throw new IllegalArgumentException("the %s operator requires lhs and rhs, or an args array".formatted(operatorOf(node)));
+        }
+        return List.of(lhs, rhs);
+    }
+
+    public static String operatorOf(JsonNode node) {
+        JsonNode operator = node.get(MainTreeKeys.operator);
+        if (operator == null) {
+            throw new IllegalArgumentException("a condition requires an op");
+        }
+        return operator.asText();
+    }
+
+    public static boolean isLogical(JsonNode node) {
+        return node.isObject() && isLogical(operatorOf(node));
+    }
+
+    public static boolean isLogical(String operator) {
+        return isConjunction(operator) ||
+                operator.equalsIgnoreCase(LogicalOperators.or) ||
+                operator.equalsIgnoreCase(LogicalOperators.orWord);
+    }
+
+    public static boolean isConjunction(String operator) {
+        return operator.equalsIgnoreCase(LogicalOperators.and) ||
+                operator.equalsIgnoreCase(LogicalOperators.andWord);
+    }
+
+    public static boolean isQuantifier(String operator) {
+        return operator.equalsIgnoreCase(QuantifierOperators.any) ||
+                operator.equalsIgnoreCase(QuantifierOperators.none) ||
+                operator.equalsIgnoreCase(QuantifierOperators.all);
+    }
+}
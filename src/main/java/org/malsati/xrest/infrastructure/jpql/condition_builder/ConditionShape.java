@@ -0,0 +1,31 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import java.util.List;
+
+/**
+ * The structure of a JSON condition, measured once when the condition is compiled.
+ * It doesn't depend on the entity the condition is applied to (the relations are only known from the metamodel of that entity).
+ *
+ * @param depth the nesting depth of the condition, a chain of the same logical operator counts as one level
+ * @param leafCount the number of leaves (comparisons)
+ * @param unanchoredLikeCount the number of like leaves whose pattern starts with a wildcard (they can't seek an index)
+ * @param navigations the attribute paths navigated by the leaves and the quantifiers
+ * @param comparisons the attributes compared by the leaves
+ */
+public record ConditionShape(int depth, int leafCount, int unanchoredLikeCount, List<Navigation> navigations, List<Comparison> comparisons) {
+    /**
+     * @param dottedPath the path from the root entity, including the paths of the enclosing quantifiers
+     * @param scopeLength the number of leading attributes already navigated by the enclosing quantifiers
+     * @param navigatedLength the number of leading attributes navigated (all of them for a quantifier, all but the last for a leaf)
+     */
+    public record Navigation(String dottedPath, int scopeLength, int navigatedLength) {
+    }
+
+    /**
+     * @param dottedPath the path of the compared attribute from the root entity, including the paths of the enclosing quantifiers
+     * @param operator the operator of the leaf
+     * @param isUnanchoredLike true for a like pattern starting with a wildcard
+     */
+    public record Comparison(String dottedPath, String operator, boolean isUnanchoredLike) {
+    }
+}
@@ -0,0 +1,34 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+
+/**
+ * Hands back the same {@link Join} for a given attribute path and join type within one query.<br>
+ * The joins already made are looked up on the query roots themselves ({@link From#getJoins()}), so the registry keeps no state:
+ * it is naturally scoped to the query being built, and a compiled (cached) specification can be applied to many queries.<br>
+ *
+ * It's used for to-one attributes (to-many attributes are compiled as EXISTS subqueries).<br>
+ * example: the leaves of this condition share one join on publisher
+ * <pre>{@code
+ * {
+ *     "op": "&&",
+ *     "lhs": { "op": "=", "lhs": "publisher.country", "rhs": "UK" },
+ *     "rhs": { "op": "like", "lhs": "publisher.name", "rhs": "%Press%" }
+ * }
+ * }</pre>
+ */
+public class JoinRegistry {
+    /**
+     * @return the join of the attribute already made on from with the same join type, or a new join if there is none.
+     */
+    public static Join<?, ?> getOrCreate(From<?, ?> from, String attribute, JoinType joinType) {
+        for (Join<?, ?> join : from.getJoins()) {
+            if (join.getJoinType() == joinType && join.getAttribute().getName().equals(attribute)) {
+                return join;
+            }
+        }
+        return from.join(attribute, joinType);
+    }
+}
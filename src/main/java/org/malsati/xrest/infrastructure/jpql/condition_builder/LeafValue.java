@@ -0,0 +1,147 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.malsati.xrest.utilities.conversion.ValueConverter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The value of a condition leaf (rhs, range1 or range2), converted to the exact java type of the compared attribute.<br>
+ * The conversion is done once: the converted value is kept for the type it was converted to
+ * (a compiled condition is almost always applied to the same entity).<br>
+ * If the attribute type isn't supported by {@link ValueConverter}, the value is taken from the JSON as is
+ * (the "type": "Date" hint makes it a date).
+ */
+public class LeafValue {
+    private record Converted(Class<?> type, Object value) {
+    }
+
+    private final JsonNode node;
+    private final String hint;
+    private final List<JsonNode> elements;
+    private volatile Converted converted;
+
+    private LeafValue(JsonNode node, String hint, List<JsonNode> elements) {
+        this.node = node;
+        this.hint = hint;
+        this.elements = elements;
+    }
+
+    public static LeafValue of(JsonNode node, String hint) {
+        if (node == null) {
+            throw new IllegalArgumentException("missing value");
+        }
+        return new LeafValue(node, hint, null);
+    }
+
+    /**
+     * A list of values: a JSON array, for example [1, 2, 3],
+     * or one text whose values are separated by commas, for example "1, 2, 3".
+     */
+    public static LeafValue listOf(JsonNode node, String hint) {
+        if (node == null) {
+            throw new IllegalArgumentException("missing value");
+        }
+        var elements = new ArrayList<JsonNode>();
+        if (node.isArray()) {
+            // null elements can't match anything in an in list
+            node.elements().forEachRemaining(element -> {
+                if (!element.isNull()) {
+                    elements.add(element);
+                }
+            });
+        } else {
+            for (var token : node.asText().split(",\\s*")) {
+                elements.add(TextNode.valueOf(token));
+            }
+        }
+        return new LeafValue(node, hint, elements);
+    }
+
+    public String text() {
+        return node.asText();
+    }
+
+    /**
+     * @return the number of values of a list (duplicates included), 1 for a single value.
+     */
+    public int size() {
+        return elements != null ? elements.size() : 1;
+    }
+
+    /**
+     * @param type the java type of the compared attribute
+     * @return the value converted to type (a List for a list of values)
+     */
+    public Object as(Class<?> type) {
+        var last = converted;
+        if (last != null && last.type() == type) {
+            return last.value();
+        }
+        Object value = elements != null ? convertElements(type) : convert(type);
+        converted = new Converted(type, value);
+        return value;
+    }
+
+    private Object convert(Class<?> type) {
+        return convert(node, type);
+    }
+
+    private Object convert(JsonNode valueNode, Class<?> type) {
+        if (type != null && ValueConverter.isSupported(type)) {
+            return ValueConverter.fromJson(valueNode, type);
+        }
+        if (isDateHint()) {
+            return LocalDate.parse(valueNode.asText());
+        }
+        if (valueNode.isBoolean()) {
+            return valueNode.asBoolean();
+        }
+        if (valueNode.isInt()) {
+            return valueNode.asInt();
+        }
+        if (valueNode.isNumber()) {
+            return valueNode.numberValue();
+        }
+        if (valueNode.isTextual()) {
+            return valueNode.asText();
+        }
+        throw new IllegalArgumentException("Unsupported rhs data type");
+    }
+
+    /*
+     * The elements are converted, then deduplicated: Long and Integer keys through sorted primitive arrays
+     * (large id lists are the common case), the other types through a LinkedHashSet.
+     */
+    private List<?> convertElements(Class<?> type) {
+        Class<?> elementType = type != null ? ValueConverter.wrap(type) : null;
+        if (elementType == Long.class) {
+            long[] values = new long[elements.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (Long) convert(elements.get(i), type);
+            }
+            return List.of(Arrays.stream(values).sorted().distinct().boxed().toArray(Long[]::new));
+        }
+        if (elementType == Integer.class) {
+            int[] values = new int[elements.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (Integer) convert(elements.get(i), type);
+            }
+            return List.of(Arrays.stream(values).sorted().distinct().boxed().toArray(Integer[]::new));
+        }
+        var values = new LinkedHashSet<>(elements.size());
+        for (var element : elements) {
+            values.add(convert(element, type));
+        }
+        return List.copyOf(values);
+    }
+
+    private boolean isDateHint() {
+        return hint != null && hint.equalsIgnoreCase("Date");
+    }
+}
@@ -0,0 +1,11 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+/**
+ * Operators combining conditions. A node is either binary (lhs and rhs) or n-ary (an args array).
+ */
+public class LogicalOperators {
+    public static final String and = "&&";
+    public static final String or = "||";
+    public static final String andWord = "and";
+    public static final String orWord = "or";
+}
@@ -4,6 +4,7 @@ public class MainTreeKeys {
     public static final String operator = "op";
     public static final String lhs = "lhs";     // Left hand side
     public static final String rhs = "rhs";     // Right hand side
+    public static final String args = "args";   // The children of an n-ary and/or node
     public static final String rangeStart = "range1";
     public static final String rangeEnd = "range2";
     public static final String type = "type";
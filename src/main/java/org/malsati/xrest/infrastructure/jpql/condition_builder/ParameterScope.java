@@ -0,0 +1,88 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+import jakarta.persistence.Parameter;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.ParameterExpression;
+import org.malsati.xrest.utilities.conversion.ValueConverter;
+import org.malsati.xrest.utilities.tuples.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the values of a JSON condition as query parameters while the predicate is being built, then binds them to the query.<br>
+ * While a scope is open on the current thread, {@link org.malsati.xrest.infrastructure.jpql.SpecificationBuilder} turns every
+ * leaf value into a {@link ParameterExpression} instead of handing the value itself to the criteria tree.
+ * So the SQL text only depends on the shape of the condition: two conditions that only differ in their values produce
+ * the same SQL and hit the same Hibernate query plan and JDBC prepared statement.<br>
+ * The query has to be created and executed by the code that opened the scope:
+ * <pre>{@code
+ * try (var parameterScope = ParameterScope.open()) {
+ *     var predicate = specification.toPredicate(root, query, builder);
+ *     ...
+ *     var typedQuery = parameterScope.bindTo(entityManager.createQuery(query));
+ *     return typedQuery.getResultList();
+ * }
+ * }</pre>
+ */
+public class ParameterScope implements AutoCloseable {
+    private static final ThreadLocal<ParameterScope> current = new ThreadLocal<>();
+
+    private final ParameterScope previous;
+    private final List<Pair<ParameterExpression<?>, Object>> bindings = new ArrayList<>();
+
+    private ParameterScope(ParameterScope previous) {
+        this.previous = previous;
+    }
+
+    public static ParameterScope open() {
+        var scope = new ParameterScope(current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the scope opened on the current thread, null if there is none.
+     */
+    public static ParameterScope current() {
+        return current.get();
+    }
+
+    /**
+     * Creates a parameter typed after the compared expression and records its value.
+     * The value is converted to that type if needed (for example a JSON integer compared to a Long id).
+     * @param builder the criteria builder of the query
+     * @param type the java type of the compared expression
+     * @param value the value to bind
+     * @return the parameter to use in the predicate in place of the value
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ParameterExpression<?> bind(CriteriaBuilder builder, Class<?> type, Object value) {
+        Class<?> parameterType = type == null || type == Object.class ? value.getClass() : ValueConverter.wrap(type);
+        Object parameterValue = value;
+        if (!parameterType.isInstance(value)) {
+            parameterValue = ValueConverter.fromString(String.valueOf(value), parameterType);
+        }
+        ParameterExpression parameter = builder.parameter(parameterType);
+        bindings.add(new Pair<>(parameter, parameterValue));
+        return parameter;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Q extends Query> Q bindTo(Q query) {
+        for (var binding : bindings) {
+            query.setParameter((Parameter<Object>) binding.first(), binding.second());
+        }
+        return query;
+    }
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            current.set(previous);
+            return;
+        }
+        current.remove();
+    }
+}
@@ -0,0 +1,11 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+/**
+ * Operators applying a condition to the elements of a collection attribute (lhs) through an EXISTS subquery.
+ * The rhs condition is relative to one element of the collection.
+ */
+public class QuantifierOperators {
+    public static final String any = "any";     // at least one element satisfies rhs
+    public static final String none = "none";   // no element satisfies rhs
+    public static final String all = "all";     // every element satisfies rhs (true for an empty collection)
+}
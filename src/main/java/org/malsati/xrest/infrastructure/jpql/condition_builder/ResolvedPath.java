@@ -0,0 +1,14 @@
+package org.malsati.xrest.infrastructure.jpql.condition_builder;
+
+/**
+ * An attribute path of a JSON condition resolved against the JPA metamodel.
+ *
+ * @param attributes the attributes of the path, for example [books, title]
+ * @param toMany toMany[i] is true if attributes[i] is a collection (compiled as an EXISTS subquery)
+ * @param javaType the java type of the last attribute (the element type if it's a collection)
+ */
+public record ResolvedPath(String[] attributes, boolean[] toMany, Class<?> javaType) {
+    public boolean isToMany(int index) {
+        return toMany[index];
+    }
+}
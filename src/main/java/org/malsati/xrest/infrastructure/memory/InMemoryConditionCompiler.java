@@ -0,0 +1,463 @@
+package org.malsati.xrest.infrastructure.memory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.malsati.xrest.infrastructure.jpql.SpecificationBuilder;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.BinaryOperators;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionNodes;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.LeafValue;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.MainTreeKeys;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.QuantifierOperators;
+import org.malsati.xrest.utilities.cache.BoundedLruCache;
+import org.malsati.xrest.utilities.cache.CacheStatistics;
+import org.malsati.xrest.utilities.conversion.ValueConverter;
+import org.malsati.xrest.utilities.json.JsonCanonicalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the JSON conditions (the grammar of {@link SpecificationBuilder}) to a {@link Predicate} evaluated on entities in memory,
+ * to filter cached entities, change events or in-memory stand-ins of a repository without querying the database.<br>
+ * The attributes are read through method handles (the getter, or the field if there is none) resolved once per class and attribute,
+ * and the condition values are converted once, at compilation, to the java type of the compared attribute.
+ * The compiled predicates are kept in a bounded LRU cache (sized by the xrest.condition-cache properties).<br>
+ * The evaluation follows the SQL semantics of the other backends:
+ * <ul>
+ * <li>a comparison with a null attribute is false (also for !=), "=" null and "!=" null test for null</li>
+ * <li>a path through a to-many relation is true if one element satisfies the rest of the path (like the EXISTS subquery)</li>
+ * <li>a path through a null to-one relation is false (like the inner join)</li>
+ * <li>all is NOT EXISTS (an element not satisfying rhs): an element whose comparison is unknown, because of a null, doesn't break it</li>
+ * <li>like patterns are case sensitive, % and _ are the only wildcards</li>
+ * </ul>
+ * Texts are compared by {@link String#compareTo(String)}, which may differ from the collation of the database for &lt; and &gt;.<br>
+ * Lazy relations are read through their getters, so evaluating a path through an uninitialized relation requires an open session.
+ *
+ * <pre>{@code
+ * Predicate<Book> isLong = inMemoryConditionCompiler.compile(Book.class, "{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 400 }");
+ * List<Book> longBooks = cachedBooks.stream().filter(isLong).toList();
+ * }</pre>
+ */
+@Component
+public class InMemoryConditionCompiler {
+    private static final long CACHE_ENTRY_OVERHEAD = 64;
+
+    private final ObjectMapper jsonParser;
+    private final int maxConditionLength;
+    private final BoundedLruCache<String, Predicate<Object>> predicateCache;
+    private final Map<Class<?>, Map<String, AttributeAccessor>> accessors = new ConcurrentHashMap<>();
+
+    public InMemoryConditionCompiler() {
+        this(SpecificationBuilder.DEFAULT_CACHE_MAX_ENTRIES, SpecificationBuilder.DEFAULT_CACHE_MAX_WEIGHT,
+                SpecificationBuilder.DEFAULT_MAX_CONDITION_LENGTH, SpecificationBuilder.DEFAULT_MAX_CONDITION_NESTING_DEPTH);
+    }
+
+    @Autowired
+    public InMemoryConditionCompiler(@Value("${xrest.condition-cache.max-entries:" + SpecificationBuilder.DEFAULT_CACHE_MAX_ENTRIES + "}") int cacheMaxEntries,
+                                     @Value("${xrest.condition-cache.max-weight:" + SpecificationBuilder.DEFAULT_CACHE_MAX_WEIGHT + "}") long cacheMaxWeight,
+                                     @Value("${xrest.condition.max-length:" + SpecificationBuilder.DEFAULT_MAX_CONDITION_LENGTH + "}") int maxConditionLength,
+                                     @Value("${xrest.condition.max-nesting-depth:" + SpecificationBuilder.DEFAULT_MAX_CONDITION_NESTING_DEPTH + "}") int maxConditionNestingDepth) {
+        this.maxConditionLength = maxConditionLength;
+        predicateCache = new BoundedLruCache<>(cacheMaxEntries, cacheMaxWeight,
+                (condition, predicate) -> condition.length() + CACHE_ENTRY_OVERHEAD);
+        jsonParser = new ObjectMapper(JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxNestingDepth(maxConditionNestingDepth).build())
+                .build());
+    }
+
+    /*
+     * Reads one attribute: valueType is the java type of the attribute, or of its elements if it's a collection.
+     */
+    private record AttributeAccessor(String name, MethodHandle getter, Class<?> valueType, boolean isCollection) {
+        Object read(Object owner) {
+            try {
+                return getter.invokeExact(owner);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("unable to read %s".formatted(name), e);
+            }
+        }
+    }
+
+    /**
+     * @param entityType the class of the objects the condition is applied to
+     * @param whereCondition the condition in JSON notation
+     * @return the predicate, thread safe and reusable
+     * @throws IllegalArgumentException if the condition is malformed, or uses an attribute the class doesn't have
+     */
+    @SuppressWarnings("unchecked")
+    public <E> Predicate<E> compile(Class<E> entityType, String whereCondition) {
+        if (whereCondition.length() > maxConditionLength) {
+            throw new IllegalArgumentException("the condition is longer than %d characters".formatted(maxConditionLength));
+        }
+        JsonNode rootNode;
+        try {
+            rootNode = jsonParser.readTree(whereCondition);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("malformed JSON condition: %s".formatted(e.getOriginalMessage()), e);
+        }
+        String cacheKey = entityType.getName() + ':' + JsonCanonicalizer.canonicalize(rootNode);
+        Predicate<Object> predicate = predicateCache.get(cacheKey);
+        if (predicate == null) {
+            predicate = compileCondition(rootNode, entityType);
+            predicateCache.put(cacheKey, predicate);
+        }
+        return (Predicate<E>) predicate;
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return predicateCache.getStatistics();
+    }
+
+    public void clearCache() {
+        predicateCache.clear();
+    }
+
+    private Predicate<Object> compileCondition(JsonNode node, Class<?> ownerType) {
+        return compileCondition(node, ownerType, false);
+    }
+
+    /*
+     * The and/or nodes are compiled iteratively, like SpecificationBuilder does, and a chain of the same operator is one predicate
+     * looping over its operands, so a deep chain doesn't make a deep call stack when it's evaluated.
+     * isUnknownTrue: a comparison with a null (unknown in SQL) is true instead of false, and the predicate is then
+     * "the condition isn't false". and/or don't negate their operands, so unknown stays unknown through them.
+     */
+    private Predicate<Object> compileCondition(JsonNode node, Class<?> ownerType, boolean isUnknownTrue) {
+        if (!ConditionNodes.isLogical(node)) {
+            return compileOperand(node, ownerType, isUnknownTrue);
+        }
+        Deque<LogicalFrame> frames = new ArrayDeque<>();
+        frames.push(new LogicalFrame(node));
+        while (true) {
+            LogicalFrame frame = frames.peek();
+            if (frame.hasPendingOperand()) {
+                JsonNode operand = frame.nextOperand();
+                if (ConditionNodes.isLogical(operand)) {
+                    frames.push(new LogicalFrame(operand));
+                } else {
+                    frame.compiledOperands.add(compileOperand(operand, ownerType, isUnknownTrue));
+                }
+                continue;
+            }
+            frames.pop();
+            Predicate<Object> predicate = frame.toPredicate();
+            if (frames.isEmpty()) {
+                return predicate;
+            }
+            frames.peek().compiledOperands.add(predicate);
+        }
+    }
+
+    private static final class LogicalFrame {
+        private final boolean isConjunction;
+        private final List<JsonNode> operands;
+        private final List<Predicate<Object>> compiledOperands;
+        private int nextOperandIndex = 0;
+
+        LogicalFrame(JsonNode node) {
+            isConjunction = ConditionNodes.isConjunction(ConditionNodes.operatorOf(node));
+            operands = ConditionNodes.flattenOperands(node, isConjunction);
+            compiledOperands = new ArrayList<>(operands.size());
+        }
+
+        boolean hasPendingOperand() {
+            return nextOperandIndex < operands.size();
+        }
+
+        JsonNode nextOperand() {
+            return operands.get(nextOperandIndex++);
+        }
+
+        @SuppressWarnings("unchecked")
+        Predicate<Object> toPredicate() {
+            if (compiledOperands.size() == 1) {
+                return compiledOperands.get(0);
+            }
+            Predicate<Object>[] predicates = compiledOperands.toArray(new Predicate[0]);
+            if (isConjunction) {
+                return value -> {
+                    for (var predicate : predicates) {
+                        if (!predicate.test(value)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+            }
+            return value -> {
+                for (var predicate : predicates) {
+                    if (predicate.test(value)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private Predicate<Object> compileOperand(JsonNode node, Class<?> ownerType, boolean isUnknownTrue) {
+        String operator = ConditionNodes.operatorOf(node);
+        JsonNode lhs = node.get(MainTreeKeys.lhs);
+        if (lhs == null) {
+            throw new IllegalArgumentException("the %s operator requires a lhs".formatted(operator));
+        }
+        String[] attributePath = lhs.asText().split("\\.");
+        List<AttributeAccessor> path = resolvePath(ownerType, attributePath);
+        AttributeAccessor last = path.get(path.size() - 1);
+        List<AttributeAccessor> relations = path.subList(0, path.size() - 1);
+        if (ConditionNodes.isQuantifier(operator)) {
+            // the quantifier is applied to the collection itself, not to each of its elements
+            Predicate<Object> collectionPredicate = compileQuantifier(node, operator, last);
+            return navigate(relations, owner -> collectionPredicate.test(last.read(owner)), isUnknownTrue);
+        }
+        if (last.isCollection()) {
+            throw new IllegalArgumentException("only basic attributes can be compared: %s".formatted(last.name()));
+        }
+        Predicate<Object> valuePredicate = compileLeaf(node, operator, last, isUnknownTrue);
+        return navigate(relations, owner -> valuePredicate.test(last.read(owner)), isUnknownTrue);
+    }
+
+    /*
+     * Walks the relations of a path: a null relation doesn't match (unknown when isUnknownTrue),
+     * a collection matches if one of its elements does (an EXISTS subquery is never unknown).
+     */
+    private static Predicate<Object> navigate(List<AttributeAccessor> relations, Predicate<Object> ownerPredicate, boolean isUnknownTrue) {
+        Predicate<Object> predicate = ownerPredicate;
+        for (int i = relations.size() - 1; i >= 0; i--) {
+            AttributeAccessor relation = relations.get(i);
+            Predicate<Object> next = predicate;
+            predicate = relation.isCollection()
+                    ? owner -> {
+                        var elements = (Collection<?>) relation.read(owner);
+                        if (elements == null) {
+                            return false;
+                        }
+                        for (Object element : elements) {
+                            if (element != null && next.test(element)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                    : owner -> {
+                        Object related = relation.read(owner);
+                        return related == null ? isUnknownTrue : next.test(related);
+                    };
+        }
+        return predicate;
+    }
+
+    /*
+     * any:  one element satisfies rhs (one element exists without rhs)
+     * none: no element satisfies rhs (the collection is empty without rhs)
+     * all:  no element makes rhs false (true for an empty collection): like NOT EXISTS (... AND NOT rhs), an element with
+     *       a null compared attribute makes rhs unknown, and NOT unknown doesn't select it
+     */
+    private Predicate<Object> compileQuantifier(JsonNode node, String operator, AttributeAccessor collection) {
+        if (!collection.isCollection()) {
+            throw new IllegalArgumentException("the %s operator requires a collection: %s".formatted(operator, collection.name()));
+        }
+        JsonNode rhs = node.get(MainTreeKeys.rhs);
+        boolean isAll = operator.equalsIgnoreCase(QuantifierOperators.all);
+        if (rhs == null && isAll) {
+            throw new IllegalArgumentException("the all operator requires a rhs condition");
+        }
+        Predicate<Object> elementPredicate = rhs != null ? compileCondition(rhs, collection.valueType(), isAll) : element -> true;
+        Predicate<Object> any = value -> {
+            if (value == null) {
+                return false;
+            }
+            for (Object element : (Collection<?>) value) {
+                if (element != null && elementPredicate.test(element) != isAll) {
+                    return true;
+                }
+            }
+            return false;
+        };
+        return operator.equalsIgnoreCase(QuantifierOperators.any) ? any : any.negate();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate<Object> compileLeaf(JsonNode node, String operator, AttributeAccessor attribute, boolean isUnknownTrue) {
+        Class<?> javaType = attribute.valueType();
+        JsonNode hintNode = node.get(MainTreeKeys.type);
+        String hint = hintNode != null ? hintNode.asText() : null;
+
+        if (operator.equals("between")) {
+            Comparable start = comparableOf(LeafValue.of(node.get(MainTreeKeys.rangeStart), hint).as(javaType));
+            Comparable end = comparableOf(LeafValue.of(node.get(MainTreeKeys.rangeEnd), hint).as(javaType));
+            return value -> value == null ? isUnknownTrue : start.compareTo(value) <= 0 && end.compareTo(value) >= 0;
+        }
+        JsonNode rhs = node.get(MainTreeKeys.rhs);
+        if (rhs == null) {
+            throw new IllegalArgumentException("missing value");
+        }
+        if (operator.equals(BinaryOperators.in)) {
+            Set<Object> values = new HashSet<>();
+            for (Object element : (List<?>) LeafValue.listOf(rhs, hint).as(javaType)) {
+                values.add(normalize(element));
+            }
+            return value -> value == null ? isUnknownTrue : values.contains(normalize(value));
+        }
+        if (operator.equals(BinaryOperators.like)) {
+            Pattern pattern = likePattern(LeafValue.of(rhs, null).text());
+            return value -> value == null ? isUnknownTrue : pattern.matcher(value.toString()).matches();
+        }
+        if (rhs.isNull()) {
+            if (operator.equals(BinaryOperators.equal)) {
+                return value -> value == null;
+            }
+            if (operator.equals(BinaryOperators.notEqual)) {
+                return value -> value != null;
+            }
+            throw new IllegalArgumentException("null can only be compared by = and !=");
+        }
+        Object operand = LeafValue.of(rhs, hint).as(javaType);
+        if (operator.equals(BinaryOperators.equal) || operator.equals(BinaryOperators.notEqual)) {
+            boolean isEqual = operator.equals(BinaryOperators.equal);
+            Object normalizedOperand = normalize(operand);
+            return value -> value == null ? isUnknownTrue : normalizedOperand.equals(normalize(value)) == isEqual;
+        }
+        Comparable comparable = comparableOf(operand);
+        return switch (operator) {
+            case BinaryOperators.lessThan -> value -> value == null ? isUnknownTrue : comparable.compareTo(value) > 0;
+            case BinaryOperators.lessOrEqual -> value -> value == null ? isUnknownTrue : comparable.compareTo(value) >= 0;
+            case BinaryOperators.greaterThan -> value -> value == null ? isUnknownTrue : comparable.compareTo(value) < 0;
+            case BinaryOperators.greaterOrEqual -> value -> value == null ? isUnknownTrue : comparable.compareTo(value) <= 0;
+            default -> throw new IllegalArgumentException("Unsupported binary operator");
+        };
+    }
+
+    private static Comparable<?> comparableOf(Object value) {
+        if (!(value instanceof Comparable<?> comparable)) {
+            throw new IllegalArgumentException("Invalid rangeStart or rangeEnd data type");
+        }
+        return comparable;
+    }
+
+    // 1.0 and 1.00 are equal in SQL
+    private static Object normalize(Object value) {
+        return value instanceof BigDecimal decimal ? decimal.stripTrailingZeros() : value;
+    }
+
+    // % matches any text, _ matches one character, the rest is literal
+    private static Pattern likePattern(String pattern) {
+        var regex = new StringBuilder();
+        var literal = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            if (c != '%' && c != '_') {
+                literal.append(c);
+                continue;
+            }
+            if (!literal.isEmpty()) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '%' ? ".*" : ".");
+        }
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private List<AttributeAccessor> resolvePath(Class<?> ownerType, String[] attributes) {
+        var path = new ArrayList<AttributeAccessor>(attributes.length);
+        Class<?> type = ownerType;
+        for (String attribute : attributes) {
+            AttributeAccessor accessor = accessorOf(type, attribute);
+            path.add(accessor);
+            type = accessor.valueType();
+        }
+        return path;
+    }
+
+    private AttributeAccessor accessorOf(Class<?> type, String attribute) {
+        return accessors.computeIfAbsent(type, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(attribute, key -> createAccessor(type, attribute));
+    }
+
+    /*
+     * The getter is preferred to the field: a lazy relation may be a proxy whose fields are never set.
+     */
+    private static AttributeAccessor createAccessor(Class<?> type, String attribute) {
+        String capitalized = Character.toUpperCase(attribute.charAt(0)) + attribute.substring(1);
+        try {
+            Method getter = findGetter(type, "get" + capitalized);
+            if (getter == null) {
+                getter = findGetter(type, "is" + capitalized);
+            }
+            if (getter != null) {
+                var lookup = MethodHandles.privateLookupIn(getter.getDeclaringClass(), MethodHandles.lookup());
+                return accessorOf(attribute, lookup.unreflect(getter), getter.getReturnType(), getter.getGenericReturnType());
+            }
+            Field field = findField(type, attribute);
+            if (field == null) {
+                throw new IllegalArgumentException("unknown attribute: %s".formatted(attribute));
+            }
+            var lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            return accessorOf(attribute, lookup.unreflectGetter(field), field.getType(), field.getGenericType());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("the attribute %s can't be read".formatted(attribute), e);
+        }
+    }
+
+    private static AttributeAccessor accessorOf(String attribute, MethodHandle getter, Class<?> type, Type genericType) {
+        MethodHandle objectGetter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        if (!Collection.class.isAssignableFrom(type)) {
+            return new AttributeAccessor(attribute, objectGetter, ValueConverter.wrap(type), false);
+        }
+        if (!(genericType instanceof ParameterizedType parameterizedType)
+                || !(parameterizedType.getActualTypeArguments()[0] instanceof Class<?> elementType)) {
+            throw new IllegalArgumentException("the element type of %s is unknown".formatted(attribute));
+        }
+        return new AttributeAccessor(attribute, objectGetter, elementType, true);
+    }
+
+    private static Method findGetter(Class<?> type, String name) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == 0 && method.getReturnType() != void.class) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(name)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package org.malsati.xrest.infrastructure.sql;
+
+import java.util.List;
+
+/**
+ * A JSON condition compiled to SQL for one entity, where the entity table has the alias {@link SqlConditionCompiler#ROOT_ALIAS}:
+ * <pre>{@code
+ * select r0.* from book r0 <joins> where <where>
+ * }</pre>
+ *
+ * @param joins the joins of the to-one relations navigated by the condition (empty if there is none)
+ * @param where the condition, with a ? placeholder for every parameter
+ * @param parameters the parameters, in the order of their placeholders
+ */
+public record SqlCondition(String joins, String where, List<SqlParameter> parameters) {
+}
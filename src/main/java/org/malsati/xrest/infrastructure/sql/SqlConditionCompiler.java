@@ -0,0 +1,552 @@
+package org.malsati.xrest.infrastructure.sql;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.malsati.xrest.infrastructure.jpql.SpecificationBuilder;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.BinaryOperators;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionNodes;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.LeafValue;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.MainTreeKeys;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.QuantifierOperators;
+import org.malsati.xrest.utilities.cache.BoundedLruCache;
+import org.malsati.xrest.utilities.cache.CacheStatistics;
+import org.malsati.xrest.utilities.json.JsonCanonicalizer;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.mapping.BasicValuedModelPart;
+import org.hibernate.metamodel.mapping.EmbeddableValuedModelPart;
+import org.hibernate.metamodel.mapping.ModelPart;
+import org.hibernate.metamodel.mapping.ModelPartContainer;
+import org.hibernate.metamodel.mapping.PluralAttributeMapping;
+import org.hibernate.metamodel.mapping.internal.ToOneAttributeMapping;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.BasicType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compiles the JSON conditions (the grammar of {@link SpecificationBuilder}) straight to a SQL where clause and its parameters,
+ * without building a Criteria tree. The tables and columns are taken from the Hibernate mapping of the entity.<br>
+ * The SQL only depends on the shape of a condition (its structure, attributes and operators, not its values):
+ * it's compiled once per entity and shape and kept in a bounded LRU cache (sized by the xrest.condition-cache properties),
+ * then a condition is only parsed and its values bound.
+ * in lists are padded to the next power of two (the last value is repeated), so their lengths don't multiply the shapes.<br>
+ * The relations are navigated the way {@link SpecificationBuilder} does: to-one relations are joined (one join per path)
+ * and to-many relations are correlated EXISTS subqueries.<br>
+ * Not supported: to-one relations whose foreign key is on the other side (mappedBy), collections of values, multi-column attributes.
+ *
+ * example: { "op": "=", "lhs": "authors.fullName", "rhs": "Stephen King" } on Book gives
+ * <pre>{@code
+ * exists (select 1 from author_books c2 join Author e1 on e1.id = c2.author_id where c2.book_id = r0.id and e1.full_name = ?)
+ * }</pre>
+ */
+@Component
+public class SqlConditionCompiler {
+    public static final String ROOT_ALIAS = "r0";
+    private static final long CACHE_ENTRY_OVERHEAD = 64;
+
+    private static final Map<String, String> comparisonOperators = Map.of(
+            BinaryOperators.equal, "=",
+            BinaryOperators.notEqual, "<>",
+            BinaryOperators.lessThan, "<",
+            BinaryOperators.lessOrEqual, "<=",
+            BinaryOperators.greaterThan, ">",
+            BinaryOperators.greaterOrEqual, ">=",
+            BinaryOperators.like, "like"
+    );
+
+    private final SpecificationBuilder<?> specificationBuilder;
+    private final ObjectMapper jsonParser;
+    private final BoundedLruCache<String, SqlTemplate> templateCache;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    public SqlConditionCompiler(SpecificationBuilder<?> specificationBuilder,
+                                @Value("${xrest.condition-cache.max-entries:" + SpecificationBuilder.DEFAULT_CACHE_MAX_ENTRIES + "}") int cacheMaxEntries,
+                                @Value("${xrest.condition-cache.max-weight:" + SpecificationBuilder.DEFAULT_CACHE_MAX_WEIGHT + "}") long cacheMaxWeight,
+                                @Value("${xrest.condition.max-nesting-depth:" + SpecificationBuilder.DEFAULT_MAX_CONDITION_NESTING_DEPTH + "}") int maxConditionNestingDepth) {
+        this.specificationBuilder = specificationBuilder;
+        templateCache = new BoundedLruCache<>(cacheMaxEntries, cacheMaxWeight,
+                (shape, template) -> shape.length() + template.where().length() + CACHE_ENTRY_OVERHEAD);
+        jsonParser = new ObjectMapper(JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxNestingDepth(maxConditionNestingDepth).build())
+                .build());
+    }
+
+    private enum SlotKind {
+        VALUE,      // converted to the attribute type
+        PATTERN,    // a like pattern, taken as is
+        LIST        // the values of an in list, padded to size
+    }
+
+    /*
+     * How to bind one leaf value: javaType and type are the ones of the compared attribute.
+     */
+    private record ParameterSlot(SlotKind kind, Class<?> javaType, BasicType<?> type, String hint, int size) {
+    }
+
+    /*
+     * The SQL of a condition shape. The slots are in the order of the leaf values in the condition, which is the order of the placeholders.
+     */
+    private record SqlTemplate(String joins, String where, List<ParameterSlot> slots) {
+    }
+
+    /**
+     * @param entityType the entity the condition is applied to
+     * @param whereCondition the condition in JSON notation
+     * @return the SQL of the condition and its parameters
+     * @throws IllegalArgumentException if the condition is malformed, or uses an attribute this compiler doesn't support
+     */
+    public SqlCondition compile(Class<?> entityType, String whereCondition) {
+        JsonNode rootNode;
+        try {
+            rootNode = jsonParser.readTree(whereCondition);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("malformed JSON condition: %s".formatted(e.getOriginalMessage()), e);
+        }
+        var values = new ArrayList<JsonNode>();
+        String cacheKey = entityType.getName() + ':' + shapeOf(rootNode, values);
+        SqlTemplate template = templateCache.get(cacheKey);
+        if (template == null) {
+            template = compileTemplate(entityType, rootNode);
+            templateCache.put(cacheKey, template);
+        }
+        return new SqlCondition(template.joins(), template.where(), bind(template, values));
+    }
+
+    /**
+     * @return the table of the entity (the one of its root class for an inheritance hierarchy).
+     */
+    public String tableOf(Class<?> entityType) {
+        return tableOf(persisterOf(entityType));
+    }
+
+    /**
+     * @param entityType the entity
+     * @param attribute a basic attribute of the entity
+     * @return the column of the attribute, prefixed by {@link #ROOT_ALIAS}
+     * @throws IllegalArgumentException if the attribute isn't a basic attribute of the entity
+     */
+    public String columnOf(Class<?> entityType, String attribute) {
+        ModelPart part = findSubPart(persisterOf(entityType), attribute);
+        if (!(part instanceof BasicValuedModelPart basicPart)) {
+            throw new IllegalArgumentException("%s is not a basic attribute".formatted(attribute));
+        }
+        return ROOT_ALIAS + '.' + basicPart.getSelectionExpression();
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return templateCache.getStatistics();
+    }
+
+    public void clearCache() {
+        templateCache.clear();
+    }
+
+    /*
+     * The canonical form of the condition where the leaf values are replaced by placeholders ("?", "?<padded size>" for an in list,
+     * "null" for a null value), and the replaced values in the order of the condition.
+     */
+    private String shapeOf(JsonNode rootNode, List<JsonNode> values) {
+        JsonNode shape = rootNode.deepCopy();
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        pending.push(shape);
+        while (!pending.isEmpty()) {
+            JsonNode node = pending.pop();
+            if (!(node instanceof ObjectNode objectNode)) {
+                throw new IllegalArgumentException("a condition is a JSON object");
+            }
+            String operator = ConditionNodes.operatorOf(node);
+            if (ConditionNodes.isLogical(operator)) {
+                List<JsonNode> children = ConditionNodes.childrenOf(node);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+                continue;
+            }
+            if (ConditionNodes.isQuantifier(operator)) {
+                if (node.get(MainTreeKeys.rhs) != null) {
+                    pending.push(node.get(MainTreeKeys.rhs));
+                }
+                continue;
+            }
+            if (operator.equals("between")) {
+                values.add(node.get(MainTreeKeys.rangeStart));
+                values.add(node.get(MainTreeKeys.rangeEnd));
+                objectNode.put(MainTreeKeys.rangeStart, "?");
+                objectNode.put(MainTreeKeys.rangeEnd, "?");
+                continue;
+            }
+            JsonNode rhs = node.get(MainTreeKeys.rhs);
+            if (rhs == null) {
+                continue;
+            }
+            if (operator.equals(BinaryOperators.in)) {
+                int size = paddedSizeOf(LeafValue.listOf(rhs, null).size());
+                if (size > 0) {
+                    values.add(rhs);
+                }
+                objectNode.put(MainTreeKeys.rhs, "?" + size);
+            } else if (rhs.isNull()) {
+                objectNode.put(MainTreeKeys.rhs, "null");
+            } else {
+                values.add(rhs);
+                objectNode.put(MainTreeKeys.rhs, "?");
+            }
+        }
+        return JsonCanonicalizer.canonicalize(shape);
+    }
+
+    private List<SqlParameter> bind(SqlTemplate template, List<JsonNode> values) {
+        var parameters = new ArrayList<SqlParameter>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            ParameterSlot slot = template.slots().get(i);
+            JsonNode value = values.get(i);
+            switch (slot.kind()) {
+                case PATTERN -> parameters.add(new SqlParameter(LeafValue.of(value, null).text(), slot.type()));
+                case VALUE -> parameters.add(new SqlParameter(LeafValue.of(value, slot.hint()).as(slot.javaType()), slot.type()));
+                case LIST -> {
+                    List<?> elements = (List<?>) LeafValue.listOf(value, slot.hint()).as(slot.javaType());
+                    for (int j = 0; j < slot.size(); j++) {
+                        parameters.add(new SqlParameter(elements.get(Math.min(j, elements.size() - 1)), slot.type()));
+                    }
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /*
+     * The state of one template compilation: the aliases given so far and the slots, in the order of their placeholders.
+     */
+    private static final class TemplateContext {
+        private final List<ParameterSlot> slots = new ArrayList<>();
+        private int aliasCount = 0;
+
+        String nextAlias(String prefix) {
+            return prefix + (++aliasCount);
+        }
+    }
+
+    /*
+     * A from clause being compiled (the root query or an EXISTS subquery) and its entity.
+     * The to-one joins are added to it once per path.
+     */
+    private static final class SqlScope {
+        private final String alias;
+        private final AbstractEntityPersister persister;
+        private final StringBuilder joins = new StringBuilder();
+        private final Map<String, String> joinedAliases = new HashMap<>();
+
+        SqlScope(String alias, AbstractEntityPersister persister) {
+            this.alias = alias;
+            this.persister = persister;
+        }
+    }
+
+    /*
+     * The condition applied on the owner of the last attribute of a path, once the path has been navigated.
+     */
+    @FunctionalInterface
+    private interface OwnerCondition {
+        String toSql(String alias, AbstractEntityPersister owner, ModelPartContainer container, String attribute);
+    }
+
+    private SqlTemplate compileTemplate(Class<?> entityType, JsonNode rootNode) {
+        var context = new TemplateContext();
+        var rootScope = new SqlScope(ROOT_ALIAS, persisterOf(entityType));
+        String where = compileCondition(rootNode, rootScope, context);
+        return new SqlTemplate(rootScope.joins.toString(), where, List.copyOf(context.slots));
+    }
+
+    /*
+     * The and/or nodes are compiled iteratively, like SpecificationBuilder does, and a chain of the same operator is one SQL junction.
+     */
+    private String compileCondition(JsonNode node, SqlScope scope, TemplateContext context) {
+        if (!ConditionNodes.isLogical(node)) {
+            return compileOperand(node, scope, context);
+        }
+        Deque<LogicalFrame> frames = new ArrayDeque<>();
+        frames.push(new LogicalFrame(node));
+        while (true) {
+            LogicalFrame frame = frames.peek();
+            if (frame.hasPendingOperand()) {
+                JsonNode operand = frame.nextOperand();
+                if (ConditionNodes.isLogical(operand)) {
+                    frames.push(new LogicalFrame(operand));
+                } else {
+                    frame.compiledOperands.add(compileOperand(operand, scope, context));
+                }
+                continue;
+            }
+            frames.pop();
+            String sql = frame.toSql();
+            if (frames.isEmpty()) {
+                return sql;
+            }
+            frames.peek().compiledOperands.add(sql);
+        }
+    }
+
+    private static final class LogicalFrame {
+        private final boolean isConjunction;
+        private final List<JsonNode> operands;
+        private final List<String> compiledOperands;
+        private int nextOperandIndex = 0;
+
+        LogicalFrame(JsonNode node) {
+            isConjunction = ConditionNodes.isConjunction(ConditionNodes.operatorOf(node));
+            operands = ConditionNodes.flattenOperands(node, isConjunction);
+            compiledOperands = new ArrayList<>(operands.size());
+        }
+
+        boolean hasPendingOperand() {
+            return nextOperandIndex < operands.size();
+        }
+
+        JsonNode nextOperand() {
+            return operands.get(nextOperandIndex++);
+        }
+
+        String toSql() {
+            if (compiledOperands.size() == 1) {
+                return compiledOperands.get(0);
+            }
+            return "(" + String.join(isConjunction ? " and " : " or ", compiledOperands) + ")";
+        }
+    }
+
+    private String compileOperand(JsonNode node, SqlScope scope, TemplateContext context) {
+        String operator = ConditionNodes.operatorOf(node);
+        JsonNode lhs = node.get(MainTreeKeys.lhs);
+        if (lhs == null) {
+            throw new IllegalArgumentException("the %s operator requires a lhs".formatted(operator));
+        }
+        String[] attributePath = lhs.asText().split("\\.");
+        if (ConditionNodes.isQuantifier(operator)) {
+            return navigate(scope, attributePath, context, (alias, owner, container, attribute) -> compileQuantifier(node, operator, alias, owner, container, attribute, context));
+        }
+        return navigate(scope, attributePath, context, (alias, owner, container, attribute) -> compileLeaf(node, operator, alias, container, attribute, context));
+    }
+
+    /*
+     * Walks the attribute path up to the before last attribute: to-one relations are joined in the scope,
+     * a to-many relation opens an EXISTS subquery where the rest of the path is walked.
+     */
+    private String navigate(SqlScope scope, String[] attributes, TemplateContext context, OwnerCondition ownerCondition) {
+        String alias = scope.alias;
+        AbstractEntityPersister owner = scope.persister;
+        ModelPartContainer container = owner;
+        String propertyPrefix = "";     // the embeddables walked from the owner entity
+        for (int i = 0; i < attributes.length - 1; i++) {
+            ModelPart part = findSubPart(container, attributes[i]);
+            if (part instanceof PluralAttributeMapping pluralAttribute) {
+                String[] elementPath = Arrays.copyOfRange(attributes, i + 1, attributes.length);
+                return exists(alias, owner, pluralAttribute, context, elementScope -> navigate(elementScope, elementPath, context, ownerCondition));
+            }
+            if (part instanceof ToOneAttributeMapping toOneAttribute) {
+                var target = (AbstractEntityPersister) toOneAttribute.getAssociatedEntityMappingType().getEntityPersister();
+                String joinPath = String.join(".", Arrays.copyOf(attributes, i + 1));
+                alias = join(scope, joinPath, alias, owner, propertyPrefix + attributes[i], target, context);
+                owner = target;
+                container = target;
+                propertyPrefix = "";
+                continue;
+            }
+            if (part instanceof EmbeddableValuedModelPart embeddable) {
+                container = embeddable;
+                propertyPrefix = propertyPrefix + attributes[i] + ".";
+                continue;
+            }
+            throw new IllegalArgumentException("invalid path %s: %s is not a relation nor an embeddable".formatted(String.join(".", attributes), attributes[i]));
+        }
+        return ownerCondition.toSql(alias, owner, container, attributes[attributes.length - 1]);
+    }
+
+    private static String join(SqlScope scope, String joinPath, String ownerAlias, AbstractEntityPersister owner, String property,
+                               AbstractEntityPersister target, TemplateContext context) {
+        String joinedAlias = scope.joinedAliases.get(joinPath);
+        if (joinedAlias != null) {
+            return joinedAlias;
+        }
+        String[] foreignKeyColumns = owner.getPropertyColumnNames(property);
+        if (foreignKeyColumns == null || foreignKeyColumns.length == 0) {
+            throw new IllegalArgumentException("%s can't be joined: its foreign key is on the other side".formatted(joinPath));
+        }
+        String alias = context.nextAlias("j");
+        scope.joins.append(" join ").append(tableOf(target)).append(' ').append(alias)
+                .append(" on ").append(columnsEqual(alias, target.getIdentifierColumnNames(), ownerAlias, foreignKeyColumns));
+        scope.joinedAliases.put(joinPath, alias);
+        return alias;
+    }
+
+    /*
+     * one-to-many:  exists (select 1 from <element table> e where e.<key> = owner.<id> and <condition on e>)
+     * many-to-many: exists (select 1 from <join table> c join <element table> e on e.<id> = c.<element> where c.<key> = owner.<id> and <condition on e>)
+     */
+    private String exists(String ownerAlias, AbstractEntityPersister owner, PluralAttributeMapping pluralAttribute, TemplateContext context,
+                          Function<SqlScope, String> elementCondition) {
+        var collection = (AbstractCollectionPersister) pluralAttribute.getCollectionDescriptor();
+        if (!collection.getElementType().isEntityType()) {
+            throw new IllegalArgumentException("%s is a collection of values, only collections of entities are supported".formatted(collection.getRole()));
+        }
+        var element = (AbstractEntityPersister) collection.getElementPersister();
+        var elementScope = new SqlScope(context.nextAlias("e"), element);
+        String condition = elementCondition != null ? elementCondition.apply(elementScope) : null;
+
+        var sql = new StringBuilder("exists (select 1 from ");
+        if (collection.isOneToMany()) {
+            sql.append(tableOf(element)).append(' ').append(elementScope.alias).append(elementScope.joins)
+                    .append(" where ").append(columnsEqual(elementScope.alias, collection.getKeyColumnNames(), ownerAlias, owner.getIdentifierColumnNames()));
+        } else {
+            String collectionAlias = context.nextAlias("c");
+            sql.append(collection.getTableName()).append(' ').append(collectionAlias)
+                    .append(" join ").append(tableOf(element)).append(' ').append(elementScope.alias)
+                    .append(" on ").append(columnsEqual(elementScope.alias, element.getIdentifierColumnNames(), collectionAlias, collection.getElementColumnNames()))
+                    .append(elementScope.joins)
+                    .append(" where ").append(columnsEqual(collectionAlias, collection.getKeyColumnNames(), ownerAlias, owner.getIdentifierColumnNames()));
+        }
+        if (condition != null) {
+            sql.append(" and ").append(condition);
+        }
+        return sql.append(')').toString();
+    }
+
+    /*
+     * any:  exists (... and <rhs>)
+     * none: not exists (... and <rhs>)
+     * all:  not exists (... and not (<rhs>))
+     */
+    private String compileQuantifier(JsonNode node, String operator, String alias, AbstractEntityPersister owner,
+                                     ModelPartContainer container, String attribute, TemplateContext context) {
+        if (!(findSubPart(container, attribute) instanceof PluralAttributeMapping pluralAttribute)) {
+            throw new IllegalArgumentException("the %s operator requires a collection: %s".formatted(operator, attribute));
+        }
+        JsonNode rhs = node.get(MainTreeKeys.rhs);
+        boolean isAll = operator.equalsIgnoreCase(QuantifierOperators.all);
+        if (rhs == null && isAll) {
+            throw new IllegalArgumentException("the all operator requires a rhs condition");
+        }
+        String exists = exists(alias, owner, pluralAttribute, context, rhs == null ? null : elementScope -> {
+            String elementCondition = compileCondition(rhs, elementScope, context);
+            return isAll ? "not (" + elementCondition + ")" : elementCondition;
+        });
+        return operator.equalsIgnoreCase(QuantifierOperators.any) ? exists : "not " + exists;
+    }
+
+    private String compileLeaf(JsonNode node, String operator, String alias, ModelPartContainer container, String attribute, TemplateContext context) {
+        if (!(findSubPart(container, attribute) instanceof BasicValuedModelPart basicPart)) {
+            throw new IllegalArgumentException("only basic attributes can be compared: %s".formatted(attribute));
+        }
+        String column = alias + '.' + basicPart.getSelectionExpression();
+        Class<?> javaType = basicPart.getJavaType().getJavaTypeClass();
+        BasicType<?> type = basicPart.getJdbcMapping() instanceof BasicType<?> basicType ? basicType : null;
+        JsonNode hintNode = node.get(MainTreeKeys.type);
+        String hint = hintNode != null ? hintNode.asText() : null;
+
+        if (operator.equals("between")) {
+            context.slots.add(new ParameterSlot(SlotKind.VALUE, javaType, type, hint, 1));
+            context.slots.add(new ParameterSlot(SlotKind.VALUE, javaType, type, hint, 1));
+            return column + " between ? and ?";
+        }
+        JsonNode rhs = node.get(MainTreeKeys.rhs);
+        if (rhs == null) {
+            throw new IllegalArgumentException("missing value");
+        }
+        if (operator.equals(BinaryOperators.in)) {
+            int size = paddedSizeOf(LeafValue.listOf(rhs, hint).size());
+            if (size == 0) {
+                return "1 = 0";
+            }
+            context.slots.add(new ParameterSlot(SlotKind.LIST, javaType, type, hint, size));
+            return inList(column, size);
+        }
+        String sqlOperator = comparisonOperators.get(operator);
+        if (sqlOperator == null) {
+            throw new IllegalArgumentException("Unsupported binary operator");
+        }
+        if (rhs.isNull()) {
+            if (operator.equals(BinaryOperators.equal)) {
+                return column + " is null";
+            }
+            if (operator.equals(BinaryOperators.notEqual)) {
+                return column + " is not null";
+            }
+            throw new IllegalArgumentException("null can only be compared by = and !=");
+        }
+        boolean isPattern = operator.equals(BinaryOperators.like);
+        context.slots.add(new ParameterSlot(isPattern ? SlotKind.PATTERN : SlotKind.VALUE, javaType, type, hint, 1));
+        return column + ' ' + sqlOperator + " ?";
+    }
+
+    // the lists longer than the chunk size are split into ORed in lists, like SpecificationBuilder does
+    private String inList(String column, int size) {
+        int chunkSize = specificationBuilder.getInListChunkSize();
+        var chunks = new ArrayList<String>();
+        for (int start = 0; start < size; start += chunkSize) {
+            int count = Math.min(chunkSize, size - start);
+            chunks.add(column + " in (" + String.join(", ", Collections.nCopies(count, "?")) + ")");
+        }
+        return chunks.size() == 1 ? chunks.get(0) : "(" + String.join(" or ", chunks) + ")";
+    }
+
+    // the next power of two up to the chunk size, then the next multiple of the chunk size
+    private int paddedSizeOf(int size) {
+        int chunkSize = specificationBuilder.getInListChunkSize();
+        if (size > chunkSize) {
+            return (size + chunkSize - 1) / chunkSize * chunkSize;
+        }
+        int powerOfTwo = size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+        return Math.min(powerOfTwo, chunkSize);
+    }
+
+    private AbstractEntityPersister persisterOf(Class<?> entityType) {
+        return (AbstractEntityPersister) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityType);
+    }
+
+    private static String tableOf(AbstractEntityPersister persister) {
+        return persister.getMappedTableDetails().getTableName();
+    }
+
+    private static ModelPart findSubPart(ModelPartContainer container, String attribute) {
+        ModelPart part = container.findSubPart(attribute, null);
+        if (part == null) {
+            throw new IllegalArgumentException("unknown attribute: %s".formatted(attribute));
+        }
+        return part;
+    }
+
+    private static String columnsEqual(String leftAlias, String[] leftColumns, String rightAlias, String[] rightColumns) {
+        if (leftColumns.length != rightColumns.length) {
+            throw new IllegalArgumentException("the columns %s and %s can't be matched".formatted(Arrays.toString(leftColumns), Arrays.toString(rightColumns)));
+        }
+        var conditions = new ArrayList<String>(leftColumns.length);
+        for (int i = 0; i < leftColumns.length; i++) {
+            conditions.add(leftAlias + '.' + leftColumns[i] + " = " + rightAlias + '.' + rightColumns[i]);
+        }
+        return String.join(" and ", conditions);
+    }
+}
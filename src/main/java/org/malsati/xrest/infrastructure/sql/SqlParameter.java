@@ -0,0 +1,12 @@
+package org.malsati.xrest.infrastructure.sql;
+
+import org.hibernate.type.BasicType;
+
+/**
+ * A parameter of a compiled SQL condition.
+ *
+ * @param value the value, converted to the java type of the compared attribute
+ * @param type the Hibernate type of the compared attribute, used to bind the value (null to let Hibernate infer it)
+ */
+public record SqlParameter(Object value, BasicType<?> type) {
+}
@@ -0,0 +1,179 @@
+package org.malsati.xrest.mapper;
+
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.malsati.xrest.utilities.conversion.ValueConverter;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps query rows straight to an output DTO, without loading the entity.<br>
+ * The projected properties are the ones of the DTO named after a basic or embedded attribute of the entity, with a compatible type:
+ * only their columns are selected. The other properties of the DTO (relations, computed values) are listed by {@link #getUnmappedProperties()}
+ * and keep their default value.<br>
+ * The DTO is either a class with a public no-args constructor and setters, or an interface with getters
+ * (its instances are then read-only proxies over the row).
+ *
+ * @param <D> the output DTO
+ */
+public class DtoProjection<D> {
+    private final Class<D> dtoType;
+    private final List<String> attributes = new ArrayList<>();
+    private final List<MethodHandle> setters = new ArrayList<>();
+    private final List<String> unmappedProperties = new ArrayList<>();
+    private final MethodHandle constructor;
+
+    private DtoProjection(Class<D> dtoType, EntityType<?> entityType) {
+        this.dtoType = dtoType;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            for (PropertyDescriptor property : Introspector.getBeanInfo(dtoType).getPropertyDescriptors()) {
+                Method accessor = dtoType.isInterface() ? property.getReadMethod() : property.getWriteMethod();
+                if (accessor == null || property.getName().equals("class")) {
+                    continue;
+                }
+                if (!isProjectable(entityType, property)) {
+                    unmappedProperties.add(property.getName());
+                    continue;
+                }
+                attributes.add(property.getName());
+                setters.add(dtoType.isInterface() ? null : lookup.unreflect(accessor)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class)));
+            }
+            constructor = dtoType.isInterface() ? null : lookup.findConstructor(dtoType, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (IntrospectionException | ReflectiveOperationException e) {
+            throw new IllegalArgumentException("%s can't be a projection: %s".formatted(dtoType.getName(), e.getMessage()), e);
+        }
+    }
+
+    private DtoProjection(DtoProjection<D> projection, Collection<String> selectedAttributes) {
+        this.dtoType = projection.dtoType;
+        this.constructor = projection.constructor;
+        for (int i = 0; i < projection.attributes.size(); i++) {
+            String attribute = projection.attributes.get(i);
+            if (selectedAttributes.contains(attribute)) {
+                attributes.add(attribute);
+                setters.add(projection.setters.get(i));
+            } else {
+                unmappedProperties.add(attribute);
+            }
+        }
+        unmappedProperties.addAll(projection.unmappedProperties);
+    }
+
+    /**
+     * Introspects the DTO once: keep the result for the life of the service.
+     * @throws IllegalArgumentException if the DTO is a class without a public no-args constructor
+     */
+    public static <D> DtoProjection<D> of(Class<D> dtoType, EntityType<?> entityType) {
+        return new DtoProjection<>(dtoType, entityType);
+    }
+
+    /**
+     * Selects some of the attributes only (a sparse fieldset), without introspecting the DTO again.
+     * The other properties keep their default value.
+     * @param selectedAttributes attributes of this projection
+     * @throws IllegalArgumentException if one of them isn't an attribute of this projection
+     */
+    public DtoProjection<D> restrictedTo(Collection<String> selectedAttributes) {
+        for (String attribute : selectedAttributes) {
+            if (!attributes.contains(attribute)) {
+                throw new IllegalArgumentException("%s is not projected to %s".formatted(attribute, dtoType.getSimpleName()));
+            }
+        }
+        return new DtoProjection<>(this, selectedAttributes);
+    }
+
+    /**
+     * @return the entity attributes selected by the projection
+     */
+    public List<String> getAttributes() {
+        return List.copyOf(attributes);
+    }
+
+    /**
+     * @return the properties of the DTO that aren't read from the query
+     */
+    public List<String> getUnmappedProperties() {
+        return List.copyOf(unmappedProperties);
+    }
+
+    /**
+     * @return the selections of a tuple query, in the order {@link #map(Tuple)} reads them.
+     */
+    public List<Selection<?>> select(Root<?> root) {
+        var selections = new ArrayList<Selection<?>>(attributes.size());
+        for (String attribute : attributes) {
+            selections.add(root.get(attribute));
+        }
+        return selections;
+    }
+
+    public D map(Tuple row) {
+        if (dtoType.isInterface()) {
+            var values = new HashMap<String, Object>();
+            for (int i = 0; i < attributes.size(); i++) {
+                values.put(attributes.get(i), row.get(i));
+            }
+            return dtoType.cast(Proxy.newProxyInstance(dtoType.getClassLoader(), new Class<?>[]{dtoType}, (proxy, method, args) -> handle(values, proxy, method, args)));
+        }
+        try {
+            Object dto = constructor.invokeExact();
+            for (int i = 0; i < attributes.size(); i++) {
+                Object value = row.get(i);
+                if (value != null) {
+                    setters.get(i).invokeExact(dto, value);
+                }
+            }
+            return dtoType.cast(dto);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("unable to create %s".formatted(dtoType.getName()), e);
+        }
+    }
+
+    private Object handle(Map<String, Object> values, Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return dtoType.getSimpleName() + values;
+            default:
+                return values.get(Introspector.decapitalize(method.getName().replaceFirst("^(get|is)", "")));
+        }
+    }
+
+    private static boolean isProjectable(EntityType<?> entityType, PropertyDescriptor property) {
+        Attribute<?, ?> attribute;
+        try {
+            attribute = entityType.getAttribute(property.getName());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (!(attribute instanceof SingularAttribute<?, ?>) || attribute.isAssociation()) {
+            return false;
+        }
+        Class<?> propertyType = ValueConverter.wrap(property.getPropertyType());
+        return propertyType.isAssignableFrom(ValueConverter.wrap(attribute.getJavaType()));
+    }
+}
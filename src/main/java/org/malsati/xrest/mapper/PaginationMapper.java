@@ -1,6 +1,7 @@
 package org.malsati.xrest.mapper;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import org.malsati.xrest.dto.pagination.PaginatedResponse;
 
@@ -11,9 +12,11 @@ public class PaginationMapper {
         return new PaginatedResponse<>(
                 page.getNumber() + 1, // currentPage is 1-based, Page.getNumber() is 0-based
                 page.getSize(),
-                page.getTotalPages(),
+                (long) page.getTotalPages(),
                 page.getTotalElements(),
-                page.getContent()
+                page.getContent(),
+                page.hasNext(),
+                null
         );
     }
 
@@ -22,4 +25,22 @@ public class PaginationMapper {
         Page<U> resultsMappedToDto = page.map(converter);
         return mapPageToPaginatedResponse(resultsMappedToDto);
     }
-}
\ No newline at end of file
+
+    public static <T> PaginatedResponse<T> mapSliceToPaginatedResponse(Slice<T> slice) {
+        return new PaginatedResponse<>(
+                slice.getNumber() + 1,
+                slice.getSize(),
+                null,
+                null,
+                slice.getContent(),
+                slice.hasNext(),
+                null
+        );
+    }
+
+    public static <T, U> PaginatedResponse<U> mapSliceToPaginatedResponse(Slice<T> slice,
+                                                                          Function<? super T, ? extends U> converter) {
+        Slice<U> resultsMappedToDto = slice.map(converter);
+        return mapSliceToPaginatedResponse(resultsMappedToDto);
+    }
+}
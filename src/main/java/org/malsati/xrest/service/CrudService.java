@@ -2,11 +2,20 @@ package org.malsati.xrest.service;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.malsati.xrest.controller.CrudController;
+import org.malsati.xrest.dto.FieldSet;
+import org.malsati.xrest.dto.ManyByIdsResponse;
+import org.malsati.xrest.dto.ResourceVersion;
+import org.malsati.xrest.dto.aggregation.AggregateResponse;
+import org.malsati.xrest.dto.pagination.KeysetPageRequest;
 import org.malsati.xrest.dto.pagination.PaginatedResponse;
 import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.utilities.tuples.Pair;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 
 /**
@@ -256,6 +265,17 @@ public interface CrudService<T,
      */
     ServiceResponse<GetOneOutputDto> getOne(String condition);
 
+    /**
+     * Same as {@link #getOne(String)}, for the requested properties of the DTO only (sparse fieldset).<br>
+     * When they are all basic attributes of the entity, only their columns are selected and no relation is read:
+     * the other properties of the DTO keep their default value. Otherwise, the entity is read and mapped like {@link #getOne(String)} does.
+     * Either way, the caller is expected to serialize the requested properties only (see {@link FieldSet#select}).
+     * @param condition JSON where condition (Mandatory)
+     * @param fields the requested properties. {@link FieldSet#ALL} for the whole DTO.
+     * @return a service response with the DTO, InvalidInput if a requested property isn't a property of the DTO.
+     */
+    ServiceResponse<GetOneOutputDto> getOne(String condition, FieldSet fields);
+
     /**
      *
      * It allows for getting the entity by its id
@@ -315,6 +335,78 @@ public interface CrudService<T,
      */
     ServiceResponse<GetOneOutputDto> getOneById(TKeyType id);
 
+    /**
+     * Same as {@link #getOneById(Object)}, for the requested properties of the DTO only (sparse fieldset).
+     * @param id the id of the entity
+     * @param fields the requested properties. {@link FieldSet#ALL} for the whole DTO.
+     * @see #getOne(String, FieldSet)
+     */
+    ServiceResponse<GetOneOutputDto> getOneById(TKeyType id, FieldSet fields);
+
+    /**
+     * The validators of {@link #getOneById(Object, FieldSet)}, read with a version-only query:
+     * {@code select a.version from Author a where a.id = ?}. The entity is neither loaded nor mapped.<br>
+     * The entity tag covers the id, the {@code @Version} attribute of the entity and the requested fields.
+     * The last modification time is given only when the version is a timestamp.
+     * A DTO cached by getOneById carries its version: no query is run.<br>
+     * Only a conditional request needs it: otherwise, see {@link #getOneByIdWithVersion}.
+     * <pre>
+     * GET /app/author/getOne/1
+     * If-None-Match: "3f2a9c0d41b7e6a85c1d2e3f4a5b6c7d"
+     *
+     * 304 Not Modified
+     * </pre>
+     * @param id the id of the entity
+     * @param fields the requested properties. {@link FieldSet#ALL} for the whole DTO.
+     * @return null if the entity has no {@code @Version} attribute, or doesn't exist
+     */
+    ResourceVersion getOneVersionById(TKeyType id, FieldSet fields);
+
+    /**
+     * {@link #getOneById(Object, FieldSet)} with its validators, the ones of {@link #getOneVersionById}.
+     * They are derived from the version read with the entity: no version query is run.
+     * @param id the id of the entity
+     * @param fields the requested properties. {@link FieldSet#ALL} for the whole DTO.
+     * @return the response of getOneById, and its validators: null if the read failed or the entity has no {@code @Version} attribute
+     */
+    Pair<ServiceResponse<GetOneOutputDto>, ResourceVersion> getOneByIdWithVersion(TKeyType id, FieldSet fields);
+
+    /**
+     * It allows for retrieving many entities at once by their Ids.<br>
+     * The ids are read in one query (several when they don't fit in one in list, see xrest.condition.in-list.chunk-size).
+     * @param ids the ids of the entities to retrieve
+     * @return a service response with the entities found in the order of the requested ids,
+     * and the requested ids that didn't match any entity.<br>
+     *
+     * sample request: [2, 42, 1]<br>
+     *
+     * sample return value:
+     * <pre>
+     * {
+     *   "data": {
+     *     "data": [
+     *       {
+     *         "id": 2,
+     *         "title": "Harry Potter and the Chamber of Secrets",
+     *         ...
+     *       },
+     *       {
+     *         "id": 1,
+     *         "title": "Harry Potter and the Philosopher's Stone",
+     *         ...
+     *       }
+     *     ],
+     *     "notFoundIds": [42]
+     *   },
+     *   "isSuccess": true,
+     *   "errors": null
+     * }
+     * </pre>
+     *
+     * note: if the entity is soft delete, the soft deleted entities are reported as not found.
+     */
+    ServiceResponse<ManyByIdsResponse<GetOneOutputDto, TKeyType>> getManyByIds(List<TKeyType> ids);
+
 
     /**
      * It allows for retriving a list of entities based on a JSON where condition.
@@ -415,6 +507,134 @@ public interface CrudService<T,
      */
     ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable);
 
+    /**
+     * Same as {@link #getMany(String, Pageable)}, but the client decides whether the totals are computed.<br>
+     * When withTotal is false, no count query is executed: pageSize + 1 rows are fetched to tell whether there is a next page,
+     * and the response carries hasNext instead of totalPages and totalItems (slice mode).
+     * @param condition JSON where condition
+     * @param pageable pagination info
+     * @param withTotal true to compute totalPages and totalItems. null to use the default of the service.<br>
+     *                  When the condition is too expensive to count (see {@link org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionBudget}),
+     *                  true is rejected with {@link org.malsati.xrest.dto.errors.ErrorCode#ConditionTooComplex} and null falls back to slice mode.
+     * @return service response with Paginated response of the output dto you have defined initially.<br>
+     *
+     * sample return value (withTotal = false):
+     * <pre>
+     * {
+     *   "data": {
+     *     "currentPage": 1,
+     *     "pageSize": 2,
+     *     "data": [
+     *       {
+     *         "id": 1,
+     *         "title": "Harry Potter and the Philosopher's Stone",
+     *         ...
+     *       },
+     *       {
+     *         "id": 2,
+     *         "title": "Harry Potter and the Chamber of Secrets",
+     *         ...
+     *       }
+     *     ],
+     *     "hasNext": true
+     *   },
+     *   "isSuccess": true
+     * }
+     * </pre>
+     */
+    ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable, Boolean withTotal);
+
+    /**
+     * Same as {@link #getMany(String, Pageable, Boolean)}, for the requested properties of the DTOs only (sparse fieldset).
+     * A grid showing the id and the title of books selects these two columns, and reads no author.
+     * @param condition JSON where condition
+     * @param pageable pagination info
+     * @param withTotal true to compute totalPages and totalItems. null to use the default of the service.
+     * @param fields the requested properties, e.g. {@code FieldSet.parse("id,title")}. {@link FieldSet#ALL} for the whole DTOs.
+     * @see #getOne(String, FieldSet)
+     */
+    ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable, Boolean withTotal, FieldSet fields);
+
+    /**
+     * The entity tag of {@link #getMany(String, Pageable, Boolean, FieldSet)}, hashed from the ids and the versions of the page
+     * (one more row tells whether there is a next page) and the total when it's computed.
+     * They are read with a query selecting the id and the {@code @Version} attribute only: no entity is loaded nor mapped.
+     * A page has no last modification time: a row leaving the page changes it without changing any version.<br>
+     * Only a conditional request needs it: otherwise, see {@link #getManyWithVersion}.
+     * @param condition JSON where condition
+     * @param pageable pagination info
+     * @param withTotal true to compute totalPages and totalItems. null to use the default of the service.
+     * @param fields the requested properties. {@link FieldSet#ALL} for the whole DTOs.
+     * @return null if the entity has no {@code @Version} attribute, or the condition is invalid (getMany reports it)
+     */
+    ResourceVersion getManyVersion(String condition, Pageable pageable, Boolean withTotal, FieldSet fields);
+
+    /**
+     * {@link #getMany(String, Pageable, Boolean, FieldSet)} with its entity tag, the one of {@link #getManyVersion}.
+     * It's hashed from the ids and the versions of the rows read for the page: no version query is run.
+     * @param condition JSON where condition
+     * @param pageable pagination info
+     * @param withTotal true to compute totalPages and totalItems. null to use the default of the service.
+     * @param fields the requested properties. {@link FieldSet#ALL} for the whole DTOs.
+     * @return the response of getMany, and its validators: null if the read failed or the entity has no {@code @Version} attribute
+     */
+    Pair<ServiceResponse<PaginatedResponse<GetOneOutputDto>>, ResourceVersion> getManyWithVersion(String condition, Pageable pageable, Boolean withTotal, FieldSet fields);
+
+    /**
+     * It allows for retrieving a list of entities based on a JSON where condition using keyset (seek) pagination.<br>
+     * Instead of skipping the rows of the previous pages (OFFSET), the query seeks directly after the last row of the previous page:
+     * WHERE (sortBy, id) &gt; (lastSortValue, lastId). The cost of a page doesn't depend on how deep the page is.
+     * @param condition JSON where condition (optional)
+     * @param pageRequest page size, sort attribute and direction, and the cursor returned by the previous page (null for the first page).
+     * @return service response with a paginated response without page number nor totals.
+     * nextCursor is the token to pass to get the next page (absent on the last page).<br>
+     *
+     * sample return value:
+     * <pre>
+     * {
+     *   "data": {
+     *     "pageSize": 2,
+     *     "data": [
+     *       {
+     *         "id": 1,
+     *         "title": "Harry Potter and the Philosopher's Stone",
+     *         ...
+     *       },
+     *       {
+     *         "id": 2,
+     *         "title": "Harry Potter and the Chamber of Secrets",
+     *         ...
+     *       }
+     *     ],
+     *     "hasNext": true,
+     *     "nextCursor": "eyJzb3J0QnkiOiJpZCIsImRpcmVjdGlvbiI6IkFTQyIsInNvcnRWYWx1ZSI6IjIiLCJpZCI6IjIifQ"
+     *   },
+     *   "isSuccess": true
+     * }
+     * </pre>
+     *
+     * note: the sort attribute should be non nullable. if the entity is soft delete, only entities that are not soft deleted are returned.
+     * @see org.malsati.xrest.infrastructure.jpql.SpecificationBuilder how form a JSON condition
+     */
+    ServiceResponse<PaginatedResponse<GetOneOutputDto>> getManyByKeyset(String condition, KeysetPageRequest pageRequest);
+
+    /**
+     * It hands over every entity that satisfies a JSON where condition, mapped to the output dto, one at a time.<br>
+     * The condition is executed once, as a forward only cursor of read only entities.
+     * The entities are mapped by batches of xrest.export.fetch-size rows, and the persistence context is cleared after each batch,
+     * so the memory used doesn't depend on the number of rows.<br>
+     * Nothing is handed over if the condition is rejected.
+     * @param condition JSON where condition (optional). If not specified, all entities are exported.
+     * @param sort the order of the entities
+     * @param consumer receives the dtos, e.g. writes them to the HTTP response
+     * @return a service response with the number of exported entities.
+     *
+     * note: if the entity is soft delete, only entities that are not soft deleted are exported.
+     * The persistence context is cleared: don't call it from a transaction holding entities you still use.
+     * @see org.malsati.xrest.infrastructure.jpql.SpecificationBuilder how form a JSON condition
+     */
+    ServiceResponse<Long> exportMany(String condition, Sort sort, Consumer<? super GetOneOutputDto> consumer);
+
     /**
      *
      * It allows for requesting for the count of entities that satisfies a JSON where condition.
@@ -448,6 +668,77 @@ public interface CrudService<T,
      */
     ServiceResponse<Long> count(String condition);
 
+    /**
+     *
+     * It counts the entities of several JSON where conditions at once, with one query scanning the entities once:
+     * every condition becomes a {@code sum(case when <condition> then 1 else 0 end)} of the same select.
+     * @param conditions the JSON where conditions by name. An empty condition counts all the entities.
+     * @return a service response with the counts by name, in the order of the conditions.<br>
+     *
+     * sample conditions:
+     *
+     * <pre>
+     * {
+     *     "bloomsbury": { "op": "=", "lhs": "press", "rhs": "Bloomsbury Publishing" },
+     *     "long": { "op": "&gt;", "lhs": "noPages", "rhs": 500 },
+     *     "all": {}
+     * }
+     * </pre>
+     *
+     * sample return value:
+     *
+     * <pre>
+     * {
+     *     "data": {
+     *         "bloomsbury": 2,
+     *         "long": 4,
+     *         "all": 10
+     *     },
+     *     "isSuccess": true,
+     *     "errors": null
+     * }
+     * </pre>
+     *
+     * If a condition is rejected, nothing is counted and the error message starts with its name.<br>
+     * note: if the entity is soft delete, only entities that are not soft deleted are counted.
+     * @see org.malsati.xrest.infrastructure.jpql.SpecificationBuilder how form a JSON condition
+     */
+    ServiceResponse<Map<String, Long>> countMany(Map<String, String> conditions);
+
+    /**
+     *
+     * It groups the entities that satisfy a JSON where condition and computes aggregates per group, in one GROUP BY query.
+     * @param condition JSON where condition (optional). If not specified, all entities are aggregated.
+     * @param groupBy the attribute paths to group by, they may go through relations: press, authors.fullName (optional).
+     * @param aggregates the aggregate functions: count, count(path), sum(path), avg(path), min(path) or max(path) (optional).
+     *                   The path of an aggregate can't go through a collection.
+     * @return a service response with one row per group, sorted by the group by values.<br>
+     *
+     * sample call: aggregate(condition, List.of("press"), List.of("count", "sum(noPages)"))
+     *
+     * sample return value:
+     *
+     * <pre>
+     * {
+     *     "data": {
+     *         "columns": ["press", "count", "sum(noPages)"],
+     *         "rows": [
+     *             ["Bantam Spectra", 2, 1462],
+     *             ["Bloomsbury Publishing", 2, 474]
+     *         ]
+     *     },
+     *     "isSuccess": true,
+     *     "errors": null
+     * }
+     * </pre>
+     *
+     * Without group by, the single row holds the aggregates of all the matching entities.
+     * An unknown path or function, or sum/avg over an attribute that isn't a number, is reported as InvalidInput.<br>
+     * note: if the entity is soft delete, only entities that are not soft deleted are aggregated.
+     * @see org.malsati.xrest.infrastructure.jpql.SpecificationBuilder how form a JSON condition
+     */
+    ServiceResponse<AggregateResponse> aggregate(String condition, List<String> groupBy, List<String> aggregates);
+
     /**
      *
      * It deletes an entity by its Id (soft or hard)
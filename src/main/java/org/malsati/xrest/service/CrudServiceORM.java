@@ -2,28 +2,91 @@ package org.malsati.xrest.service;
 
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.malsati.xrest.dto.FieldSet;
+import org.malsati.xrest.dto.ManyByIdsResponse;
+import org.malsati.xrest.dto.ResourceVersion;
+import org.malsati.xrest.dto.aggregation.AggregateResponse;
 import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.dto.pagination.KeysetCursor;
+import org.malsati.xrest.dto.pagination.KeysetPageRequest;
 import org.malsati.xrest.dto.pagination.PaginatedResponse;
 import org.malsati.xrest.entities.audit.interfaces.DeletionInfo;
 import org.malsati.xrest.entities.audit.interfaces.IdentityInfo;
+import org.malsati.xrest.infrastructure.indexes.IndexCatalog;
+import org.malsati.xrest.infrastructure.indexes.UnindexedFilterReport;
+import org.malsati.xrest.infrastructure.jpql.FetchPlan;
+import org.malsati.xrest.infrastructure.jpql.FetchPlanLoader;
 import org.malsati.xrest.infrastructure.jpql.SpecificationBuilder;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionBudget;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionCost;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ParameterScope;
+import org.malsati.xrest.mapper.DtoProjection;
 import org.malsati.xrest.mapper.IMapper;
 import org.malsati.xrest.mapper.PaginationMapper;
+import org.malsati.xrest.utilities.cache.CacheStatistics;
+import org.malsati.xrest.utilities.cache.CountCache;
+import org.malsati.xrest.utilities.cache.CachedDto;
+import org.malsati.xrest.utilities.cache.DtoCache;
+import org.malsati.xrest.utilities.conversion.ValueConverter;
 import org.malsati.xrest.utilities.text.StringExtensions;
 import org.malsati.xrest.utilities.tuples.Pair;
 
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.criteria.Subquery;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import org.malsati.xrest.dto.ServiceResponse;
 import org.malsati.xrest.dto.errors.AppError;
@@ -33,9 +96,16 @@ import org.malsati.xrest.dto.errors.AppError;
  * You need to subclass this class in your project and implement the hooks if needed (onPreCreateOne, onPreUpdateOne, onPreDeleteOne)<br>
  * If you have custom business validation rules, you need to override: (validateCreateOneInput, validateUpdateOneInput)<br>
  *
+ * <H2>Reads:</H2>
+ * The reads (getOne, getOneById, getManyByIds, getMany, getManyByKeyset, exportMany, count) run in read-only transactions:
+ * Hibernate loads the entities read-only (no snapshot for dirty checking) and never flushes (flush mode MANUAL).
+ * With {@link org.malsati.xrest.infrastructure.datasource.ReadReplicaRoutingDataSource}, they are sent to a replica.
+ *
  * <H2>Hard Delete vs Soft Delete:</H2>
  * At the construction phase, it will detect the type of deletion desired. The entity is supposed to implement {@link DeletionInfo} interface
- * if soft delete is desired.
+ * if soft delete is desired.<br>
+ * The filter that excludes soft deleted entities is compiled once at construction (see {@link SoftDeleteFilter}).
+ * If the entity is annotated with Hibernate's {@code @SQLRestriction} on its deleted column, the filtering is left to Hibernate.
  *
  * @param <T> the entity to have CRUD functionality for
  * @param <TKeyType> the type of the entity key.
@@ -54,20 +124,126 @@ public class CrudServiceORM<T,
         UpdateOneInputDto extends IdentityInfo<TKeyType>,
         DeleteOneOutputDto,
         GetOneOutputDto> implements CrudService<T, TKeyType, CreateOneInputDto, CreateOneOutputDto, UpdateOneInputDto, DeleteOneOutputDto, GetOneOutputDto> {
-    private static final String isNotDeletedCondition = "{ \"op\": \"=\", \"lhs\": \"deleted\", \"rhs\": false }";
+    private static final Logger logger = LoggerFactory.getLogger(CrudServiceORM.class);
+    private static final String deletedAttribute = "deleted";
+    public static final int DEFAULT_EXPORT_FETCH_SIZE = 500;
+    // count, or count/sum/avg/min/max of an attribute path: sum(noPages)
+    private static final Pattern aggregatePattern = Pattern.compile("^\\s*(count|sum|avg|min|max)\\s*(?:\\(\\s*([\\w.]+)\\s*\\))?\\s*$", Pattern.CASE_INSENSITIVE);
     protected JpaRepository<T, TKeyType> jpaRepository;
     protected IMapper<T, TKeyType, CreateOneInputDto, CreateOneOutputDto, UpdateOneInputDto, DeleteOneOutputDto, GetOneOutputDto> mapper;
 
     @Autowired
     protected SpecificationBuilder<T> specificationBuilder;
 
+    @PersistenceContext
+    protected EntityManager entityManager;
+
+    protected final Class<T> entityClass;
+    private String idAttributeName;
+
+    /**
+     * whether getMany computes totalPages and totalItems (an extra count query) when the client doesn't say.
+     * Override it in the service constructor to make slice mode the default for large tables.
+     */
+    protected boolean isTotalComputedByDefault = true;
+
+    /**
+     * when true, every read filtered by a JSON condition is executed through the entity manager with the condition values
+     * bound as query parameters (see {@link ParameterScope}), so conditions of the same shape share one SQL text.
+     * Slice and keyset pages are always executed this way.
+     */
+    @Value("${xrest.condition.bind-parameters:false}")
+    protected boolean isConditionBoundAsParameters = false;
+
+    /**
+     * the limits a JSON condition has to fit in before any SQL is executed (see {@link ConditionBudget}).
+     * Unlimited by default: set it in the service constructor to give the service a budget, e.g. {@link ConditionBudget#DEFAULT}.
+     */
+    protected ConditionBudget conditionBudget = ConditionBudget.UNLIMITED;
+
+    /**
+     * what the service does with a condition or a sort that can't use an index (see {@link UnindexedFilterPolicy}).
+     * Set it in the service constructor to opt in.
+     */
+    protected UnindexedFilterPolicy unindexedFilterPolicy = UnindexedFilterPolicy.ALLOW;
+
+    @Autowired
+    protected IndexCatalog indexCatalog;
+
+    @Autowired
+    protected UnindexedFilterReport unindexedFilterReport;
+
+    /**
+     * when true, getOne, getOneById and getMany select only the columns of the GetOneOutputDto properties and map the rows
+     * straight to DTOs (see {@link DtoProjection}), instead of loading managed entities and mapping them through {@link #mapper}.
+     * The DTO properties that aren't basic attributes of the entity (relations, computed values) are left empty.
+     */
+    @Value("${xrest.read.projection:false}")
+    protected boolean isProjectionEnabled = false;
+    private DtoProjection<GetOneOutputDto> projection;
+    private String versionAttributeName;
+    private boolean isVersionAttributeResolved = false;
+    /*
+     * the ids and versions of the entities read by getOneByIdWithVersion and getManyWithVersion, in the order of the rows.
+     */
+    private final ThreadLocal<List<Object>> readVersions = new ThreadLocal<>();
+
+    /**
+     * the relations loaded with the entity of getOne and getOneById before it's mapped (see {@link FetchPlan}),
+     * so the mapper doesn't trigger one lazy load per relation.
+     * Set it in the service constructor, e.g. {@code getOneFetchPlan = FetchPlan.of("books.authors");}
+     */
+    protected FetchPlan getOneFetchPlan = FetchPlan.NONE;
+
+    /**
+     * the relations loaded with the entities of getMany and getManyByKeyset before they are mapped (see {@link FetchPlan}).
+     * They are loaded for the whole page at once, after the page is read, so the pagination stays in SQL.
+     */
+    protected FetchPlan getManyFetchPlan = FetchPlan.NONE;
+
+    @Autowired
+    protected FetchPlanLoader fetchPlanLoader;
+
+    /**
+     * the DTOs returned by getOneById, by id (see {@link DtoCache}). Disabled by default.
+     * Set it in the service constructor, e.g. {@code getOneByIdCache = DtoCache.bounded(10_000, 10_000, Duration.ofMinutes(10));}<br>
+     * An entry is evicted when its entity is created, updated or deleted through this service, once the transaction completes.
+     * Until then, the transaction that wrote the entity reads it from the database, without caching it.
+     * The writes made elsewhere (another service, a relation updated from its other side, SQL) are only seen when the entry expires.
+     * The cached DTOs are shared by all the callers: they must not be modified.
+     * They are cached with the version of their entity, for the validators of the conditional reads.
+     */
+    protected DtoCache<TKeyType, CachedDto<GetOneOutputDto>> getOneByIdCache = DtoCache.none();
+
+    /**
+     * the results of count by normalized condition (see {@link CountCache}). Disabled by default.
+     * Set it in the service constructor, e.g. {@code countCache = CountCache.exact(1_000);}
+     * or {@code countCache = CountCache.approximate(1_000, Duration.ofSeconds(30));} for dashboards that can live with stale counts.<br>
+     * In exact mode, every write through this service drops the cached counts once its transaction completes.
+     * Until then, the transaction that wrote counts from the database, without caching the results.
+     * Like {@link #getOneByIdCache}, the writes made elsewhere are not seen.
+     */
+    protected CountCache countCache = CountCache.none();
+
+    /**
+     * exportMany reads the rows through a cursor fetching this many rows per round trip,
+     * loads {@link #getManyFetchPlan} and detaches the exported entities every this many rows.
+     */
+    @Value("${xrest.export.fetch-size:" + DEFAULT_EXPORT_FETCH_SIZE + "}")
+    protected int exportFetchSize = DEFAULT_EXPORT_FETCH_SIZE;
+
     protected boolean isSoftDelete = false;
+    protected SoftDeleteFilter softDeleteFilter = SoftDeleteFilter.SPECIFICATION;
+    protected final Specification<T> isNotDeletedSpecification = (root, query, builder) -> builder.isFalse(root.<Boolean>get(deletedAttribute));
 
+    @SuppressWarnings("unchecked")
     public CrudServiceORM(JpaRepository<T, TKeyType> jpaRepository,
                           IMapper<T, TKeyType, CreateOneInputDto, CreateOneOutputDto, UpdateOneInputDto, DeleteOneOutputDto, GetOneOutputDto> mapper) {
         this.jpaRepository = jpaRepository;
         this.mapper = mapper;
+        this.entityClass = (Class<T>) getEntityType();
         this.isSoftDelete = calculateIsSoftDeleteSupported();
+        this.softDeleteFilter = calculateSoftDeleteFilter();
     }
 
     @Override
@@ -79,6 +255,7 @@ public class CrudServiceORM<T,
         T entity = mapper.createOneInputDtoToEntity(createOneInputDto);
         onPreCreateOne(createOneInputDto, entity);
         var res = this.jpaRepository.save(entity);
+        evictCachedReads(idsOf(List.of(res)));
         var createdOutputDto = mapper.entityToCreateOneOutputDto(res);
         return new ServiceResponse<CreateOneOutputDto>(createdOutputDto);
     }
@@ -103,6 +280,7 @@ public class CrudServiceORM<T,
         List<T> entities = mapper.createManyInputDtoToEntities(createManyInputDto);
         onPreCreateMany(createManyInputDto, entities);
         this.jpaRepository.saveAll(entities);
+        evictCachedReads(idsOf(entities));
         var createManyOutputDto = mapper.entitiesToCreateManyOutputDto(entities);
         return new ServiceResponse(createManyOutputDto);
     }
@@ -152,6 +330,7 @@ public class CrudServiceORM<T,
         onPreUpdateOne(updateOneInputDto, entity);
 
         this.jpaRepository.save(entity);
+        evictCachedReads(List.of(updateOneInputDto.getId()));
         return new ServiceResponse<>(true);
     }
 
@@ -167,6 +346,7 @@ public class CrudServiceORM<T,
         }
         onPreUpdateMany(updateManyInputDto, entities);
         jpaRepository.saveAll(entities);
+        evictCachedReads(idsOf(entities));
         return new ServiceResponse<>(true);
     }
 
@@ -226,6 +406,7 @@ public class CrudServiceORM<T,
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ServiceResponse<GetOneOutputDto> getOne(String condition) {
         if (condition == null || condition.isBlank() || StringExtensions.IsBlankJson(condition)) {
             return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.InvalidInput, "bad JSON condition."));
@@ -234,11 +415,25 @@ public class CrudServiceORM<T,
         if (specificationExecutor == null) {
             return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.InternalSystemError, "unable to find JpaSpecificationExecutor"));
         }
-        var criteria = isSoftDelete ? specificationBuilder.buildWithAnd(condition, isNotDeletedCondition) :
-                                      specificationBuilder.build(condition);
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<GetOneOutputDto>(conditionCheck.first());
+        }
+        var criteria = withSoftDeleteFilter(specificationBuilder.build(condition));
+        if (isProjectionEnabled) {
+            List<GetOneOutputDto> rows = findAllProjected(criteria, Sort.unsorted(), 0, 2);
+            if (rows.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1);
+            }
+            if (!rows.isEmpty()) {
+                return new ServiceResponse<GetOneOutputDto>(rows.get(0));
+            }
+            return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "no results matched such condition"));
+        }
 
-        Optional<T> entity = specificationExecutor.findOne(criteria);
+        Optional<T> entity = isConditionBoundAsParameters ? findOne(criteria) : specificationExecutor.findOne(criteria);
         if (entity.isPresent()) {
+            fetchPlanLoader.load(entityClass, List.of(entity.get()), getOneFetchPlan);
             var outputDto = mapper.entityToGetOneOutputDto(entity.get());
             return new ServiceResponse<GetOneOutputDto>(outputDto);
         }
@@ -246,67 +441,1110 @@ public class CrudServiceORM<T,
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<GetOneOutputDto> getOne(String condition, FieldSet fields) {
+        if (fields == null || fields.isAll()) {
+            return getOne(condition);
+        }
+        AppError fieldsError = checkFields(fields);
+        if (fieldsError != null) {
+            return new ServiceResponse<GetOneOutputDto>(fieldsError);
+        }
+        DtoProjection<GetOneOutputDto> fieldsProjection = projectionOf(fields);
+        if (fieldsProjection == null) {
+            return getOne(condition);
+        }
+        if (condition == null || condition.isBlank() || StringExtensions.IsBlankJson(condition)) {
+            return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.InvalidInput, "bad JSON condition."));
+        }
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<GetOneOutputDto>(conditionCheck.first());
+        }
+        List<GetOneOutputDto> rows = findAllProjected(buildCriteria(condition), Sort.unsorted(), 0, 2, fieldsProjection);
+        if (rows.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1);
+        }
+        if (rows.isEmpty()) {
+            return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "no results matched such condition"));
+        }
+        return new ServiceResponse<GetOneOutputDto>(rows.get(0));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<GetOneOutputDto> getOneById(TKeyType id, FieldSet fields) {
+        if (fields == null || fields.isAll() || id == null) {
+            return getOneById(id);
+        }
+        AppError fieldsError = checkFields(fields);
+        if (fieldsError != null) {
+            return new ServiceResponse<GetOneOutputDto>(fieldsError);
+        }
+        DtoProjection<GetOneOutputDto> fieldsProjection = projectionOf(fields);
+        if (fieldsProjection == null) {
+            return getOneById(id);
+        }
+        // a cached DTO is whole, the controller trims it. The partial DTO read here isn't cached.
+        var cachedDto = getCachedDto(id);
+        if (cachedDto != null) {
+            recordReadVersion(id, cachedDto.version());
+            return new ServiceResponse<>(cachedDto.dto());
+        }
+        Specification<T> hasId = (root, query, builder) -> builder.equal(root.get(getIdAttributeName()), id);
+        List<GetOneOutputDto> rows = findAllProjected(hasId, Sort.unsorted(), 0, 1, fieldsProjection);
+        if (!rows.isEmpty()) {
+            return new ServiceResponse<>(rows.get(0));
+        }
+        return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "invalid id value", id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public ServiceResponse<GetOneOutputDto> getOneById(TKeyType id) {
         if (id == null) {
             return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.RequiredField, "required field: id."));
         }
-        var entity = jpaRepository.findById(id);
-        if (entity.isPresent()) {
-            var outputDto = mapper.entityToGetOneOutputDto(entity.get());
-            return new ServiceResponse<>(outputDto);
+        var cachedDto = getCachedDto(id);
+        if (cachedDto != null) {
+            recordReadVersion(id, cachedDto.version());
+            return new ServiceResponse<>(cachedDto.dto());
         }
-        return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "invalid id value", id));
+        boolean isCacheUsed = isDtoCacheUsed(id);
+        // read before loading: a write evicting the entity meanwhile may have committed after the row was read
+        long cacheGeneration = getOneByIdCache.getGeneration();
+        GetOneOutputDto outputDto;
+        Object version;
+        if (isProjectionEnabled) {
+            Specification<T> hasId = (root, query, builder) -> builder.equal(root.get(getIdAttributeName()), id);
+            // the version is selected with the row, for the cache and the validators
+            var idsAndVersions = new ArrayList<Object>();
+            List<GetOneOutputDto> rows = recordingReadVersions(idsAndVersions, () -> findAllProjected(hasId, Sort.unsorted(), 0, 1));
+            if (rows.isEmpty()) {
+                return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "invalid id value", id));
+            }
+            outputDto = rows.get(0);
+            version = idsAndVersions.isEmpty() ? null : idsAndVersions.get(1);
+        } else {
+            var entity = jpaRepository.findById(id);
+            if (entity.isEmpty()) {
+                return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "invalid id value", id));
+            }
+            fetchPlanLoader.load(entityClass, List.of(entity.get()), getOneFetchPlan);
+            outputDto = mapper.entityToGetOneOutputDto(entity.get());
+            version = versionOf(entity.get());
+        }
+        if (isCacheUsed) {
+            getOneByIdCache.put(id, new CachedDto<>(outputDto, version), cacheGeneration);
+        }
+        recordReadVersion(id, version);
+        return new ServiceResponse<>(outputDto);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Pair<ServiceResponse<GetOneOutputDto>, ResourceVersion> getOneByIdWithVersion(TKeyType id, FieldSet fields) {
+        var idsAndVersions = new ArrayList<Object>();
+        var serviceResponse = recordingReadVersions(idsAndVersions, () -> getOneById(id, fields));
+        if (!serviceResponse.isSuccess() || idsAndVersions.isEmpty()) {
+            return new Pair<>(serviceResponse, null);
+        }
+        return new Pair<>(serviceResponse, oneVersion(id, idsAndVersions.get(1), fields));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<ManyByIdsResponse<GetOneOutputDto, TKeyType>> getManyByIds(List<TKeyType> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ServiceResponse<ManyByIdsResponse<GetOneOutputDto, TKeyType>>(new AppError(ErrorCode.RequiredField, "required field: ids."));
+        }
+        if (ids.contains(null)) {
+            return new ServiceResponse<ManyByIdsResponse<GetOneOutputDto, TKeyType>>(new AppError(ErrorCode.InvalidInput, "null id value"));
+        }
+        // one in list per chunk: the dialect caps the number of bind parameters of a statement
+        var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int chunkSize = specificationBuilder.getInListChunkSize();
+        var entities = new ArrayList<T>(distinctIds.size());
+        for (int start = 0; start < distinctIds.size(); start += chunkSize) {
+            var chunk = distinctIds.subList(start, Math.min(start + chunkSize, distinctIds.size()));
+            Specification<T> hasIds = (root, query, builder) -> root.get(getIdAttributeName()).in(chunk);
+            entities.addAll(findAll(withSoftDeleteFilter(hasIds), Sort.unsorted(), 0, 0));
+        }
+        fetchPlanLoader.load(entityClass, entities, getManyFetchPlan);
+
+        var persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        var entitiesById = new HashMap<Object, T>();
+        for (T entity : entities) {
+            entitiesById.put(persistenceUnitUtil.getIdentifier(entity), entity);
+        }
+        var data = new ArrayList<GetOneOutputDto>(entities.size());
+        var notFoundIds = new ArrayList<TKeyType>();
+        for (TKeyType id : distinctIds) {
+            T entity = entitiesById.get(id);
+            if (entity != null) {
+                data.add(mapper.entityToGetOneOutputDto(entity));
+            } else {
+                notFoundIds.add(id);
+            }
+        }
+        return new ServiceResponse<>(new ManyByIdsResponse<>(data, notFoundIds));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable) {
+        return getMany(condition, pageable, null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable, Boolean withTotal) {
+        var conditionCheck = checkCondition(condition, pageable.getSort());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(conditionCheck.first());
+        }
+        var totalError = checkTotal(withTotal, conditionCheck.second());
+        if (totalError != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(totalError);
+        }
+        boolean isTotalComputed = isTotalComputed(withTotal, conditionCheck.second());
+        if (isProjectionEnabled) {
+            return new ServiceResponse<>(findProjectedPage(buildCriteria(condition), pageable, isTotalComputed, getProjection()));
+        }
+        if (!isTotalComputed) {
+            // findSlice records the versions of the rows it reads
+            Slice<T> oneSlice = findSlice(buildCriteria(condition), pageable);
+            fetchPlanLoader.load(entityClass, oneSlice.getContent(), getManyFetchPlan);
+            return new ServiceResponse<>(PaginationMapper.mapSliceToPaginatedResponse(oneSlice, mapper::entityToGetOneOutputDto));
+        }
+
         Page<T> onePage = null;
         var specificationExecutor = (JpaSpecificationExecutor<T>) jpaRepository;
         if (specificationExecutor == null) {
             return new ServiceResponse(new AppError(ErrorCode.InternalSystemError, "unable to find JpaSpecificationExecutor"));
         }
 
-        Specification<T> criteria = null;
-        if (condition == null || condition.isBlank() || StringExtensions.IsBlankJson(condition)) {
-            if (!isSoftDelete) {
-                onePage = jpaRepository.findAll(pageable);
-            }
+        Specification<T> criteria = buildCriteria(condition);
+        if (criteria != null && isConditionBoundAsParameters) {
+            onePage = findPage(criteria, pageable);
+        }
 
-            if (isSoftDelete) {
-                criteria = specificationBuilder.build(isNotDeletedCondition);
-                onePage = specificationExecutor.findAll(criteria, pageable);
-            }
+        if (criteria == null) {
+            onePage = jpaRepository.findAll(pageable);
         }
 
-        if (criteria == null && onePage == null) {
-            criteria = isSoftDelete ? specificationBuilder.buildWithAnd(condition, isNotDeletedCondition) :
-                    specificationBuilder.build(condition);
+        if (criteria != null && !isConditionBoundAsParameters) {
             onePage = specificationExecutor.findAll(criteria, pageable);
         }
 
+        recordReadVersions(onePage.getContent());
+        fetchPlanLoader.load(entityClass, onePage.getContent(), getManyFetchPlan);
         PaginatedResponse<GetOneOutputDto> paginatedResponse = PaginationMapper.mapPageToPaginatedResponse(onePage, mapper::entityToGetOneOutputDto);
         return new ServiceResponse<>(paginatedResponse);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable, Boolean withTotal, FieldSet fields) {
+        if (fields == null || fields.isAll()) {
+            return getMany(condition, pageable, withTotal);
+        }
+        AppError fieldsError = checkFields(fields);
+        if (fieldsError != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(fieldsError);
+        }
+        DtoProjection<GetOneOutputDto> fieldsProjection = projectionOf(fields);
+        if (fieldsProjection == null) {
+            return getMany(condition, pageable, withTotal);
+        }
+        var conditionCheck = checkCondition(condition, pageable.getSort());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(conditionCheck.first());
+        }
+        var totalError = checkTotal(withTotal, conditionCheck.second());
+        if (totalError != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(totalError);
+        }
+        boolean isTotalComputed = isTotalComputed(withTotal, conditionCheck.second());
+        return new ServiceResponse<>(findProjectedPage(buildCriteria(condition), pageable, isTotalComputed, fieldsProjection));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getOneVersionById(TKeyType id, FieldSet fields) {
+        String versionAttribute = getVersionAttributeName();
+        if (versionAttribute == null || id == null) {
+            return null;
+        }
+        var cachedDto = getCachedDto(id);
+        if (cachedDto != null) {
+            return oneVersion(id, cachedDto.version(), fields);
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = builder.createQuery(Object.class);
+        Root<T> root = query.from(entityClass);
+        query.select(root.get(versionAttribute)).where(builder.equal(root.get(getIdAttributeName()), id));
+        List<Object> versions = entityManager.createQuery(query).getResultList();
+        if (versions.isEmpty()) {
+            return null;
+        }
+        return oneVersion(id, versions.get(0), fields);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getManyVersion(String condition, Pageable pageable, Boolean withTotal, FieldSet fields) {
+        String versionAttribute = getVersionAttributeName();
+        if (versionAttribute == null) {
+            return null;
+        }
+        // the page read checks the condition again, it reports the unindexed filter
+        var conditionCheck = checkCondition(condition, pageable.getSort(), false);
+        if (conditionCheck.first() != null || checkTotal(withTotal, conditionCheck.second()) != null) {
+            return null;
+        }
+        boolean isTotalComputed = isTotalComputed(withTotal, conditionCheck.second());
+        var idsAndVersions = new ArrayList<Object>();
+        Long total = null;
+        try (var parameterScope = ParameterScope.open()) {
+            Specification<T> criteria = buildCriteria(condition);
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = builder.createTupleQuery();
+            Root<T> root = query.from(entityClass);
+            query.multiselect(root.get(getIdAttributeName()), root.get(versionAttribute));
+            applyCriteria(criteria, root, query, builder);
+            if (pageable.getSort().isSorted()) {
+                query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+            }
+
+            var typedQuery = parameterScope.bindTo(entityManager.createQuery(query));
+            if (pageable.isPaged()) {
+                // the rows of the page read: without the total, the row after the page tells whether there is a next page
+                typedQuery.setFirstResult((int) pageable.getOffset());
+                typedQuery.setMaxResults(isTotalComputed ? pageable.getPageSize() : pageable.getPageSize() + 1);
+            }
+            for (Tuple row : typedQuery.getResultList()) {
+                idsAndVersions.add(row.get(0));
+                idsAndVersions.add(row.get(1));
+            }
+            if (isTotalComputed) {
+                total = pageable.isPaged() ? countAll(criteria) : (long) idsAndVersions.size() / 2;
+            }
+        } catch (IllegalArgumentException e) {
+            // the page read reports it
+            return null;
+        }
+        return manyVersion(pageable, fields, idsAndVersions, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Pair<ServiceResponse<PaginatedResponse<GetOneOutputDto>>, ResourceVersion> getManyWithVersion(String condition, Pageable pageable, Boolean withTotal, FieldSet fields) {
+        var idsAndVersions = new ArrayList<Object>();
+        var serviceResponse = recordingReadVersions(idsAndVersions, () -> getMany(condition, pageable, withTotal, fields));
+        if (!serviceResponse.isSuccess() || getVersionAttributeName() == null) {
+            return new Pair<>(serviceResponse, null);
+        }
+        return new Pair<>(serviceResponse, manyVersion(pageable, fields, idsAndVersions, serviceResponse.data().totalItems()));
+    }
+
+    /*
+     * the validators of getOneById: the same whether the version is read alone or with the entity.
+     */
+    private ResourceVersion oneVersion(TKeyType id, Object version, FieldSet fields) {
+        if (version == null) {
+            return null;
+        }
+        return ResourceVersion.of(List.of(entityClass.getName(), id, String.valueOf(version), String.valueOf(fields)), ResourceVersion.toInstant(version));
+    }
+
+    /*
+     * the validators of getMany: the same whether the versions are read alone or with the page.
+     */
+    private ResourceVersion manyVersion(Pageable pageable, FieldSet fields, List<Object> idsAndVersions, Long total) {
+        var parts = new ArrayList<Object>();
+        parts.add(entityClass.getName());
+        parts.add(pageable);
+        parts.add(fields);
+        parts.addAll(idsAndVersions);
+        if (total != null) {
+            parts.add(total);
+        }
+        // a row leaving the page doesn't move the last modification forward: only the entity tag validates a page
+        return ResourceVersion.of(parts, null);
+    }
+
+    /*
+     * runs the read, recording the ids and versions of the entities it reads into idsAndVersions (see recordReadVersions).
+     */
+    private <R> R recordingReadVersions(List<Object> idsAndVersions, Supplier<R> read) {
+        List<Object> outerReadVersions = readVersions.get();
+        readVersions.set(idsAndVersions);
+        try {
+            return read.get();
+        } finally {
+            if (outerReadVersions == null) {
+                readVersions.remove();
+            } else {
+                readVersions.set(outerReadVersions);
+            }
+        }
+    }
+
+    /**
+     * Records the ids and versions of the entities read for getOneByIdWithVersion and getManyWithVersion,
+     * which derive the validators from them instead of running a version query. Does nothing outside of these reads.<br>
+     * A subclass reading the rows of getOneById or getMany itself records them, in the order of the rows,
+     * including the row after a page when it reads one (see {@link #getManyVersion}).
+     * @param entities the entities read, managed by {@link #entityManager}
+     */
+    protected void recordReadVersions(List<T> entities) {
+        if (readVersions.get() == null || getVersionAttributeName() == null) {
+            return;
+        }
+        var persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        var session = entityManager.unwrap(SessionImplementor.class);
+        for (T entity : entities) {
+            recordReadVersion(persistenceUnitUtil.getIdentifier(entity), session.getEntityPersister(null, entity).getVersion(entity));
+        }
+    }
+
+    private void recordReadVersion(Object id, Object version) {
+        List<Object> idsAndVersions = readVersions.get();
+        if (idsAndVersions != null) {
+            idsAndVersions.add(id);
+            idsAndVersions.add(version);
+        }
+    }
+
+    /*
+     * the version of a managed entity, null if it has no version attribute.
+     */
+    private Object versionOf(T entity) {
+        if (getVersionAttributeName() == null) {
+            return null;
+        }
+        return entityManager.unwrap(SessionImplementor.class).getEntityPersister(null, entity).getVersion(entity);
+    }
+
+    /*
+     * reads one page without counting the matching rows: pageSize + 1 rows are fetched and the extra row only tells whether there is a next page.
+     */
+    private Slice<T> findSlice(Specification<T> criteria, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            List<T> rows = findAll(criteria, pageable.getSort(), 0, 0);
+            recordReadVersions(rows);
+            return new SliceImpl<>(rows, pageable, false);
+        }
+        List<T> rows = findAll(criteria, pageable.getSort(), pageable.getOffset(), pageable.getPageSize() + 1);
+        // the row past the page is part of the version: it decides hasNext
+        recordReadVersions(rows);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        var content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    private Page<T> findPage(Specification<T> criteria, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(criteria, pageable.getSort(), 0, 0));
+        }
+        List<T> content = findAll(criteria, pageable.getSort(), pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(content, pageable, countAll(criteria));
+    }
+
+    private Optional<T> findOne(Specification<T> criteria) {
+        List<T> rows = findAll(criteria, Sort.unsorted(), 0, 2);
+        if (rows.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1);
+        }
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Executes the criteria through the entity manager, binding the condition values as query parameters (see {@link ParameterScope}).
+     * @param criteria the compiled condition (null for no condition)
+     * @param sort the order of the rows
+     * @param offset the number of rows to skip
+     * @param maxResults the max number of rows to return. 0 means no limit.
+     * @return the matching entities
+     */
+    protected List<T> findAll(Specification<T> criteria, Sort sort, long offset, int maxResults) {
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<T> query = builder.createQuery(entityClass);
+            Root<T> root = query.from(entityClass);
+            query.select(root);
+            applyCriteria(criteria, root, query, builder);
+            if (sort.isSorted()) {
+                query.orderBy(QueryUtils.toOrders(sort, root, builder));
+            }
+
+            var typedQuery = parameterScope.bindTo(entityManager.createQuery(query));
+            if (offset > 0) {
+                typedQuery.setFirstResult((int) offset);
+            }
+            if (maxResults > 0) {
+                typedQuery.setMaxResults(maxResults);
+            }
+            return typedQuery.getResultList();
+        }
+    }
+
+    /**
+     * Counts the entities matching the criteria, binding the condition values as query parameters (see {@link ParameterScope}).
+     * @param criteria the compiled condition (null for no condition)
+     * @return the number of matching entities
+     */
+    protected long countAll(Specification<T> criteria) {
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> query = builder.createQuery(Long.class);
+            Root<T> root = query.from(entityClass);
+            query.select(builder.count(root));
+            applyCriteria(criteria, root, query, builder);
+            return parameterScope.bindTo(entityManager.createQuery(query)).getSingleResult();
+        }
+    }
+
+    /*
+     * the projection version of findSlice and findPage.
+     */
+    private PaginatedResponse<GetOneOutputDto> findProjectedPage(Specification<T> criteria, Pageable pageable, boolean isTotalComputed, DtoProjection<GetOneOutputDto> dtoProjection) {
+        if (pageable.isUnpaged()) {
+            List<GetOneOutputDto> rows = findAllProjected(criteria, pageable.getSort(), 0, 0, dtoProjection);
+            return isTotalComputed
+                    ? PaginationMapper.mapPageToPaginatedResponse(new PageImpl<>(rows))
+                    : PaginationMapper.mapSliceToPaginatedResponse(new SliceImpl<>(rows, pageable, false));
+        }
+        if (!isTotalComputed) {
+            List<GetOneOutputDto> rows = findAllProjected(criteria, pageable.getSort(), pageable.getOffset(), pageable.getPageSize() + 1, dtoProjection);
+            boolean hasNext = rows.size() > pageable.getPageSize();
+            var content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+            return PaginationMapper.mapSliceToPaginatedResponse(new SliceImpl<>(content, pageable, hasNext));
+        }
+        List<GetOneOutputDto> content = findAllProjected(criteria, pageable.getSort(), pageable.getOffset(), pageable.getPageSize(), dtoProjection);
+        return PaginationMapper.mapPageToPaginatedResponse(new PageImpl<>(content, pageable, countAll(criteria)));
+    }
+
+    /**
+     * Like {@link #findAll(Specification, Sort, long, int)}, but selects only the columns of the projection and maps the rows to DTOs:
+     * no entity is loaded nor registered in the persistence context.
+     * @param criteria the compiled condition (null for no condition)
+     * @param sort the order of the rows
+     * @param offset the number of rows to skip
+     * @param maxResults the max number of rows to return. 0 means no limit.
+     * @return the DTOs of the matching rows
+     */
+    protected List<GetOneOutputDto> findAllProjected(Specification<T> criteria, Sort sort, long offset, int maxResults) {
+        return findAllProjected(criteria, sort, offset, maxResults, getProjection());
+    }
+
+    /**
+     * Like {@link #findAllProjected(Specification, Sort, long, int)}, with the columns of the given projection,
+     * e.g. the projection of a sparse fieldset (see {@link DtoProjection#restrictedTo}).
+     */
+    protected List<GetOneOutputDto> findAllProjected(Specification<T> criteria, Sort sort, long offset, int maxResults, DtoProjection<GetOneOutputDto> dtoProjection) {
+        boolean isReadVersionRecorded = readVersions.get() != null && getVersionAttributeName() != null;
+        List<Selection<?>> selections;
+        List<Tuple> rows;
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = builder.createTupleQuery();
+            Root<T> root = query.from(entityClass);
+            selections = new ArrayList<>(dtoProjection.select(root));
+            if (isReadVersionRecorded) {
+                // after the columns of the projection, which maps the row from the first selection
+                selections.add(root.get(getIdAttributeName()));
+                selections.add(root.get(getVersionAttributeName()));
+            }
+            query.multiselect(selections);
+            applyCriteria(criteria, root, query, builder);
+            if (sort.isSorted()) {
+                query.orderBy(QueryUtils.toOrders(sort, root, builder));
+            }
+
+            var typedQuery = parameterScope.bindTo(entityManager.createQuery(query));
+            if (offset > 0) {
+                typedQuery.setFirstResult((int) offset);
+            }
+            if (maxResults > 0) {
+                typedQuery.setMaxResults(maxResults);
+            }
+            rows = typedQuery.getResultList();
+        }
+        var dtos = new ArrayList<GetOneOutputDto>(rows.size());
+        for (var row : rows) {
+            dtos.add(dtoProjection.map(row));
+            if (isReadVersionRecorded) {
+                recordReadVersion(row.get(selections.size() - 2), row.get(selections.size() - 1));
+            }
+        }
+        return dtos;
+    }
+
+    /*
+     * The projection needs the metamodel, so it's built on first use rather than at construction.
+     */
+    @SuppressWarnings("unchecked")
+    private DtoProjection<GetOneOutputDto> getProjection() {
+        if (projection == null) {
+            var dtoType = (Class<GetOneOutputDto>) getGenericType(6);
+            var dtoProjection = DtoProjection.of(dtoType, entityManager.getMetamodel().entity(entityClass));
+            if (dtoProjection.getAttributes().isEmpty()) {
+                throw new IllegalStateException("no property of %s is an attribute of %s".formatted(dtoType.getSimpleName(), entityClass.getSimpleName()));
+            }
+            if (!dtoProjection.getUnmappedProperties().isEmpty()) {
+                logger.warn("the projection of {} leaves these properties empty: {}", dtoType.getSimpleName(), dtoProjection.getUnmappedProperties());
+            }
+            projection = dtoProjection;
+        }
+        return projection;
+    }
+
+    /*
+     * The @Version attribute of the entity, null if it has none. Like the projection, it needs the metamodel.
+     */
+    private String getVersionAttributeName() {
+        if (!isVersionAttributeResolved) {
+            EntityType<T> entityType = entityManager.getMetamodel().entity(entityClass);
+            if (entityType.hasVersionAttribute()) {
+                versionAttributeName = entityType.getSingularAttributes().stream()
+                        .filter(SingularAttribute::isVersion)
+                        .map(SingularAttribute::getName)
+                        .findFirst()
+                        .orElse(null);
+            }
+            isVersionAttributeResolved = true;
+        }
+        return versionAttributeName;
+    }
+
+    /*
+     * InvalidInput if a requested property isn't a property of GetOneOutputDto.
+     */
+    private AppError checkFields(FieldSet fields) {
+        DtoProjection<GetOneOutputDto> dtoProjection = getProjection();
+        for (String property : fields.getProperties()) {
+            if (!dtoProjection.getAttributes().contains(property) && !dtoProjection.getUnmappedProperties().contains(property)) {
+                return new AppError(ErrorCode.InvalidInput, "unknown field.", property);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * The projection of the requested properties, or null when one of them isn't a basic attribute of the entity (a relation):
+     * the entities are then read and mapped as usual.
+     */
+    private DtoProjection<GetOneOutputDto> projectionOf(FieldSet fields) {
+        DtoProjection<GetOneOutputDto> dtoProjection = getProjection();
+        if (!dtoProjection.getAttributes().containsAll(fields.getProperties())) {
+            return null;
+        }
+        return dtoProjection.restrictedTo(fields.getProperties());
+    }
+
+    private void applyCriteria(Specification<T> criteria, Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+        if (criteria == null) {
+            return;
+        }
+        var predicate = criteria.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<PaginatedResponse<GetOneOutputDto>> getManyByKeyset(String condition, KeysetPageRequest pageRequest) {
+        if (pageRequest.pageSize() <= 0) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(new AppError(ErrorCode.InvalidInput, "pageSize should be positive.", pageRequest.pageSize()));
+        }
+        boolean ascending = pageRequest.direction() != Sort.Direction.DESC;
+        KeysetCursor cursor = null;
+        if (!StringExtensions.IsNullOrEmpty(pageRequest.cursor())) {
+            try {
+                cursor = KeysetCursor.decode(pageRequest.cursor());
+            } catch (IllegalArgumentException e) {
+                return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(new AppError(ErrorCode.InvalidInput, "invalid cursor.", pageRequest.cursor()));
+            }
+            if (!cursor.sortBy().equals(pageRequest.sortBy()) ||
+                    !cursor.direction().equalsIgnoreCase(ascending ? Sort.Direction.ASC.name() : Sort.Direction.DESC.name())) {
+                return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(new AppError(ErrorCode.InvalidInput, "the cursor doesn't match the sort parameters.", pageRequest.cursor()));
+            }
+        }
+
+        var conditionCheck = checkCondition(condition, Sort.by(pageRequest.sortBy()));
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(conditionCheck.first());
+        }
+        Specification<T> criteria = buildCriteria(condition);
+        String idAttribute = getIdAttributeName();
+        boolean sortedById = pageRequest.sortBy().equals(idAttribute);
+
+        List<Tuple> rows;
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = builder.createTupleQuery();
+            Root<T> root = query.from(entityClass);
+            Path<?> sortPath = getPath(root, pageRequest.sortBy());
+            Path<?> idPath = root.get(idAttribute);
+
+            var predicates = new ArrayList<Predicate>();
+            if (criteria != null) {
+                var predicate = criteria.toPredicate(root, query, builder);
+                if (predicate != null) {
+                    predicates.add(predicate);
+                }
+            }
+            if (cursor != null) {
+                Object lastSortValue;
+                Object lastId;
+                // the cursor comes from the client: its values may not be of the type of the columns
+                try {
+                    lastSortValue = ValueConverter.fromString(cursor.sortValue(), sortPath.getJavaType());
+                    lastId = ValueConverter.fromString(cursor.id(), idPath.getJavaType());
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(new AppError(ErrorCode.InvalidInput, "invalid cursor.", pageRequest.cursor()));
+                }
+                predicates.add(buildSeekPredicate(builder, sortPath, idPath, (Comparable<?>) lastSortValue, (Comparable<?>) lastId, ascending, sortedById));
+            }
+            query.multiselect(root, sortPath, idPath).where(predicates.toArray(new Predicate[0]));
+            if (sortedById) {
+                query.orderBy(ascending ? builder.asc(idPath) : builder.desc(idPath));
+            } else {
+                query.orderBy(ascending ? builder.asc(sortPath) : builder.desc(sortPath),
+                        ascending ? builder.asc(idPath) : builder.desc(idPath));
+            }
+
+            // one extra row tells whether there is a next page, without any count query
+            rows = parameterScope.bindTo(entityManager.createQuery(query))
+                    .setMaxResults(pageRequest.pageSize() + 1)
+                    .getResultList();
+        }
+        boolean hasNext = rows.size() > pageRequest.pageSize();
+        var pageRows = hasNext ? rows.subList(0, pageRequest.pageSize()) : rows;
+
+        var entities = new ArrayList<T>(pageRows.size());
+        for (var row : pageRows) {
+            entities.add(row.get(0, entityClass));
+        }
+        fetchPlanLoader.load(entityClass, entities, getManyFetchPlan);
+        var data = new ArrayList<GetOneOutputDto>(pageRows.size());
+        for (var entity : entities) {
+            data.add(mapper.entityToGetOneOutputDto(entity));
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            var lastRow = pageRows.get(pageRows.size() - 1);
+            Object lastSortValue = lastRow.get(1);
+            if (lastSortValue == null) {
+                return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(new AppError(ErrorCode.InvalidInput, "keyset pagination requires a non null sort attribute.", pageRequest.sortBy()));
+            }
+            nextCursor = new KeysetCursor(
+                    pageRequest.sortBy(),
+                    ascending ? Sort.Direction.ASC.name() : Sort.Direction.DESC.name(),
+                    String.valueOf(lastSortValue),
+                    String.valueOf(lastRow.get(2))
+            ).encode();
+        }
+        return new ServiceResponse<>(new PaginatedResponse<>(null, pageRequest.pageSize(), null, null, data, hasNext, nextCursor));
+    }
+
+    /*
+     * (sortKey, id) > (lastSortValue, lastId) expanded as: sortKey > lastSortValue or (sortKey = lastSortValue and id > lastId)
+     * so that it can be expressed in JPA criteria and still be served by an index on (sortKey, id).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate buildSeekPredicate(CriteriaBuilder builder,
+                                         Path<?> sortPath,
+                                         Path<?> idPath,
+                                         Comparable lastSortValue,
+                                         Comparable lastId,
+                                         boolean ascending,
+                                         boolean sortedById) {
+        Expression idExpression = idPath;
+        Predicate idAfter = ascending ? builder.greaterThan(idExpression, lastId) : builder.lessThan(idExpression, lastId);
+        if (sortedById) {
+            return idAfter;
+        }
+        Expression sortExpression = sortPath;
+        Predicate sortAfter = ascending ? builder.greaterThan(sortExpression, lastSortValue) : builder.lessThan(sortExpression, lastSortValue);
+        return builder.or(sortAfter, builder.and(builder.equal(sortExpression, lastSortValue), idAfter));
+    }
+
+    private Path<?> getPath(Root<T> root, String attributePath) {
+        Path<?> path = root;
+        for (var attribute : attributePath.split("\\.")) {
+            path = path.get(attribute);
+        }
+        return path;
+    }
+
+    /**
+     * @return the hits, misses and evictions of {@link #getOneByIdCache}. the hit ratio is {@link CacheStatistics#hitRatio()}.
+     */
+    public CacheStatistics getDtoCacheStatistics() {
+        return getOneByIdCache.getStatistics();
+    }
+
+    /**
+     * @return the hits, misses and size of {@link #countCache}.
+     */
+    public CacheStatistics getCountCacheStatistics() {
+        return countCache.getStatistics();
+    }
+
+    /**
+     * Evicts the DTOs of these ids from {@link #getOneByIdCache} and invalidates {@link #countCache},
+     * once the current transaction completes (right away outside a transaction).
+     * Evicting before the commit would let a concurrent read cache the version being replaced.
+     * A read that loaded that version before the eviction doesn't cache it either: the eviction moves the generation of the cache
+     * (see {@link DtoCache#put(Object, Object, long)}).
+     * Until the transaction completes, its own getOneById calls for these ids and its own counts bypass the caches,
+     * so they see the uncommitted changes and never cache them.
+     * Call it from the writes a subclass adds.
+     */
+    protected void evictCachedReads(Collection<TKeyType> ids) {
+        if ((!getOneByIdCache.isEnabled() && !countCache.isEnabled()) || ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.forEach(getOneByIdCache::evict);
+            countCache.invalidate();
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        var writtenIds = (Set<TKeyType>) TransactionSynchronizationManager.getResource(getOneByIdCache);
+        if (writtenIds == null) {
+            var idsToEvict = new HashSet<TKeyType>();
+            TransactionSynchronizationManager.bindResource(getOneByIdCache, idsToEvict);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(getOneByIdCache);
+                    idsToEvict.forEach(getOneByIdCache::evict);
+                    countCache.invalidate();
+                }
+            });
+            writtenIds = idsToEvict;
+        }
+        writtenIds.addAll(ids);
+    }
+
+    /*
+     * true if getOneById reads and fills getOneByIdCache for this id:
+     * the transaction that wrote the entity through this service reads it from the database until it completes.
+     */
+    private boolean isDtoCacheUsed(TKeyType id) {
+        return getOneByIdCache.isEnabled() && !isWrittenInCurrentTransaction(id);
+    }
+
+    /*
+     * the DTO cached by getOneById for this id, or null (see isDtoCacheUsed).
+     */
+    private CachedDto<GetOneOutputDto> getCachedDto(TKeyType id) {
+        return isDtoCacheUsed(id) ? getOneByIdCache.get(id) : null;
+    }
+
+    /*
+     * true if the current transaction created, updated or deleted this entity through this service (see evictCachedReads).
+     */
+    private boolean isWrittenInCurrentTransaction(TKeyType id) {
+        var writtenIds = (Set<?>) TransactionSynchronizationManager.getResource(getOneByIdCache);
+        return writtenIds != null && writtenIds.contains(id);
+    }
+
+    /*
+     * true if the current transaction wrote through this service (see evictCachedReads).
+     */
+    private boolean isWrittenInCurrentTransaction() {
+        return TransactionSynchronizationManager.hasResource(getOneByIdCache);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TKeyType> idsOf(List<T> entities) {
+        var persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        var ids = new ArrayList<TKeyType>(entities.size());
+        for (T entity : entities) {
+            ids.add((TKeyType) persistenceUnitUtil.getIdentifier(entity));
+        }
+        return ids;
+    }
+
+    protected String getIdAttributeName() {
+        if (idAttributeName == null) {
+            var entityType = entityManager.getMetamodel().entity(entityClass);
+            idAttributeName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        }
+        return idAttributeName;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<Long> exportMany(String condition, Sort sort, Consumer<? super GetOneOutputDto> consumer) {
+        var conditionCheck = checkCondition(condition, sort);
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<Long>(conditionCheck.first());
+        }
+        long exported = 0;
+        // in the caller's transaction, the entities it already manages stay managed, with their unflushed changes
+        Set<Object> callerEntities = managedEntities();
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<T> query = builder.createQuery(entityClass);
+            Root<T> root = query.from(entityClass);
+            query.select(root);
+            applyCriteria(buildCriteria(condition), root, query, builder);
+            if (sort.isSorted()) {
+                query.orderBy(QueryUtils.toOrders(sort, root, builder));
+            }
+            // a forward only cursor of read only entities: no snapshot is kept to detect changes
+            var typedQuery = parameterScope.bindTo(entityManager.createQuery(query))
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, exportFetchSize)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true);
+            try (var rows = typedQuery.getResultStream()) {
+                var batch = new ArrayList<T>(exportFetchSize);
+                var iterator = rows.iterator();
+                // the batch is written before hasNext() reads the next row: detaching the batch would detach it
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() == exportFetchSize) {
+                        exported += exportBatch(batch, consumer, callerEntities);
+                    }
+                }
+                exported += exportBatch(batch, consumer, callerEntities);
+            }
+        }
+        return new ServiceResponse<>(exported);
+    }
+
+    /*
+     * maps and hands over one batch of exported entities, then detaches them with the relations the fetch plan loaded:
+     * the rows already written don't need to stay in memory.
+     * The persistence context isn't cleared: that would detach the entities of the caller's transaction and drop their unflushed changes,
+     * as well as the entities the consumer manages.
+     */
+    private int exportBatch(List<T> batch, Consumer<? super GetOneOutputDto> consumer, Set<Object> callerEntities) {
+        int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+        fetchPlanLoader.load(entityClass, batch, getManyFetchPlan);
+        Set<Object> exportedEntities = managedEntities();
+        exportedEntities.removeAll(callerEntities);
+        for (T entity : batch) {
+            consumer.accept(mapper.entityToGetOneOutputDto(entity));
+        }
+        batch.clear();
+        exportedEntities.forEach(entityManager::detach);
+        return size;
+    }
+
+    /*
+     * the entities of the persistence context, by identity.
+     */
+    private Set<Object> managedEntities() {
+        var persistenceContext = entityManager.unwrap(SessionImplementor.class).getPersistenceContextInternal();
+        Set<Object> entities = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (var entry : persistenceContext.reentrantSafeEntityEntries()) {
+            entities.add(entry.getKey());
+        }
+        return entities;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public ServiceResponse<Long> count(String condition) {
         var specificationExecutor = (JpaSpecificationExecutor<T>) jpaRepository;
         if (specificationExecutor == null) {
             return new ServiceResponse<Long>(new AppError(ErrorCode.InternalSystemError, "unable to find JpaSpecificationExecutor"));
         }
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<Long>(conditionCheck.first());
+        }
 
-        Specification<T> criteria = null;
+        return new ServiceResponse<>(countThroughCache(condition, () -> {
+            Specification<T> criteria = buildCriteria(condition);
+            if (criteria == null) {
+                return jpaRepository.count();
+            }
+            if (isConditionBoundAsParameters) {
+                return countAll(criteria);
+            }
+            return specificationExecutor.count(criteria);
+        }));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<Map<String, Long>> countMany(Map<String, String> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return new ServiceResponse<Map<String, Long>>(new AppError(ErrorCode.RequiredField, "required field: conditions."));
+        }
+        for (var condition : conditions.entrySet()) {
+            var conditionCheck = checkCondition(condition.getValue(), Sort.unsorted());
+            if (conditionCheck.first() != null) {
+                AppError error = conditionCheck.first();
+                return new ServiceResponse<Map<String, Long>>(new AppError(error.errorCode(), "%s: %s".formatted(condition.getKey(), error.message()), error.errorData()));
+            }
+        }
+        var names = new ArrayList<String>(conditions.keySet());
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = builder.createTupleQuery();
+            Root<T> root = query.from(entityClass);
+            var selections = new ArrayList<Selection<?>>(names.size());
+            for (String name : names) {
+                Predicate predicate = toCountPredicate(conditions.get(name), root, query, builder);
+                Expression<Long> matches = predicate == null
+                        ? builder.literal(1L)
+                        : builder.<Long>selectCase().when(predicate, 1L).otherwise(0L);
+                selections.add(builder.coalesce(builder.sum(matches), 0L));
+            }
+            query.multiselect(selections);
+            applyCriteria(withSoftDeleteFilter(null), root, query, builder);
+
+            Tuple row = parameterScope.bindTo(entityManager.createQuery(query)).getSingleResult();
+            var counts = new LinkedHashMap<String, Long>();
+            for (int i = 0; i < names.size(); i++) {
+                counts.put(names.get(i), ((Number) row.get(i)).longValue());
+            }
+            return new ServiceResponse<>(counts);
+        } catch (IllegalArgumentException e) {
+            return new ServiceResponse<Map<String, Long>>(new AppError(ErrorCode.InvalidInput, "bad JSON condition.", e.getMessage()));
+        }
+    }
+
+    /*
+     * The condition of one count of countMany, evaluated in the CASE WHEN of the shared scan. null means all the rows.
+     * The to-one relations of a condition are inner joined: on the shared root they would drop rows from the other counts,
+     * so a condition navigating a to-one relation is evaluated in a subquery correlated by id instead.
+     */
+    private Predicate toCountPredicate(String condition, Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
         if (condition == null || condition.isBlank() || StringExtensions.IsBlankJson(condition)) {
-            if (!isSoftDelete) {
-                return new ServiceResponse<>(jpaRepository.count());
+            return null;
+        }
+        Specification<T> criteria = specificationBuilder.build(condition);
+        if (!isJoining(criteria, builder)) {
+            return criteria.toPredicate(root, query, builder);
+        }
+        String idAttributeName = getIdAttributeName();
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        Root<T> matched = subquery.from(entityClass);
+        subquery.select(builder.literal(1)).where(
+                builder.equal(matched.get(idAttributeName), root.get(idAttributeName)),
+                criteria.toPredicate(matched, query, builder));
+        return builder.exists(subquery);
+    }
+
+    // builds the predicate on a throwaway query, its parameters are discarded with the nested scope
+    private boolean isJoining(Specification<T> criteria, CriteriaBuilder builder) {
+        try (var probeScope = ParameterScope.open()) {
+            CriteriaQuery<Long> probe = builder.createQuery(Long.class);
+            Root<T> probeRoot = probe.from(entityClass);
+            criteria.toPredicate(probeRoot, probe, builder);
+            return !probeRoot.getJoins().isEmpty();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<AggregateResponse> aggregate(String condition, List<String> groupBy, List<String> aggregates) {
+        List<String> groupByPaths = groupBy != null ? groupBy : List.of();
+        List<String> aggregateFunctions = aggregates != null ? aggregates : List.of();
+        if (groupByPaths.isEmpty() && aggregateFunctions.isEmpty()) {
+            return new ServiceResponse<AggregateResponse>(new AppError(ErrorCode.RequiredField, "required field: groupBy or aggregates."));
+        }
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<AggregateResponse>(conditionCheck.first());
+        }
+        try (var parameterScope = ParameterScope.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = builder.createTupleQuery();
+            Root<T> root = query.from(entityClass);
+            var groups = new ArrayList<Expression<?>>(groupByPaths.size());
+            for (String groupByPath : groupByPaths) {
+                groups.add(specificationBuilder.selectPath(root, groupByPath, true));
             }
-            criteria = specificationBuilder.build(isNotDeletedCondition);
+            var selections = new ArrayList<Selection<?>>(groups);
+            for (String aggregate : aggregateFunctions) {
+                selections.add(toAggregate(root, builder, aggregate));
+            }
+            query.multiselect(selections);
+            applyCriteria(buildCriteria(condition), root, query, builder);
+            if (!groups.isEmpty()) {
+                query.groupBy(groups);
+                query.orderBy(groups.stream().map(builder::asc).toList());
+            }
+
+            var rows = new ArrayList<List<Object>>();
+            for (Tuple tuple : parameterScope.bindTo(entityManager.createQuery(query)).getResultList()) {
+                rows.add(Arrays.asList(tuple.toArray()));
+            }
+            var columns = new ArrayList<String>(groupByPaths);
+            columns.addAll(aggregateFunctions);
+            return new ServiceResponse<>(new AggregateResponse(columns, rows));
+        } catch (IllegalArgumentException e) {
+            return new ServiceResponse<AggregateResponse>(new AppError(ErrorCode.InvalidInput, "bad aggregation.", e.getMessage()));
         }
-        if (criteria == null) {
-            criteria = isSoftDelete ? specificationBuilder.buildWithAnd(condition, isNotDeletedCondition) :
-                    specificationBuilder.build(condition);
+    }
+
+    /*
+     * count counts the rows, the other functions take a basic attribute reachable without going through a collection.
+     * min and max compare any comparable attribute (dates, texts), sum and avg need a number.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Expression<?> toAggregate(Root<T> root, CriteriaBuilder builder, String aggregate) {
+        Matcher matcher = aggregatePattern.matcher(aggregate);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("unknown aggregate %s. expected: count, count(path), sum(path), avg(path), min(path) or max(path)".formatted(aggregate));
+        }
+        String function = matcher.group(1).toLowerCase();
+        String attributePath = matcher.group(2);
+        if (attributePath == null) {
+            if (!function.equals("count")) {
+                throw new IllegalArgumentException("%s needs an attribute: %s(path)".formatted(aggregate, function));
+            }
+            return builder.count(root);
         }
-        return new ServiceResponse<>(specificationExecutor.count(criteria));
+        Path<?> attribute = specificationBuilder.selectPath(root, attributePath, false);
+        boolean isNumber = Number.class.isAssignableFrom(ValueConverter.wrap(attribute.getJavaType()));
+        if ((function.equals("sum") || function.equals("avg")) && !isNumber) {
+            throw new IllegalArgumentException("%s: %s is not a number".formatted(aggregate, attributePath));
+        }
+        return switch (function) {
+            case "count" -> builder.count(attribute);
+            case "sum" -> builder.sum((Expression<Number>) attribute);
+            case "avg" -> builder.avg((Expression<Number>) attribute);
+            case "min" -> builder.least((Expression) attribute);
+            default -> builder.greatest((Expression) attribute);
+        };
+    }
+
+    /**
+     * Serves the count from {@link #countCache}, or counts and caches the result.
+     * @param condition JSON where condition, already checked (optional)
+     * @param counter executes the count
+     * @return the number of entities matching the condition
+     */
+    protected long countThroughCache(String condition, LongSupplier counter) {
+        if (!countCache.isEnabled() || isWrittenInCurrentTransaction()) {
+            return counter.getAsLong();
+        }
+        boolean hasCondition = condition != null && !condition.isBlank() && !StringExtensions.IsBlankJson(condition);
+        String normalizedCondition = hasCondition ? specificationBuilder.normalize(condition) : "";
+        Long cachedCount = countCache.get(normalizedCondition);
+        if (cachedCount != null) {
+            return cachedCount;
+        }
+        long generation = countCache.getGeneration();
+        long count = counter.getAsLong();
+        countCache.put(normalizedCondition, count, generation);
+        return count;
     }
 
     @Override
@@ -332,6 +1570,7 @@ public class CrudServiceORM<T,
                 onPreDeleteOne(entity);
                 jpaRepository.deleteById(id);
             }
+            evictCachedReads(List.of(id));
             var deleteOneOutputDto = mapper.entityToDeleteOneOutputDto(entity);
             return new ServiceResponse<>(deleteOneOutputDto);
         }
@@ -347,11 +1586,14 @@ public class CrudServiceORM<T,
         if (specificationExecutor == null) {
             return new ServiceResponse<List<DeleteOneOutputDto>>(new AppError(ErrorCode.InternalSystemError, "unable to find JpaSpecificationExecutor"));
         }
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<List<DeleteOneOutputDto>>(conditionCheck.first());
+        }
 
-        var criteria = isSoftDelete ? specificationBuilder.buildWithAnd(condition, isNotDeletedCondition) :
-                specificationBuilder.build(condition);
+        var criteria = withSoftDeleteFilter(specificationBuilder.build(condition));
 
-        List<T> entities = specificationExecutor.findAll(criteria);
+        List<T> entities = isConditionBoundAsParameters ? findAll(criteria, Sort.unsorted(), 0, 0) : specificationExecutor.findAll(criteria);
         if (entities.isEmpty()) {
             return new ServiceResponse<List<DeleteOneOutputDto>>(new AppError(ErrorCode.NotFound, "nothing was deleted."));
         }
@@ -375,13 +1617,142 @@ public class CrudServiceORM<T,
             }
             jpaRepository.saveAll(entities);
         }
+        evictCachedReads(idsOf(entities));
         var deleteManyOutputDto = mapper.entitiesToDeleteManyOutputDto(entities);
         return new ServiceResponse<>(deleteManyOutputDto);
     }
 
+    /**
+     * Compiles the condition (cached by {@link SpecificationBuilder}), checks its estimated cost against {@link #conditionBudget},
+     * then checks the condition and the sort against the indexes according to {@link #unindexedFilterPolicy}.
+     * @param condition JSON where condition (optional)
+     * @param sort the sort of the query
+     * @return the error rejecting the query (null if it's accepted) and the estimated cost of the condition (null if there is no condition).
+     */
+    protected Pair<AppError, ConditionCost> checkCondition(String condition, Sort sort) {
+        return checkCondition(condition, sort, true);
+    }
+
+    /*
+     * isReported false checks the condition without recording nor logging an unindexed filter,
+     * for a check that the read itself repeats (see getManyVersion).
+     */
+    private Pair<AppError, ConditionCost> checkCondition(String condition, Sort sort, boolean isReported) {
+        boolean hasCondition = condition != null && !condition.isBlank() && !StringExtensions.IsBlankJson(condition);
+        ConditionCost cost = null;
+        if (hasCondition) {
+            try {
+                cost = specificationBuilder.estimateCost(condition, entityClass);
+            } catch (IllegalArgumentException e) {
+                return new Pair<>(new AppError(ErrorCode.InvalidInput, "bad JSON condition.", e.getMessage()), null);
+            }
+            String exceededLimit = conditionBudget.findExceededLimit(cost);
+            if (exceededLimit != null) {
+                return new Pair<>(new AppError(ErrorCode.ConditionTooComplex, "the condition is too complex: %s.".formatted(exceededLimit), cost), cost);
+            }
+        }
+        return new Pair<>(checkIndexUsage(hasCondition ? condition : null, sort, isReported), cost);
+    }
+
+    /**
+     * @param withTotal the choice of the client, null for {@link #isTotalComputedByDefault}
+     * @param cost the estimated cost of the condition, null if there is no condition
+     * @return whether getMany counts the matching rows. Counting all the rows matching an expensive condition costs more than the page itself,
+     * so the default total is dropped when {@link #conditionBudget} can't afford it (see {@link #checkTotal} for an explicit one).
+     */
+    protected boolean isTotalComputed(Boolean withTotal, ConditionCost cost) {
+        boolean isTotalComputed = withTotal != null ? withTotal : isTotalComputedByDefault;
+        if (cost != null && !conditionBudget.isTotalAffordable(cost)) {
+            isTotalComputed = false;
+        }
+        return isTotalComputed;
+    }
+
+    /*
+     * Every attribute compared by the condition and every sort attribute should lead an index.
+     * The offending ones make the shape recorded in the report, e.g. "Book: press =, sort noPages".
+     */
+    private AppError checkIndexUsage(String condition, Sort sort, boolean isReported) {
+        if (unindexedFilterPolicy == UnindexedFilterPolicy.ALLOW) {
+            return null;
+        }
+        var offendingAttributes = new TreeSet<String>();
+        try {
+            if (condition != null) {
+                for (var comparison : specificationBuilder.getShape(condition).comparisons()) {
+                    if (comparison.isUnanchoredLike() || !indexCatalog.isIndexed(entityClass, comparison.dottedPath())) {
+                        offendingAttributes.add("%s %s".formatted(comparison.dottedPath(), comparison.operator()));
+                    }
+                }
+            }
+            for (Sort.Order order : sort) {
+                if (!indexCatalog.isIndexed(entityClass, order.getProperty())) {
+                    offendingAttributes.add("sort %s".formatted(order.getProperty()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return new AppError(ErrorCode.InvalidInput, "invalid attribute.", e.getMessage());
+        }
+        if (offendingAttributes.isEmpty()) {
+            return null;
+        }
+        String shape = "%s: %s".formatted(entityClass.getSimpleName(), String.join(", ", offendingAttributes));
+        if (isReported) {
+            unindexedFilterReport.record(shape);
+        }
+        if (isReported && unindexedFilterPolicy == UnindexedFilterPolicy.WARN) {
+            logger.warn("a filter can't use an index: {}", shape);
+        }
+        if (unindexedFilterPolicy == UnindexedFilterPolicy.REJECT) {
+            return new AppError(ErrorCode.UnindexedFilter, "the filter can't use an index.", shape);
+        }
+        return null;
+    }
+
+    /**
+     * @param withTotal the choice of the client, null for {@link #isTotalComputedByDefault}
+     * @param cost the estimated cost of the condition, null if there is no condition
+     * @return the error rejecting a total explicitly requested that {@link #conditionBudget} can't afford, or null.
+     * A total not explicitly requested is dropped instead (slice mode).
+     */
+    protected AppError checkTotal(Boolean withTotal, ConditionCost cost) {
+        if (Boolean.TRUE.equals(withTotal) && cost != null && !conditionBudget.isTotalAffordable(cost)) {
+            return new AppError(ErrorCode.ConditionTooComplex,
+                    "the condition is too complex to compute the total: weight %d exceeds %d.".formatted(cost.weight(), conditionBudget.maxWeightWithTotal()), cost);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the condition (cached by {@link SpecificationBuilder}) and adds the soft delete filter if needed.
+     * @param condition JSON where condition (optional)
+     * @return the specification to execute, or null if neither a condition nor a soft delete filter is required.
+     */
+    protected Specification<T> buildCriteria(String condition) {
+        if (condition == null || condition.isBlank() || StringExtensions.IsBlankJson(condition)) {
+            return withSoftDeleteFilter(null);
+        }
+        return withSoftDeleteFilter(specificationBuilder.build(condition));
+    }
+
+    /**
+     * @param criteria the compiled condition, null means no condition
+     * @return the criteria combined with the precompiled soft delete filter when the service has to apply it.
+     */
+    protected Specification<T> withSoftDeleteFilter(Specification<T> criteria) {
+        if (!isSoftDelete || softDeleteFilter == SoftDeleteFilter.ENTITY_RESTRICTION) {
+            return criteria;
+        }
+        return criteria == null ? isNotDeletedSpecification : criteria.and(isNotDeletedSpecification);
+    }
+
     private Class<?> getEntityType() {
+        return getGenericType(0);
+    }
+
+    private Class<?> getGenericType(int index) {
         ParameterizedType parameterizedType = (ParameterizedType) getClass().getGenericSuperclass();
-        return (Class<?>) parameterizedType.getActualTypeArguments()[0];
+        return (Class<?>) parameterizedType.getActualTypeArguments()[index];
     }
 
     /*
@@ -401,4 +1772,11 @@ public class CrudServiceORM<T,
         Class<?> entityClass = getEntityType();
         return DeletionInfo.class.isAssignableFrom(entityClass);
     }
+
+    /*
+     * Reflection based as well, called once at the constructor phase.
+     */
+    private SoftDeleteFilter calculateSoftDeleteFilter() {
+        return SoftDeleteFilter.of(getEntityType(), deletedAttribute);
+    }
 }
\ No newline at end of file
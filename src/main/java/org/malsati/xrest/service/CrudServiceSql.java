@@ -0,0 +1,219 @@
+package org.malsati.xrest.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.malsati.xrest.dto.FieldSet;
+import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.AppError;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.dto.pagination.PaginatedResponse;
+import org.malsati.xrest.entities.audit.interfaces.IdentityInfo;
+import org.malsati.xrest.infrastructure.sql.SqlCondition;
+import org.malsati.xrest.infrastructure.sql.SqlConditionCompiler;
+import org.malsati.xrest.infrastructure.sql.SqlParameter;
+import org.malsati.xrest.mapper.IMapper;
+import org.malsati.xrest.mapper.PaginationMapper;
+import org.malsati.xrest.utilities.text.StringExtensions;
+
+import org.hibernate.query.BindableType;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A {@link CrudServiceORM} whose reads filtered by a JSON condition (getOne, getMany and count) are executed as native SQL:
+ * the condition is compiled straight to SQL by {@link SqlConditionCompiler} (one compilation per condition shape),
+ * instead of building a Criteria tree that Hibernate translates on every request.
+ * The rows are still mapped to managed entities, so the mapper and the lazy relations work the same way.<br>
+ * The condition is checked against {@link #conditionBudget} and {@link #unindexedFilterPolicy} like {@link CrudServiceORM} does.
+ * The other operations (writes, getOneById, getManyByKeyset, countMany, aggregate, deleteMany, the version queries of the conditional reads)
+ * are the ones of {@link CrudServiceORM},
+ * and so are the reads of a sparse fieldset made of columns only (see {@link CrudServiceORM#getMany(String, Pageable, Boolean, FieldSet)}).<br>
+ * Sorting is limited to the basic attributes of the entity itself.
+ *
+ * @see CrudServiceORM
+ */
+public class CrudServiceSql<T,
+        TKeyType extends Serializable,
+        CreateOneInputDto,
+        CreateOneOutputDto,
+        UpdateOneInputDto extends IdentityInfo<TKeyType>,
+        DeleteOneOutputDto,
+        GetOneOutputDto> extends CrudServiceORM<T, TKeyType, CreateOneInputDto, CreateOneOutputDto, UpdateOneInputDto, DeleteOneOutputDto, GetOneOutputDto> {
+    private static final String deletedAttribute = "deleted";
+
+    @Autowired
+    protected SqlConditionCompiler sqlConditionCompiler;
+
+    public CrudServiceSql(JpaRepository<T, TKeyType> jpaRepository,
+                          IMapper<T, TKeyType, CreateOneInputDto, CreateOneOutputDto, UpdateOneInputDto, DeleteOneOutputDto, GetOneOutputDto> mapper) {
+        super(jpaRepository, mapper);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<GetOneOutputDto> getOne(String condition) {
+        if (condition == null || condition.isBlank() || StringExtensions.IsBlankJson(condition)) {
+            return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.InvalidInput, "bad JSON condition."));
+        }
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<GetOneOutputDto>(conditionCheck.first());
+        }
+        List<T> rows;
+        try {
+            rows = findAll(condition, Sort.unsorted(), 0, 2);
+        } catch (IllegalArgumentException e) {
+            return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.InvalidInput, "bad JSON condition.", e.getMessage()));
+        }
+        if (rows.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1);
+        }
+        if (rows.isEmpty()) {
+            return new ServiceResponse<GetOneOutputDto>(new AppError(ErrorCode.NotFound, "no results matched such condition"));
+        }
+        fetchPlanLoader.load(entityClass, rows, getOneFetchPlan);
+        return new ServiceResponse<GetOneOutputDto>(mapper.entityToGetOneOutputDto(rows.get(0)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<PaginatedResponse<GetOneOutputDto>> getMany(String condition, Pageable pageable, Boolean withTotal) {
+        var conditionCheck = checkCondition(condition, pageable.getSort());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(conditionCheck.first());
+        }
+        var totalError = checkTotal(withTotal, conditionCheck.second());
+        if (totalError != null) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(totalError);
+        }
+        boolean isTotalComputed = isTotalComputed(withTotal, conditionCheck.second());
+        try {
+            if (pageable.isUnpaged()) {
+                var rows = findAll(condition, pageable.getSort(), 0, 0);
+                recordReadVersions(rows);
+                fetchPlanLoader.load(entityClass, rows, getManyFetchPlan);
+                return new ServiceResponse<>(isTotalComputed
+                        ? PaginationMapper.mapPageToPaginatedResponse(new PageImpl<>(rows), mapper::entityToGetOneOutputDto)
+                        : PaginationMapper.mapSliceToPaginatedResponse(new SliceImpl<>(rows, pageable, false), mapper::entityToGetOneOutputDto));
+            }
+            if (!isTotalComputed) {
+                List<T> rows = findAll(condition, pageable.getSort(), pageable.getOffset(), pageable.getPageSize() + 1);
+                recordReadVersions(rows);
+                boolean hasNext = rows.size() > pageable.getPageSize();
+                var content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+                fetchPlanLoader.load(entityClass, content, getManyFetchPlan);
+                return new ServiceResponse<>(PaginationMapper.mapSliceToPaginatedResponse(new SliceImpl<>(content, pageable, hasNext), mapper::entityToGetOneOutputDto));
+            }
+            List<T> content = findAll(condition, pageable.getSort(), pageable.getOffset(), pageable.getPageSize());
+            recordReadVersions(content);
+            fetchPlanLoader.load(entityClass, content, getManyFetchPlan);
+            var onePage = new PageImpl<>(content, pageable, countAll(condition));
+            return new ServiceResponse<>(PaginationMapper.mapPageToPaginatedResponse(onePage, mapper::entityToGetOneOutputDto));
+        } catch (IllegalArgumentException e) {
+            return new ServiceResponse<PaginatedResponse<GetOneOutputDto>>(new AppError(ErrorCode.InvalidInput, "bad JSON condition.", e.getMessage()));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ServiceResponse<Long> count(String condition) {
+        var conditionCheck = checkCondition(condition, Sort.unsorted());
+        if (conditionCheck.first() != null) {
+            return new ServiceResponse<Long>(conditionCheck.first());
+        }
+        try {
+            return new ServiceResponse<>(countThroughCache(condition, () -> countAll(condition)));
+        } catch (IllegalArgumentException e) {
+            return new ServiceResponse<Long>(new AppError(ErrorCode.InvalidInput, "bad JSON condition.", e.getMessage()));
+        }
+    }
+
+    /**
+     * Executes the condition as native SQL.
+     * @param condition JSON where condition (optional)
+     * @param sort the order of the rows (basic attributes of the entity)
+     * @param offset the number of rows to skip
+     * @param maxResults the max number of rows to return. 0 means no limit.
+     * @return the matching entities
+     * @throws IllegalArgumentException if the condition or the sort can't be compiled to SQL
+     */
+    @SuppressWarnings("unchecked")
+    protected List<T> findAll(String condition, Sort sort, long offset, int maxResults) {
+        var sql = new StringBuilder("select ").append(SqlConditionCompiler.ROOT_ALIAS).append(".* ");
+        var parameters = new ArrayList<SqlParameter>();
+        appendFromWhere(sql, parameters, condition);
+        if (sort.isSorted()) {
+            var orders = new ArrayList<String>();
+            for (Sort.Order order : sort) {
+                orders.add(sqlConditionCompiler.columnOf(entityClass, order.getProperty()) + (order.isAscending() ? " asc" : " desc"));
+            }
+            sql.append(" order by ").append(String.join(", ", orders));
+        }
+        NativeQuery<T> query = entityManager.createNativeQuery(sql.toString(), entityClass).unwrap(NativeQuery.class);
+        bind(query, parameters);
+        if (offset > 0) {
+            query.setFirstResult((int) offset);
+        }
+        if (maxResults > 0) {
+            query.setMaxResults(maxResults);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Counts the entities matching the condition with a native SQL query.
+     * @param condition JSON where condition (optional)
+     * @return the number of matching entities
+     * @throws IllegalArgumentException if the condition can't be compiled to SQL
+     */
+    protected long countAll(String condition) {
+        var sql = new StringBuilder("select count(*) ");
+        var parameters = new ArrayList<SqlParameter>();
+        appendFromWhere(sql, parameters, condition);
+        NativeQuery<?> query = entityManager.createNativeQuery(sql.toString()).unwrap(NativeQuery.class);
+        bind(query, parameters);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /*
+     * from <table> r0 <joins> where <condition> and r0.<deleted column> = ?
+     */
+    private void appendFromWhere(StringBuilder sql, List<SqlParameter> parameters, String condition) {
+        sql.append("from ").append(sqlConditionCompiler.tableOf(entityClass)).append(' ').append(SqlConditionCompiler.ROOT_ALIAS);
+        var conditions = new ArrayList<String>();
+        if (condition != null && !condition.isBlank() && !StringExtensions.IsBlankJson(condition)) {
+            SqlCondition sqlCondition = sqlConditionCompiler.compile(entityClass, condition);
+            sql.append(sqlCondition.joins());
+            conditions.add(sqlCondition.where());
+            parameters.addAll(sqlCondition.parameters());
+        }
+        if (isSoftDelete && softDeleteFilter == SoftDeleteFilter.SPECIFICATION) {
+            conditions.add(sqlConditionCompiler.columnOf(entityClass, deletedAttribute) + " = ?");
+            parameters.add(new SqlParameter(false, null));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void bind(NativeQuery<?> query, List<SqlParameter> parameters) {
+        for (int i = 0; i < parameters.size(); i++) {
+            SqlParameter parameter = parameters.get(i);
+            if (parameter.type() != null) {
+                query.setParameter(i + 1, parameter.value(), (BindableType) parameter.type());
+            } else {
+                query.setParameter(i + 1, parameter.value());
+            }
+        }
+    }
+}
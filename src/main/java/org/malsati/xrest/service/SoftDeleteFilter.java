@@ -0,0 +1,53 @@
+package org.malsati.xrest.service;
+
+import jakarta.persistence.Column;
+import org.hibernate.annotations.SQLRestriction;
+import org.malsati.xrest.entities.audit.interfaces.DeletionInfo;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * How {@link CrudServiceORM} excludes soft deleted entities (entities implementing {@link DeletionInfo}) from reads.
+ */
+public enum SoftDeleteFilter {
+    /**
+     * The service adds a precompiled "deleted = false" predicate to every read and to deleteMany.
+     * The predicate is rendered with an inline constant (no bind parameter), so it can be matched against a partial index, for example:
+     * <pre>{@code
+     * create index author_not_deleted_idx on author (id) where is_deleted = false;
+     * }</pre>
+     */
+    SPECIFICATION,
+
+    /**
+     * The entity is annotated with Hibernate's {@code @SQLRestriction("is_deleted = false")},
+     * so Hibernate appends the restriction to every SQL query on the entity and the service adds nothing.<br>
+     * Only a restriction referencing the soft delete column selects this mode: any other restriction (a tenant one for instance)
+     * doesn't exclude the soft deleted entities, so the service keeps adding its predicate.<br>
+     * note: in this mode, findById doesn't find soft deleted entities, so deleting an already deleted entity reports NotFound.
+     */
+    ENTITY_RESTRICTION;
+
+    /**
+     * Reflection based: call it once per service.
+     * @param entityClass a soft deleted entity
+     * @param deletedAttribute the attribute holding the deleted flag
+     * @return {@link #ENTITY_RESTRICTION} if the {@code @SQLRestriction} of the entity references the column of the deleted flag,
+     * {@link #SPECIFICATION} otherwise.
+     */
+    public static SoftDeleteFilter of(Class<?> entityClass, String deletedAttribute) {
+        var restriction = AnnotatedElementUtils.findMergedAnnotation(entityClass, SQLRestriction.class);
+        if (restriction == null) {
+            return SPECIFICATION;
+        }
+        String deletedColumn = deletedAttribute;
+        var deletedField = ReflectionUtils.findField(entityClass, deletedAttribute);
+        if (deletedField != null && deletedField.isAnnotationPresent(Column.class) && !deletedField.getAnnotation(Column.class).name().isEmpty()) {
+            deletedColumn = deletedField.getAnnotation(Column.class).name();
+        }
+        var deletedColumnPattern = Pattern.compile("\\b" + Pattern.quote(deletedColumn) + "\\b", Pattern.CASE_INSENSITIVE);
+        return deletedColumnPattern.matcher(restriction.value()).find() ? ENTITY_RESTRICTION : SPECIFICATION;
+    }
+}
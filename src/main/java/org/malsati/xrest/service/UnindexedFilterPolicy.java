@@ -0,0 +1,30 @@
+package org.malsati.xrest.service;
+
+import org.malsati.xrest.infrastructure.indexes.IndexCatalog;
+import org.malsati.xrest.infrastructure.indexes.UnindexedFilterReport;
+
+/**
+ * What {@link CrudServiceORM} does with a condition comparing, or a page sorted by, an attribute that doesn't lead an index
+ * (see {@link IndexCatalog}). A like pattern starting with a wildcard can't use an index either.
+ */
+public enum UnindexedFilterPolicy {
+    /**
+     * No check (the default).
+     */
+    ALLOW,
+
+    /**
+     * The shape of the filter is counted in the {@link UnindexedFilterReport}, and the query is executed.
+     */
+    METER,
+
+    /**
+     * Like METER, and a warning is logged.
+     */
+    WARN,
+
+    /**
+     * The shape is counted in the {@link UnindexedFilterReport}, and the request is rejected with the error code 5009.
+     */
+    REJECT
+}
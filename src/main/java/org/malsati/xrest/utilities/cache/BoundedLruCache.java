@@ -0,0 +1,113 @@
+package org.malsati.xrest.utilities.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A thread safe LRU cache bounded by the number of entries as well as by a total weight.<br>
+ * The weight of every entry is calculated once at insertion time by the weigher passed to the constructor.
+ * When either bound is exceeded, the least recently used entries are evicted until both bounds are satisfied.<br>
+ * Optionally, the entries expire a fixed time after their insertion: an expired entry is a miss, and is counted as an eviction.<br>
+ * Hits, misses and evictions are counted, see {@link #getStatistics()}.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BoundedLruCache<K, V> {
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongBiFunction<K, V> weigher;
+    private final long timeToLiveNanos;
+
+    private final LinkedHashMap<K, WeightedValue<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxEntries the maximum number of entries. zero or less disables caching.
+     * @param maxWeight the maximum sum of all entries weights.
+     * @param weigher calculates the weight of one entry.
+     */
+    public BoundedLruCache(int maxEntries, long maxWeight, ToLongBiFunction<K, V> weigher) {
+        this(maxEntries, maxWeight, null, weigher);
+    }
+
+    /**
+     * @param maxEntries the maximum number of entries. zero or less disables caching.
+     * @param maxWeight the maximum sum of all entries weights.
+     * @param timeToLive how long an entry stays valid after its insertion. null never expires.
+     * @param weigher calculates the weight of one entry.
+     */
+    public BoundedLruCache(int maxEntries, long maxWeight, Duration timeToLive, ToLongBiFunction<K, V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.timeToLiveNanos = timeToLive == null ? 0 : timeToLive.toNanos();
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        var entry = entries.get(key);
+        if (entry != null && timeToLiveNanos > 0 && System.nanoTime() - entry.insertedAt() > timeToLiveNanos) {
+            remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        long weight = weigher.applyAsLong(key, value);
+        if (weight > maxWeight) {
+            return;
+        }
+        var previous = entries.put(key, new WeightedValue<>(value, weight, System.nanoTime()));
+        if (previous != null) {
+            totalWeight -= previous.weight();
+        }
+        totalWeight += weight;
+        evictIfNeeded();
+    }
+
+    public synchronized void remove(K key) {
+        var previous = entries.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, evictions, entries.size(), totalWeight);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, WeightedValue<V>>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && iterator.hasNext()) {
+            var eldest = iterator.next();
+            totalWeight -= eldest.getValue().weight();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private record WeightedValue<V>(V value, long weight, long insertedAt) {
+    }
+}
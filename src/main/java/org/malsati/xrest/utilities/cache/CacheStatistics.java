@@ -0,0 +1,16 @@
+package org.malsati.xrest.utilities.cache;
+
+/**
+ * A snapshot of the counters of a {@link BoundedLruCache}.
+ * @param hits number of lookups that found an entry
+ * @param misses number of lookups that didn't find an entry
+ * @param evictions number of entries removed to respect the cache bounds
+ * @param size current number of entries
+ * @param weight current sum of the entries weights
+ */
+public record CacheStatistics(long hits, long misses, long evictions, int size, long weight) {
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,12 @@
+package org.malsati.xrest.utilities.cache;
+
+/**
+ * An output DTO cached by getOneById, with the version of the entity it was read from,
+ * so a read served by the cache has its validators without a version query (see {@link org.malsati.xrest.dto.ResourceVersion}).
+ *
+ * @param dto the output DTO
+ * @param version the value of the {@code @Version} attribute, null if the entity has none
+ * @param <V> the output DTO
+ */
+public record CachedDto<V>(V dto, Object version) {
+}
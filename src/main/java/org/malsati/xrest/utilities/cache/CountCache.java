@@ -0,0 +1,87 @@
+package org.malsati.xrest.utilities.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The results of count by normalized condition.<br>
+ * In exact mode ({@link #exact(int)}), every write of the service drops all the entries ({@link #invalidate()}), and an entry never expires.
+ * In approximate mode ({@link #approximate(int, Duration)}), the writes don't drop anything:
+ * an entry is served until it's older than the staleness window.<br>
+ * A count read before an invalidation isn't cached after it: {@link #put(String, long, long)} takes the generation read
+ * before counting, and ignores the count if the cache was invalidated since.
+ */
+public final class CountCache {
+    private final BoundedLruCache<String, Long> cache;
+    private final boolean isEnabled;
+    private final boolean isApproximate;
+    private final AtomicLong generation = new AtomicLong();
+
+    private CountCache(int maxEntries, Duration maxStaleness) {
+        this.cache = new BoundedLruCache<>(maxEntries, maxEntries, maxStaleness, (condition, count) -> 1);
+        this.isEnabled = maxEntries > 0;
+        this.isApproximate = maxStaleness != null;
+    }
+
+    /**
+     * @return a cache that never holds anything.
+     */
+    public static CountCache none() {
+        return new CountCache(0, null);
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached counts
+     */
+    public static CountCache exact(int maxEntries) {
+        return new CountCache(maxEntries, null);
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached counts
+     * @param maxStaleness how long a count is served after it's cached, whatever is written meanwhile
+     */
+    public static CountCache approximate(int maxEntries, Duration maxStaleness) {
+        return new CountCache(maxEntries, maxStaleness);
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * @return the number of invalidations so far. read it before counting, and pass it to {@link #put(String, long, long)}.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @param normalizedCondition the normalized condition, or an empty string for no condition
+     * @return the cached count, or null
+     */
+    public Long get(String normalizedCondition) {
+        return cache.get(normalizedCondition);
+    }
+
+    public synchronized void put(String normalizedCondition, long count, long generationBeforeCount) {
+        if (generation.get() == generationBeforeCount) {
+            cache.put(normalizedCondition, count);
+        }
+    }
+
+    /**
+     * Drops all the entries, in exact mode only.
+     */
+    public synchronized void invalidate() {
+        if (isApproximate) {
+            return;
+        }
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+}
@@ -0,0 +1,78 @@
+package org.malsati.xrest.utilities.cache;
+
+import java.time.Duration;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A cache of output DTOs by entity id, read through by getOneById and evicted by the writes of the service.<br>
+ * {@link #bounded(int, long, Duration)} keeps the entries in a {@link BoundedLruCache}.
+ * Implement this interface to plug another cache (a distributed one for instance).<br>
+ * A DTO loaded before an eviction isn't cached after it: the read may have loaded the version the evicting write replaced.
+ * {@link #put(Object, Object, long)} takes the generation read before loading, and ignores the DTO if anything was evicted since.<br>
+ * The implementations must be thread safe.
+ *
+ * @param <K> the type of the entity key
+ * @param <V> the cached value, a {@link CachedDto} for getOneById
+ */
+public interface DtoCache<K, V> {
+    /**
+     * @return the cached DTO, or null
+     */
+    V get(K id);
+
+    /**
+     * @return the number of evictions and clears so far. read it before loading the DTO, and pass it to {@link #put(Object, Object, long)}.
+     */
+    long getGeneration();
+
+    /**
+     * Caches the DTO, unless an entry was evicted or the cache cleared since generationBeforeLoad was read.
+     */
+    void put(K id, V dto, long generationBeforeLoad);
+
+    /**
+     * Drops the DTO of this id, and increments the generation.
+     */
+    void evict(K id);
+
+    /**
+     * Drops all the DTOs, and increments the generation.
+     */
+    void clear();
+
+    CacheStatistics getStatistics();
+
+    /**
+     * @return false if the cache never holds anything, so the service can skip it.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * @return a cache that never holds anything.
+     */
+    static <K, V> DtoCache<K, V> none() {
+        return new LruDtoCache<>(new BoundedLruCache<>(0, 0, (id, dto) -> 1), false);
+    }
+
+    /**
+     * Every entry weighs 1: maxWeight caps the number of entries as well.
+     * @param maxEntries the maximum number of cached DTOs
+     * @param maxWeight the maximum sum of the entries weights
+     * @param timeToLive how long a DTO stays valid after it's cached. null never expires.
+     */
+    static <K, V> DtoCache<K, V> bounded(int maxEntries, long maxWeight, Duration timeToLive) {
+        return bounded(maxEntries, maxWeight, timeToLive, (id, dto) -> 1);
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached DTOs
+     * @param maxWeight the maximum sum of the entries weights
+     * @param timeToLive how long a DTO stays valid after it's cached. null never expires.
+     * @param weigher calculates the weight of one DTO, e.g. an estimate of its size in bytes.
+     */
+    static <K, V> DtoCache<K, V> bounded(int maxEntries, long maxWeight, Duration timeToLive, ToLongBiFunction<K, V> weigher) {
+        return new LruDtoCache<>(new BoundedLruCache<>(maxEntries, maxWeight, timeToLive, weigher), maxEntries > 0);
+    }
+}
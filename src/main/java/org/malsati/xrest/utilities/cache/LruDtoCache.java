@@ -0,0 +1,57 @@
+package org.malsati.xrest.utilities.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DtoCache} over a {@link BoundedLruCache}.
+ * The generation counts the evictions of all the ids: a write lowers the hit ratio of the concurrent reads of other ids, never their freshness.
+ */
+class LruDtoCache<K, V> implements DtoCache<K, V> {
+    private final BoundedLruCache<K, V> cache;
+    private final boolean isEnabled;
+    private final AtomicLong generation = new AtomicLong();
+
+    LruDtoCache(BoundedLruCache<K, V> cache, boolean isEnabled) {
+        this.cache = cache;
+        this.isEnabled = isEnabled;
+    }
+
+    @Override
+    public V get(K id) {
+        return cache.get(id);
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public synchronized void put(K id, V dto, long generationBeforeLoad) {
+        if (generation.get() == generationBeforeLoad) {
+            cache.put(id, dto);
+        }
+    }
+
+    @Override
+    public synchronized void evict(K id) {
+        generation.incrementAndGet();
+        cache.remove(id);
+    }
+
+    @Override
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+}
@@ -0,0 +1,158 @@
+package org.malsati.xrest.utilities.conversion;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts textual values into the java type of an entity attribute.
+ * The textual form is the one produced by {@link String#valueOf(Object)} (ISO-8601 for dates and times).
+ */
+public class ValueConverter {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object fromString(String text, Class<?> type) {
+        if (text == null) {
+            return null;
+        }
+        Class<?> targetType = wrap(type);
+        if (targetType == String.class) {
+            return text;
+        }
+        if (targetType == Long.class) {
+            return Long.valueOf(text);
+        }
+        if (targetType == Integer.class) {
+            return Integer.valueOf(text);
+        }
+        if (targetType == Short.class) {
+            return Short.valueOf(text);
+        }
+        if (targetType == Byte.class) {
+            return Byte.valueOf(text);
+        }
+        if (targetType == Double.class) {
+            return Double.valueOf(text);
+        }
+        if (targetType == Float.class) {
+            return Float.valueOf(text);
+        }
+        if (targetType == BigDecimal.class) {
+            return new BigDecimal(text);
+        }
+        if (targetType == BigInteger.class) {
+            return new BigInteger(text);
+        }
+        if (targetType == Boolean.class) {
+            return Boolean.valueOf(text);
+        }
+        if (targetType == Character.class && text.length() == 1) {
+            return text.charAt(0);
+        }
+        if (targetType == LocalDate.class) {
+            return LocalDate.parse(text);
+        }
+        if (targetType == LocalDateTime.class) {
+            // a date alone means the start of that day
+            return text.length() == 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text);
+        }
+        if (targetType == LocalTime.class) {
+            return LocalTime.parse(text);
+        }
+        if (targetType == Instant.class) {
+            return Instant.parse(text);
+        }
+        if (targetType == OffsetDateTime.class) {
+            return OffsetDateTime.parse(text);
+        }
+        if (targetType == ZonedDateTime.class) {
+            return ZonedDateTime.parse(text);
+        }
+        if (targetType == UUID.class) {
+            return UUID.fromString(text);
+        }
+        if (targetType.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) targetType, text);
+        }
+        throw new IllegalArgumentException("unsupported type: %s".formatted(type.getName()));
+    }
+
+    /**
+     * Converts a JSON scalar into the java type of an entity attribute.
+     * Numbers are converted exactly (a JSON 1.5 compared to a Long attribute is rejected rather than truncated).
+     * @throws IllegalArgumentException if the value can't be converted
+     */
+    public static Object fromJson(JsonNode node, Class<?> type) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        Class<?> targetType = wrap(type);
+        if (node.isBoolean() && targetType == Boolean.class) {
+            return node.booleanValue();
+        }
+        if (node.isBigDecimal() && targetType == BigDecimal.class) {
+            return node.decimalValue();
+        }
+        if (node.isContainerNode()) {
+            throw new IllegalArgumentException("a scalar value is expected");
+        }
+        return fromString(node.asText(), targetType);
+    }
+
+    /**
+     * @return true if {@link #fromString(String, Class)} can convert a text into type.
+     */
+    public static boolean isSupported(Class<?> type) {
+        Class<?> targetType = wrap(type);
+        return supportedTypes.contains(targetType) || targetType.isEnum();
+    }
+
+    private static final Set<Class<?>> supportedTypes = Set.of(
+            String.class, Long.class, Integer.class, Short.class, Byte.class, Double.class, Float.class,
+            BigDecimal.class, BigInteger.class, Boolean.class, Character.class,
+            LocalDate.class, LocalDateTime.class, LocalTime.class, Instant.class, OffsetDateTime.class, ZonedDateTime.class,
+            UUID.class
+    );
+
+    /**
+     * @return the wrapper class of a primitive type, or the type itself if it isn't primitive.
+     */
+    public static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == long.class) {
+            return Long.class;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        }
+        if (type == short.class) {
+            return Short.class;
+        }
+        if (type == byte.class) {
+            return Byte.class;
+        }
+        if (type == double.class) {
+            return Double.class;
+        }
+        if (type == float.class) {
+            return Float.class;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+        if (type == char.class) {
+            return Character.class;
+        }
+        return Void.class;
+    }
+}
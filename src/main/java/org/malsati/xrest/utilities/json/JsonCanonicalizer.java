@@ -0,0 +1,59 @@
+package org.malsati.xrest.utilities.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Produces a compact textual form of a JSON tree that doesn't depend on whitespace nor on the order of object keys.<br>
+ * Two JSON documents that are semantically the same will produce the same canonical text.
+ *
+ * example: these two conditions have the same canonical form
+ * <pre>{@code
+ * { "op": "=", "lhs": "id", "rhs": 1 }
+ * {"rhs":1,"lhs":"id","op":"="}
+ * }</pre>
+ */
+public class JsonCanonicalizer {
+    public static String canonicalize(JsonNode node) {
+        var builder = new StringBuilder();
+        append(node, builder);
+        return builder.toString();
+    }
+
+    private static void append(JsonNode node, StringBuilder builder) {
+        if (node.isObject()) {
+            var keys = new ArrayList<String>();
+            node.fieldNames().forEachRemaining(keys::add);
+            Collections.sort(keys);
+            builder.append('{');
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append('"').append(escape(keys.get(i))).append("\":");
+                append(node.get(keys.get(i)), builder);
+            }
+            builder.append('}');
+            return;
+        }
+        if (node.isArray()) {
+            builder.append('[');
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                append(node.get(i), builder);
+            }
+            builder.append(']');
+            return;
+        }
+        // scalars are already serialized in a canonical way by Jackson (quoted and escaped text, plain numbers)
+        builder.append(node.toString());
+    }
+
+    private static String escape(String key) {
+        return key.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
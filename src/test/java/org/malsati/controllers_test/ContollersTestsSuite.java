@@ -9,7 +9,21 @@ import org.junit.platform.suite.api.Suite;
                 T01AuthorControllerTest.class,
                 T02BookControllerTest.class,
                 T03AuthorAndBookControllersTest.class,
-                T04JSONConditionTest.class
+                T04JSONConditionTest.class,
+                T05ConditionParametersTest.class,
+                T06SqlConditionBackendTest.class,
+                T07InMemoryConditionTest.class,
+                T08ProjectionTest.class,
+                T09FetchPlanTest.class,
+                T10GetManyByIdsTest.class,
+                T11DtoCacheTest.class,
+                T12ExportTest.class,
+                T13CountCacheTest.class,
+                T14ReadReplicaRoutingTest.class,
+                T15AggregateTest.class,
+                T16CountManyTest.class,
+                T17SparseFieldsetTest.class,
+                T18ConditionalRequestTest.class
         }
 )
 public class ContollersTestsSuite {
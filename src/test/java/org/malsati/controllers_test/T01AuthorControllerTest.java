@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 
  import org.malsati.simple_web_app.dto.author.*;
+import org.malsati.simple_web_app.entities.Author;
 import org.malsati.simple_web_app.infrastructure.BookRepository;
 import org.malsati.simple_web_app.utils.json.JsonPrinter;
 import org.malsati.utilities.LogHelper;
@@ -13,6 +14,8 @@ import org.malsati.xrest.dto.ServiceResponse;
 import org.malsati.xrest.dto.errors.AppError;
 import org.malsati.xrest.dto.errors.ErrorCode;
 import org.malsati.xrest.dto.pagination.PaginatedResponse;
+import org.malsati.xrest.entities.audit.base_classes.FullAuditEntity;
+import org.malsati.xrest.service.SoftDeleteFilter;
 
 import org.malsati.xrest.utilities.tuples.Pair;
 import org.junit.jupiter.api.MethodOrderer;
@@ -22,6 +25,7 @@ import org.junit.jupiter.api.TestMethodOrder;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.hibernate.annotations.SQLRestriction;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -452,4 +456,27 @@ public class T01AuthorControllerTest {
 
         getManyTest(countAfterDeletion);
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(17)
+    void softDeleteFilterWithDeletedRestrictionTest() {
+        // Hibernate excludes the soft deleted rows, the service adds nothing
+        assert (SoftDeleteFilter.of(NotDeletedRestrictedAuthor.class, "deleted") == SoftDeleteFilter.ENTITY_RESTRICTION);
+        assert (SoftDeleteFilter.of(Author.class, "deleted") == SoftDeleteFilter.SPECIFICATION);
+    }
+
+    @Test
+    @Order(18)
+    void softDeleteFilterWithUnrelatedRestrictionTest() {
+        // a tenant restriction doesn't exclude the soft deleted rows: the service keeps its own predicate
+        assert (SoftDeleteFilter.of(TenantRestrictedAuthor.class, "deleted") == SoftDeleteFilter.SPECIFICATION);
+    }
+
+    @SQLRestriction("is_deleted = false")
+    private static class NotDeletedRestrictedAuthor extends FullAuditEntity {
+    }
+
+    @SQLRestriction("tenant_id = 1")
+    private static class TenantRestrictedAuthor extends FullAuditEntity {
+    }
+}
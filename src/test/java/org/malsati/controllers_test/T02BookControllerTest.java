@@ -15,6 +15,8 @@ import org.malsati.utilities.LogHelper;
 import org.malsati.utilities.json.JsonRestHitter;
 import org.malsati.xrest.controller.CrudEndpoints;
 import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.dto.pagination.KeysetCursor;
 import org.malsati.xrest.dto.pagination.PaginatedResponse;
 import org.malsati.xrest.utilities.tuples.Pair;
 
@@ -416,4 +418,89 @@ public class T02BookControllerTest {
         Assertions.assertThat(res.second().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
         Assertions.assertThat(hitResult.data().data().size()).isEqualTo(1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(14)
+    public void getManyKeysetPaginationTest() throws Exception {
+        var countUrl = String.format("%s%s", bookControllerBaseUrl, CrudEndpoints.COUNT);
+        TypeReference<ServiceResponse<Long>> countTypeRef = new TypeReference<>() {
+        };
+        Long expectedCount = jsonRestHitter.getRequest(countUrl, null, countTypeRef).first().data();
+
+        TypeReference<ServiceResponse<PaginatedResponse<GetOneBookOutputDto>>> typeRef = new TypeReference<>() {
+        };
+        var visitedIds = new ArrayList<Long>();
+        String cursor = null;
+        int previousNoPages = Integer.MIN_VALUE;
+        do {
+            var url = String.format("%s%s?paginationMode=keyset&pageSize=4&sortBy=noPages", bookControllerBaseUrl, CrudEndpoints.GET_MANY);
+            if (cursor != null) {
+                url = url + "&cursor=" + cursor;
+            }
+            var res = jsonRestHitter.getRequest(url, null, typeRef);
+            Assertions.assertThat(res.second().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+
+            var page = res.first().data();
+            Assertions.assertThat(page.totalItems()).isNull();
+            for (var book : page.data()) {
+                Assertions.assertThat(book.getNoPages()).isGreaterThanOrEqualTo(previousNoPages);
+                previousNoPages = book.getNoPages();
+                visitedIds.add(book.getId());
+            }
+            cursor = page.nextCursor();
+            Assertions.assertThat(cursor != null).isEqualTo(page.hasNext());
+        } while (cursor != null);
+
+        Assertions.assertThat(visitedIds).doesNotHaveDuplicates();
+        Assertions.assertThat((long) visitedIds.size()).isEqualTo(expectedCount);
+    }
+
+    @Test
+    @Order(15)
+    public void getManyKeysetInvalidCursorTest() throws Exception {
+        TypeReference<ServiceResponse<PaginatedResponse<GetOneBookOutputDto>>> typeRef = new TypeReference<>() {
+        };
+        // well formed cursors whose values don't fit the type of the columns
+        var cursors = List.of(
+                new KeysetCursor("noPages", "ASC", "many", "1"),
+                new KeysetCursor("noPages", "ASC", "100", "x"),
+                new KeysetCursor("publishDate", "ASC", "not a date", "1")
+        );
+        for (var cursor : cursors) {
+            var url = String.format("%s%s?paginationMode=keyset&pageSize=4&sortBy=%s&cursor=%s",
+                    bookControllerBaseUrl, CrudEndpoints.GET_MANY, cursor.sortBy(), cursor.encode());
+            var res = jsonRestHitter.getRequest(url, null, typeRef);
+
+            Assertions.assertThat(res.second().getResponse().getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+            Assertions.assertThat(res.first().errors()[0].errorCode()).isEqualTo(ErrorCode.InvalidInput);
+            Assertions.assertThat(res.first().errors()[0].message()).isEqualTo("invalid cursor.");
+        }
+    }
+
+    @Test
+    @Order(16)
+    public void getManyWithoutTotalTest() throws Exception {
+        TypeReference<ServiceResponse<PaginatedResponse<GetOneBookOutputDto>>> typeRef = new TypeReference<>() {
+        };
+        var pagedUrl = String.format("%s%s?pageNo=1&pageSize=5", bookControllerBaseUrl, CrudEndpoints.GET_MANY);
+        var paged = jsonRestHitter.getRequest(pagedUrl, null, typeRef).first().data();
+
+        var sliceUrl = String.format("%s%s?pageNo=1&pageSize=5&withTotal=false", bookControllerBaseUrl, CrudEndpoints.GET_MANY);
+        var res = jsonRestHitter.getRequest(sliceUrl, null, typeRef);
+        Assertions.assertThat(res.second().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+        var slice = res.first().data();
+
+        Assertions.assertThat(slice.totalItems()).isNull();
+        Assertions.assertThat(slice.totalPages()).isNull();
+        Assertions.assertThat(slice.currentPage()).isEqualTo(1);
+        Assertions.assertThat(slice.hasNext()).isEqualTo(paged.hasNext());
+        Assertions.assertThat(slice.data().stream().map(GetOneBookOutputDto::getId).toList())
+                .isEqualTo(paged.data().stream().map(GetOneBookOutputDto::getId).toList());
+
+        var lastPageNo = paged.totalPages();
+        var lastSliceUrl = String.format("%s%s?pageNo=%d&pageSize=5&withTotal=false", bookControllerBaseUrl, CrudEndpoints.GET_MANY, lastPageNo);
+        var lastSlice = jsonRestHitter.getRequest(lastSliceUrl, null, typeRef).first().data();
+        Assertions.assertThat(lastSlice.hasNext()).isFalse();
+        Assertions.assertThat(lastSlice.data()).isNotEmpty();
+    }
+}
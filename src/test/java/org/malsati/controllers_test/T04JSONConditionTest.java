@@ -3,12 +3,31 @@ package org.malsati.controllers_test;
 import org.junit.jupiter.api.*;
 import org.malsati.simple_web_app.dto.book.CreateOneBookInputDto;
 import org.malsati.simple_web_app.dto.book.CreateOneBookOutputDto;
+import org.malsati.simple_web_app.entities.Author;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.AuthorRepository;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
 import org.malsati.simple_web_app.service.BookService;
+import org.malsati.simple_web_app.service.BookSqlService;
+import org.malsati.simple_web_app.service.IndexCheckedBookService;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.dto.FieldSet;
 import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.infrastructure.indexes.IndexCatalog;
+import org.malsati.xrest.infrastructure.indexes.UnindexedFilterReport;
+import org.malsati.xrest.infrastructure.jpql.SpecificationBuilder;
 import org.malsati.xrest.utilities.tuples.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,15 +35,42 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class T04JSONConditionTest {
 
-    public T04JSONConditionTest(@Autowired BookService bookService) {
+    public T04JSONConditionTest(@Autowired BookService bookService,
+                                @Autowired BookSqlService bookSqlService,
+                                @Autowired AuthorRepository authorRepository,
+                                @Autowired BookRepository bookRepository,
+                                @Autowired SpecificationBuilder<Book> specificationBuilder,
+                                @Autowired SqlStatementRecorder sqlStatementRecorder,
+                                @Autowired IndexCheckedBookService indexCheckedBookService,
+                                @Autowired IndexCatalog indexCatalog,
+                                @Autowired UnindexedFilterReport unindexedFilterReport) {
         this.bookService = bookService;
+        this.bookSqlService = bookSqlService;
+        this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+        this.specificationBuilder = specificationBuilder;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.indexCheckedBookService = indexCheckedBookService;
+        this.indexCatalog = indexCatalog;
+        this.unindexedFilterReport = unindexedFilterReport;
     }
 
     private final BookService bookService;
+    // every condition is also counted by the SQL backend, which must agree
+    private final BookSqlService bookSqlService;
+    private final AuthorRepository authorRepository;
+    private final BookRepository bookRepository;
+    private final SpecificationBuilder<Book> specificationBuilder;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    // logs and reports the filters and sorts that can't use an index
+    private final IndexCheckedBookService indexCheckedBookService;
+    private final IndexCatalog indexCatalog;
+    private final UnindexedFilterReport unindexedFilterReport;
 
     private static final List<Pair<String, Long>> conditions = List.of(
             new Pair<>(
@@ -63,8 +109,7 @@ public class T04JSONConditionTest {
                         1,
                         1,
                         "TreeHouse",
-                        390,
-                        new ArrayList<>(List.of(1L, 2L))
+                        390
                 ),
                 new CreateOneBookInputDto(
                         "The Planet Heroes",
@@ -72,8 +117,7 @@ public class T04JSONConditionTest {
                         2,
                         1,
                         "TreeHouse",
-                        200,
-                        new ArrayList<>(List.of(1L, 2L))
+                        200
                 ),
                 new CreateOneBookInputDto(
                         "The Planet Savors",
@@ -81,8 +125,7 @@ public class T04JSONConditionTest {
                         3,
                         2,
                         "TreeHouse",
-                        600,
-                        new ArrayList<>(List.of(1L, 2L))
+                        600
                 )
         };
 
@@ -92,9 +135,57 @@ public class T04JSONConditionTest {
         assert (result.data().size() == 3);
 
         createdBooks = result.data();
+
+        // Book.authors is the inverse side: the authors own the relation
+        // first author: the 3 books, second author: the first 2 books
+        firstAuthorId = createAuthor("Conditions First Author", createdBooks.stream().map(CreateOneBookOutputDto::getId).toList());
+        secondAuthorId = createAuthor("Conditions Second Author", List.of(createdBooks.get(0).getId(), createdBooks.get(1).getId()));
+
+        // "The Planet Savors" follows "The Planet Heroes"
+        var sequel = bookRepository.findById(createdBooks.get(2).getId()).orElseThrow();
+        sequel.setPreviousVolume(new Book(createdBooks.get(1).getId()));
+        bookRepository.save(sequel);
     }
 
     private List<CreateOneBookOutputDto> createdBooks;
+    private Long firstAuthorId;
+    private Long secondAuthorId;
+
+    private Long createAuthor(String fullName, List<Long> bookIds) {
+        var author = new Author();
+        author.setFullName(fullName);
+        author.setBooks(bookRepository.findAllById(bookIds));
+        return authorRepository.save(author).getId();
+    }
+
+    // the condition restricted to the books created by this test
+    private String onCreatedBooks(String condition) {
+        String ids = createdBooks.stream().map(book -> String.valueOf(book.getId())).collect(Collectors.joining(","));
+        return """
+                {
+                  "op": "&&",
+                  "lhs": { "op": "in", "lhs": "id", "rhs": "%s" },
+                  "rhs": %s
+                }
+                """.formatted(ids, condition);
+    }
+
+    // counts with the Criteria backend, and checks the SQL backend counts the same rows
+    private ServiceResponse<Long> count(String condition) {
+        var serviceResponse = bookService.count(condition);
+        assert (isSameOnSqlBackend(condition, serviceResponse));
+        return serviceResponse;
+    }
+
+    private boolean isSameOnSqlBackend(String condition, ServiceResponse<Long> serviceResponse) {
+        var sqlServiceResponse = bookSqlService.count(condition);
+        if (serviceResponse.isSuccess() != sqlServiceResponse.isSuccess()) {
+            return false;
+        }
+        return serviceResponse.isSuccess()
+                ? serviceResponse.data().equals(sqlServiceResponse.data())
+                : serviceResponse.errors()[0].errorCode().equals(sqlServiceResponse.errors()[0].errorCode());
+    }
 
     @Test
     @Order(1)
@@ -109,7 +200,7 @@ public class T04JSONConditionTest {
         var bakedCondition = condition.replace("{}", ids);
 
         System.out.printf("bakedCondition: %s\n", bakedCondition);
-        var serviceResponse = bookService.count(bakedCondition);
+        var serviceResponse = count(bakedCondition);
         System.out.printf("Service Response: %d\n", serviceResponse.data());
 
         assert (serviceResponse.isSuccess());
@@ -123,7 +214,7 @@ public class T04JSONConditionTest {
         String condition = conditions.get(1).first();
 
         System.out.printf("Condition: %s\n", condition);
-        var serviceResponse = bookService.count(condition);
+        var serviceResponse = count(condition);
         System.out.printf("Service Response: %d\n", serviceResponse.data());
 
         assert (serviceResponse.isSuccess());
@@ -137,10 +228,461 @@ public class T04JSONConditionTest {
         String condition = conditions.get(2).first();
 
         System.out.printf("Condition: %s\n", condition);
-        var serviceResponse = bookService.count(condition);
+        var serviceResponse = count(condition);
         System.out.printf("Service Response: %d\n", serviceResponse.data());
 
         assert (serviceResponse.isSuccess());
         assert (Objects.equals(serviceResponse.data(), conditions.get(2).second()));
     }
+
+    @Test
+    @Order(4)
+    @DisplayName("Compiled conditions cache: whitespace and keys order don't matter")
+    void compiledConditionsCacheTest() {
+        var condition = """
+                {
+                  "op": ">",
+                  "lhs": "noPages",
+                  "rhs": 250
+                }
+                """;
+        var sameConditionReordered = "{\"rhs\":250,   \"op\":\">\",\"lhs\":\"noPages\"}";
+
+        var statisticsBefore = specificationBuilder.getCacheStatistics();
+        var firstSpecification = specificationBuilder.build(condition);
+        var secondSpecification = specificationBuilder.build(sameConditionReordered);
+        var thirdSpecification = specificationBuilder.build(condition);
+        var statisticsAfter = specificationBuilder.getCacheStatistics();
+
+        System.out.printf("Cache statistics: %s\n", statisticsAfter);
+
+        assert (firstSpecification == secondSpecification);
+        assert (firstSpecification == thirdSpecification);
+        assert (statisticsAfter.hits() - statisticsBefore.hits() >= 2);
+        assert (Objects.equals(count(condition).data(), count(sameConditionReordered).data()));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Leaves on a to-many relation are compiled as EXISTS subqueries")
+    void toManyExistsTest() {
+        var singleLeafCondition = """
+                {
+                  "op": "=",
+                  "lhs": "authors.id",
+                  "rhs": %d
+                }
+                """.formatted(firstAuthorId);
+        var twoLeavesCondition = """
+                {
+                  "op": "||",
+                  "lhs": {
+                    "op": "=",
+                    "lhs": "authors.id",
+                    "rhs": %d
+                  },
+                  "rhs": {
+                    "op": "=",
+                    "lhs": "authors.id",
+                    "rhs": %d
+                  }
+                }
+                """.formatted(firstAuthorId, secondAuthorId);
+
+        sqlStatementRecorder.start();
+        var singleLeafCount = bookService.count(singleLeafCondition);
+        var singleLeafStatements = sqlStatementRecorder.stop();
+
+        sqlStatementRecorder.start();
+        var twoLeavesCount = bookService.count(twoLeavesCondition);
+        var twoLeavesStatements = sqlStatementRecorder.stop();
+
+        System.out.printf("single leaf SQL: %s\n", singleLeafStatements);
+        System.out.printf("two leaves SQL: %s\n", twoLeavesStatements);
+
+        assert (singleLeafCount.isSuccess() && twoLeavesCount.isSuccess());
+        assert (singleLeafStatements.size() == 1 && twoLeavesStatements.size() == 1);
+        assert (SqlStatementRecorder.countOccurrences(singleLeafStatements.get(0), "exists") == 1);
+        assert (SqlStatementRecorder.countOccurrences(twoLeavesStatements.get(0), "exists") == 2);
+
+        // the first 2 books have both authors: they are counted once, not once per author
+        assert (isSameOnSqlBackend(singleLeafCondition, singleLeafCount));
+        assert (isSameOnSqlBackend(twoLeavesCondition, twoLeavesCount));
+        assert (singleLeafCount.data() == 3L);
+        assert (twoLeavesCount.data() == 3L);
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Quantifier operators: any, none, all")
+    void quantifierOperatorsTest() {
+        var elementCondition = """
+                {
+                  "op": "=",
+                  "lhs": "id",
+                  "rhs": %d
+                }
+                """.formatted(firstAuthorId);
+        var anyCondition = """
+                { "op": "any", "lhs": "authors", "rhs": %s }
+                """.formatted(elementCondition);
+        var noneCondition = """
+                { "op": "none", "lhs": "authors", "rhs": %s }
+                """.formatted(elementCondition);
+        var allCondition = """
+                { "op": "all", "lhs": "authors", "rhs": %s }
+                """.formatted(elementCondition);
+        var withoutAuthorsCondition = """
+                { "op": "none", "lhs": "authors" }
+                """;
+
+        var anyCount = count(onCreatedBooks(anyCondition)).data();
+        var noneCount = count(onCreatedBooks(noneCondition)).data();
+        var allCount = count(onCreatedBooks(allCondition)).data();
+        var withoutAuthorsCount = count(onCreatedBooks(withoutAuthorsCondition)).data();
+
+        System.out.printf("any: %d, none: %d, all: %d, without authors: %d\n", anyCount, noneCount, allCount, withoutAuthorsCount);
+
+        // the first author wrote the 3 books, alone for the third one only
+        assert (anyCount == 3L);
+        assert (noneCount == 0L);
+        assert (allCount == 1L);
+        assert (withoutAuthorsCount == 0L);
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Leaves on the same to-one relation share one join")
+    void sharedJoinTest() {
+        var singleLeafCondition = """
+                {
+                  "op": "=",
+                  "lhs": "previousVolume.title",
+                  "rhs": "The Planet Heroes"
+                }
+                """;
+        var twoLeavesCondition = """
+                {
+                  "op": "&&",
+                  "lhs": {
+                    "op": "=",
+                    "lhs": "previousVolume.title",
+                    "rhs": "The Planet Heroes"
+                  },
+                  "rhs": {
+                    "op": ">=",
+                    "lhs": "previousVolume.noPages",
+                    "rhs": 200
+                  }
+                }
+                """;
+
+        sqlStatementRecorder.start();
+        var singleLeafCount = bookService.count(singleLeafCondition);
+        var singleLeafStatements = sqlStatementRecorder.stop();
+
+        sqlStatementRecorder.start();
+        var twoLeavesCount = bookService.count(twoLeavesCondition);
+        var twoLeavesStatements = sqlStatementRecorder.stop();
+
+        System.out.printf("single leaf SQL: %s\n", singleLeafStatements);
+        System.out.printf("two leaves SQL: %s\n", twoLeavesStatements);
+
+        assert (singleLeafCount.isSuccess() && twoLeavesCount.isSuccess());
+        assert (singleLeafStatements.size() == 1 && twoLeavesStatements.size() == 1);
+        int singleLeafJoins = SqlStatementRecorder.countOccurrences(singleLeafStatements.get(0), " join ");
+        int twoLeavesJoins = SqlStatementRecorder.countOccurrences(twoLeavesStatements.get(0), " join ");
+        assert (singleLeafJoins == 1);
+        assert (twoLeavesJoins == singleLeafJoins);
+        assert (isSameOnSqlBackend(singleLeafCondition, singleLeafCount));
+        assert (isSameOnSqlBackend(twoLeavesCondition, twoLeavesCount));
+        assert (singleLeafCount.data() == 1L);
+        assert (twoLeavesCount.data() == 1L);
+    }
+
+    @Test
+    @Order(12)
+    @DisplayName("Leaf values are converted to the attribute type from the metamodel")
+    void typedValuesTest() {
+        // no "type": "Date" hint: publishDate is a LocalDate attribute
+        var dateCondition = """
+                {
+                  "op": "=",
+                  "lhs": "publishDate",
+                  "rhs": "2005-12-20"
+                }
+                """;
+        var dateRangeCondition = """
+                {
+                  "op": "between",
+                  "lhs": "publishDate",
+                  "range1": "1982-08-25",
+                  "range2": "1982-08-25"
+                }
+                """;
+        // the id attribute is a Long, the JSON values are ints
+        var idCondition = """
+                {
+                  "op": "=",
+                  "lhs": "id",
+                  "rhs": %d
+                }
+                """.formatted(createdBooks.get(0).getId());
+
+        var dateCount = count(dateCondition);
+        var dateRangeCount = count(dateRangeCondition);
+        var idCount = count(idCondition);
+
+        System.out.printf("date: %d, date range: %d, id: %d\n", dateCount.data(), dateRangeCount.data(), idCount.data());
+
+        assert (Objects.equals(dateCount.data(), 1L));
+        assert (Objects.equals(dateRangeCount.data(), 1L));
+        assert (Objects.equals(idCount.data(), 1L));
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("In Operator test: JSON arrays, duplicates and long lists")
+    void inOperatorArrayCase() {
+        var ids = createdBooks.stream().map(CreateOneBookOutputDto::getId).toList();
+        var idsWithDuplicates = new ArrayList<Long>(ids);
+        idsWithDuplicates.addAll(ids);
+        var arrayCondition = """
+                {
+                  "op": "in",
+                  "lhs": "id",
+                  "rhs": %s
+                }
+                """.formatted(idsWithDuplicates);
+
+        // longer than one IN list: the ids that don't exist don't match anything
+        var longList = new ArrayList<Long>(ids);
+        for (long id = 1_000_000; longList.size() < 2_500; id++) {
+            longList.add(id);
+        }
+        var longListCondition = """
+                {
+                  "op": "in",
+                  "lhs": "id",
+                  "rhs": %s
+                }
+                """.formatted(longList);
+
+        var arrayCount = count(arrayCondition);
+        var longListCount = count(longListCondition);
+
+        System.out.printf("array: %d, long list: %d, chunk size: %d\n", arrayCount.data(), longListCount.data(), specificationBuilder.getInListChunkSize());
+
+        assert (longList.size() > specificationBuilder.getInListChunkSize());
+        assert (Objects.equals(arrayCount.data(), (long) ids.size()));
+        assert (Objects.equals(longListCount.data(), (long) ids.size()));
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("N-ary and/or test: args arrays and long chains of binary nodes")
+    void naryLogicalOperatorsCase() {
+        var ids = createdBooks.stream().map(CreateOneBookOutputDto::getId).toList();
+        var leaves = new ArrayList<String>();
+        for (long id : ids) {
+            leaves.add("{ \"op\": \"=\", \"lhs\": \"id\", \"rhs\": %d }".formatted(id));
+        }
+        // the ids that don't exist don't match anything
+        for (long id = 1_000_000; leaves.size() < 500; id++) {
+            leaves.add("{ \"op\": \"=\", \"lhs\": \"id\", \"rhs\": %d }".formatted(id));
+        }
+        var naryCondition = """
+                {
+                  "op": "or",
+                  "args": [ %s ]
+                }
+                """.formatted(String.join(", ", leaves));
+
+        // the same leaves as a chain of binary nodes: (l1 || (l2 || (l3 || ...)))
+        var chainCondition = new StringBuilder(leaves.get(leaves.size() - 1));
+        for (int i = leaves.size() - 2; i >= 0; i--) {
+            chainCondition.insert(0, "{ \"op\": \"||\", \"lhs\": %s, \"rhs\": ".formatted(leaves.get(i))).append(" }");
+        }
+
+        // a conjunction of the chain with a nested n-ary and
+        var mixedCondition = """
+                {
+                  "op": "&&",
+                  "lhs": %s,
+                  "rhs": {
+                    "op": "and",
+                    "args": [
+                      { "op": ">", "lhs": "publishDate", "rhs": "1970-01-01" },
+                      { "op": "like", "lhs": "title", "rhs": "The Planet %%" }
+                    ]
+                  }
+                }
+                """.formatted(chainCondition);
+
+        var naryCount = count(naryCondition);
+        sqlStatementRecorder.start();
+        var chainCount = bookService.count(chainCondition.toString());
+        var chainStatements = sqlStatementRecorder.stop();
+        var mixedCount = count(mixedCondition);
+
+        System.out.printf("n-ary: %d, chain: %d, mixed: %d\n", naryCount.data(), chainCount.data(), mixedCount.data());
+
+        assert (Objects.equals(naryCount.data(), (long) ids.size()));
+        assert (Objects.equals(chainCount.data(), (long) ids.size()));
+        assert (isSameOnSqlBackend(chainCondition.toString(), chainCount));
+        assert (Objects.equals(mixedCount.data(), 1L));
+        // the chain is flattened into one disjunction instead of 500 nested ones
+        assert (chainStatements.size() == 1);
+        assert (maxParenthesesDepth(chainStatements.get(0)) < 5);
+    }
+
+    @Test
+    @Order(10)
+    @DisplayName("Condition cost test: over budget conditions are rejected or served without a total")
+    void conditionBudgetCase() {
+        // 9 like patterns starting with a wildcard, the default budget accepts 8
+        var likes = new ArrayList<String>();
+        for (int i = 0; i < 9; i++) {
+            likes.add("{ \"op\": \"like\", \"lhs\": \"title\", \"rhs\": \"%%Planet %d%%\" }".formatted(i));
+        }
+        var tooManyLikes = """
+                { "op": "||", "args": [ %s ] }
+                """.formatted(String.join(", ", likes));
+        var affordableLikes = """
+                { "op": "||", "args": [ %s ] }
+                """.formatted(String.join(", ", likes.subList(0, 8)));
+
+        // && and || alternate, so nothing is flattened: 20 levels
+        var tooDeep = new StringBuilder("{ \"op\": \"=\", \"lhs\": \"id\", \"rhs\": 1 }");
+        for (int i = 0; i < 20; i++) {
+            tooDeep = new StringBuilder("{ \"op\": \"%s\", \"lhs\": { \"op\": \">\", \"lhs\": \"id\", \"rhs\": 0 }, \"rhs\": %s }"
+                    .formatted(i % 2 == 0 ? "&&" : "||", tooDeep));
+        }
+
+        var longList = new ArrayList<Long>();
+        for (long id = 1_000_000; longList.size() < 50_000; id++) {
+            longList.add(id);
+        }
+        var tooLong = """
+                { "op": "in", "lhs": "id", "rhs": %s }
+                """.formatted(longList);
+
+        var tooManyLikesCount = bookService.count(tooManyLikes);
+        var tooDeepCount = bookService.count(tooDeep.toString());
+        var tooLongCount = bookService.count(tooLong);
+        var affordablePageWithTotal = bookService.getMany(affordableLikes, PageRequest.of(0, 10), true);
+        var affordablePage = bookService.getMany(affordableLikes, PageRequest.of(0, 10), null);
+        var affordableFieldsWithTotal = bookService.getMany(affordableLikes, PageRequest.of(0, 10), true, FieldSet.parse("id,title"));
+
+        var toManyCost = specificationBuilder.estimateCost("""
+                {
+                  "op": "&&",
+                  "lhs": { "op": "=", "lhs": "authors.books.title", "rhs": "The Planet Heroes" },
+                  "rhs": { "op": "any", "lhs": "authors", "rhs": { "op": "like", "lhs": "fullName", "rhs": "%a" } }
+                }
+                """, Book.class);
+
+        System.out.printf("affordable weight: %d, to-many cost: %s\n", specificationBuilder.estimateCost(affordableLikes, Book.class).weight(), toManyCost);
+
+        assert (!tooManyLikesCount.isSuccess() && tooManyLikesCount.errors()[0].errorCode().equals(ErrorCode.ConditionTooComplex));
+        assert (!tooDeepCount.isSuccess() && tooDeepCount.errors()[0].errorCode().equals(ErrorCode.ConditionTooComplex));
+        assert (!tooLongCount.isSuccess() && tooLongCount.errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+        // accepted, but too expensive to count: an explicit total is rejected, the default one is downgraded to a slice
+        assert (!affordablePageWithTotal.isSuccess() && affordablePageWithTotal.errors()[0].errorCode().equals(ErrorCode.ConditionTooComplex));
+        assert (!affordableFieldsWithTotal.isSuccess() && affordableFieldsWithTotal.errors()[0].errorCode().equals(ErrorCode.ConditionTooComplex));
+        assert (affordablePage.isSuccess());
+        assert (affordablePage.data().totalItems() == null && affordablePage.data().hasNext() != null);
+        assert (toManyCost.toManyCount() == 3 && toManyCost.joinCount() == 0 && toManyCost.unanchoredLikeCount() == 1);
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("Index usage test: the filters and sorts that can't use an index are reported")
+    // the books of the pages are mapped with their lazy authors
+    @Transactional
+    void unindexedFilterCase() {
+        unindexedFilterReport.clear();
+
+        // id is the primary key and title leads book_title_idx
+        indexCheckedBookService.count("""
+                {
+                  "op": "||",
+                  "lhs": { "op": "=", "lhs": "title", "rhs": "The Planet Heroes" },
+                  "rhs": { "op": "in", "lhs": "id", "rhs": [1, 2, 3] }
+                }
+                """);
+        var indexedOccurrences = unindexedFilterReport.getOccurrences();
+
+        indexCheckedBookService.count("""
+                {
+                  "op": "&&",
+                  "lhs": { "op": "=", "lhs": "press", "rhs": "TreeHouse" },
+                  "rhs": { "op": ">", "lhs": "noPages", "rhs": 100 }
+                }
+                """);
+        indexCheckedBookService.count("""
+                { "op": "like", "lhs": "title", "rhs": "%Planet%" }
+                """);
+        indexCheckedBookService.getMany(null, PageRequest.of(0, 10, Sort.by("publishDate")), false);
+        indexCheckedBookService.getMany(null, PageRequest.of(0, 10, Sort.by("publishDate")), false);
+
+        var occurrences = unindexedFilterReport.getOccurrences();
+        System.out.println(occurrences);
+        // the default policy doesn't check the indexes
+        bookService.count("""
+                { "op": "like", "lhs": "title", "rhs": "%Planet%" }
+                """);
+
+        assert (indexedOccurrences.isEmpty());
+        assert (Objects.equals(occurrences.get("Book: noPages >, press ="), 1L));
+        assert (Objects.equals(occurrences.get("Book: title like"), 1L));
+        assert (Objects.equals(occurrences.get("Book: sort publishDate"), 2L));
+        assert (unindexedFilterReport.getOccurrences().equals(occurrences));
+        // full_name is a unique column of Author
+        assert (indexCatalog.isIndexed(Book.class, "authors.id"));
+        assert (indexCatalog.isIndexed(Book.class, "authors.fullName"));
+        assert (!indexCatalog.isIndexed(Book.class, "authors.birthDate"));
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("Condition files: both backends accept and reject the same conditions")
+    void conditionFilesCase() throws IOException {
+        var files = new PathMatchingResourcePatternResolver().getResources("classpath:conditions/*.json");
+        int acceptedCount = 0;
+        for (var file : files) {
+            var condition = file.getContentAsString(StandardCharsets.UTF_8);
+            // some files were written for other entities: the Criteria backend throws on an attribute Book doesn't have
+            Long expected;
+            try {
+                expected = bookService.count(condition).data();
+            } catch (RuntimeException e) {
+                expected = null;
+            }
+            var actual = bookSqlService.count(condition);
+            System.out.printf("%s: Criteria: %s, SQL: %s\n", file.getFilename(), expected, actual.isSuccess() ? actual.data() : actual.errors()[0].message());
+
+            if (expected != null) {
+                acceptedCount++;
+                assert (actual.isSuccess() && actual.data().equals(expected));
+            } else {
+                assert (!actual.isSuccess() && actual.errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+            }
+        }
+        assert (files.length == 7);
+        assert (acceptedCount == 2);
+    }
+
+    private static int maxParenthesesDepth(String sql) {
+        int depth = 0;
+        int maxDepth = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '(') {
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return maxDepth;
+    }
 }
@@ -0,0 +1,115 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.service.BoundParametersBookService;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T05ConditionParametersTest {
+
+    public T05ConditionParametersTest(@Autowired BoundParametersBookService bookService,
+                                      @Autowired SqlStatementRecorder sqlStatementRecorder) {
+        this.bookService = bookService;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+    }
+
+    private final BoundParametersBookService bookService;
+    private final SqlStatementRecorder sqlStatementRecorder;
+
+    private static final List<List<String>> sameShapeConditions = List.of(
+            List.of(
+                    """
+                    { "op": "=", "lhs": "id", "rhs": 1 }
+                    """,
+                    """
+                    { "op": "=", "lhs": "id", "rhs": 2 }
+                    """,
+                    """
+                    { "op": "=", "lhs": "id", "rhs": 3 }
+                    """
+            ),
+            List.of(
+                    """
+                    { "op": "like", "lhs": "title", "rhs": "%Harry%" }
+                    """,
+                    """
+                    { "op": "like", "lhs": "title", "rhs": "%Wood%" }
+                    """
+            ),
+            List.of(
+                    """
+                    { "op": "in", "lhs": "title", "rhs": "Dune, Emma, Ulysses" }
+                    """,
+                    """
+                    { "op": "in", "lhs": "title", "rhs": "Dune, Emma, Ulysses, Beloved" }
+                    """
+            ),
+            List.of(
+                    """
+                    { "op": "between", "lhs": "publishDate", "range1": "1999-06-01", "range2": "2003-12-01", "type": "Date" }
+                    """,
+                    """
+                    { "op": "between", "lhs": "publishDate", "range1": "1950-01-01", "range2": "1960-12-31", "type": "Date" }
+                    """
+            ),
+            List.of(
+                    """
+                    { "op": "&&", "lhs": { "op": ">", "lhs": "noPages", "rhs": 100 }, "rhs": { "op": "=", "lhs": "authors.fullName", "rhs": "Stephen King" } }
+                    """,
+                    """
+                    { "op": "&&", "lhs": { "op": ">", "lhs": "noPages", "rhs": 700 }, "rhs": { "op": "=", "lhs": "authors.fullName", "rhs": "J.K. Rowling" } }
+                    """
+            )
+    );
+
+    @Test
+    @Order(1)
+    @DisplayName("Conditions that only differ in their values produce one SQL text")
+    void sameShapeSameSqlTest() {
+        var allStatements = new LinkedHashSet<String>();
+        for (var conditions : sameShapeConditions) {
+            Set<String> statements = recordStatements(conditions);
+            System.out.printf("conditions: %s\nSQL: %s\n", conditions, statements);
+
+            assert (statements.size() == 1);
+            allStatements.addAll(statements);
+        }
+        // the shapes are different, so are their SQL texts
+        assert (allStatements.size() == sameShapeConditions.size());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Condition values don't appear in the SQL text")
+    void valuesAreNotInlinedTest() {
+        Set<String> statements = recordStatements(sameShapeConditions.get(1));
+        for (var statement : statements) {
+            assert (!statement.contains("Harry"));
+            assert (!statement.contains("Wood"));
+        }
+    }
+
+    private Set<String> recordStatements(List<String> conditions) {
+        var statements = new LinkedHashSet<String>();
+        for (var condition : conditions) {
+            sqlStatementRecorder.start();
+            var serviceResponse = bookService.count(condition);
+            List<String> recorded = new ArrayList<>(sqlStatementRecorder.stop());
+
+            assert (serviceResponse.isSuccess());
+            statements.addAll(recorded);
+        }
+        return statements;
+    }
+}
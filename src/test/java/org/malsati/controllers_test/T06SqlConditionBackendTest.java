@@ -0,0 +1,190 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.book.GetOneBookOutputDto;
+import org.malsati.simple_web_app.service.BookService;
+import org.malsati.simple_web_app.service.BookSqlService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.infrastructure.sql.SqlConditionCompiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+// the books are mapped with their lazy authors
+@Transactional
+public class T06SqlConditionBackendTest {
+
+    public T06SqlConditionBackendTest(@Autowired BookService bookService,
+                                      @Autowired BookSqlService bookSqlService,
+                                      @Autowired SqlConditionCompiler sqlConditionCompiler,
+                                      @Autowired LibraryFixture libraryFixture) {
+        this.bookService = bookService;
+        this.bookSqlService = bookSqlService;
+        this.sqlConditionCompiler = sqlConditionCompiler;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final BookService bookService;
+    private final BookSqlService bookSqlService;
+    private final SqlConditionCompiler sqlConditionCompiler;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T06");
+    }
+
+    // %1$d: the id of J.K. Rowling, %2$s: the name of Stephen King, %3$s and %4$s: ids of books as a text and as an array
+    private static final List<String> conditions = List.of(
+            """
+            { "op": "in", "lhs": "id", "rhs": "%3$s" }
+            """,
+            """
+            { "op": "in", "lhs": "id", "rhs": %4$s }
+            """,
+            """
+            { "op": "in", "lhs": "publishDate", "rhs": "1997-06-26, 1987-06-08", "type": "Date" }
+            """,
+            """
+            { "op": "between", "lhs": "publishDate", "range1": "1980-01-01", "range2": "1999-12-31", "type": "Date" }
+            """,
+            """
+            { "op": "!=", "lhs": "press", "rhs": "Doubleday" }
+            """,
+            """
+            { "op": "like", "lhs": "title", "rhs": "Harry%%" }
+            """,
+            """
+            { "op": "=", "lhs": "authors.id", "rhs": %1$d }
+            """,
+            """
+            { "op": "=", "lhs": "authors.fullName", "rhs": "%2$s" }
+            """,
+            """
+            { "op": "any", "lhs": "authors", "rhs": { "op": "<", "lhs": "birthDate", "rhs": "1948-01-01" } }
+            """,
+            """
+            { "op": "none", "lhs": "authors", "rhs": { "op": "<", "lhs": "birthDate", "rhs": "1948-01-01" } }
+            """,
+            """
+            { "op": "all", "lhs": "authors", "rhs": { "op": ">", "lhs": "id", "rhs": %1$d } }
+            """,
+            """
+            { "op": "none", "lhs": "authors" }
+            """,
+            """
+            {
+              "op": "&&",
+              "lhs": { "op": ">", "lhs": "noPages", "rhs": 250 },
+              "rhs": {
+                "op": "or",
+                "args": [
+                  { "op": "<", "lhs": "publishDate", "rhs": "1990-01-01" },
+                  { "op": "like", "lhs": "press", "rhs": "%%Press%%" },
+                  { "op": "=", "lhs": "authors.books.title", "rhs": "Norwegian Wood" }
+                ]
+              }
+            }
+            """
+    );
+
+    @Test
+    @Order(1)
+    @DisplayName("The SQL backend matches the rows the Criteria backend matches")
+    void sameResultsTest() {
+        var bookIds = library.bookIds();
+        for (var unrestrictedCondition : conditions) {
+            var condition = library.onBooks(unrestrictedCondition.formatted(library.authorId("J.K. Rowling"), library.authorName("Stephen King"),
+                    bookIds.subList(0, 3).stream().map(String::valueOf).collect(Collectors.joining(", ")), bookIds.subList(2, 7)));
+            var expected = bookService.count(condition);
+            var actual = bookSqlService.count(condition);
+            System.out.printf("condition: %s\nCriteria: %s, SQL: %s\n", condition, expected.data(), actual.data());
+
+            assert (expected.isSuccess());
+            assert (actual.isSuccess());
+            assert (expected.data().equals(actual.data()));
+
+            var pageable = PageRequest.of(0, 3, Sort.by("id"));
+            assert (idsOf(bookService.getMany(condition, pageable, true).data().data())
+                    .equals(idsOf(bookSqlService.getMany(condition, pageable, true).data().data())));
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Long in lists and n-ary chains")
+    void longConditionsTest() {
+        var ids = new ArrayList<String>();
+        var leaves = new ArrayList<String>();
+        for (int id = 1; id <= 1500; id++) {
+            ids.add(String.valueOf(id));
+            leaves.add("{ \"op\": \"=\", \"lhs\": \"id\", \"rhs\": %d }".formatted(id % 40));
+        }
+        var inCondition = "{ \"op\": \"in\", \"lhs\": \"id\", \"rhs\": [%s] }".formatted(String.join(", ", ids));
+        var naryCondition = "{ \"op\": \"or\", \"args\": [%s] }".formatted(String.join(", ", leaves.subList(0, 500)));
+        var chainCondition = new StringBuilder(leaves.get(0));
+        for (int i = 1; i < 300; i++) {
+            chainCondition.insert(0, "{ \"op\": \"||\", \"lhs\": %s, \"rhs\": ".formatted(leaves.get(i))).append(" }");
+        }
+        for (var condition : List.of(inCondition, naryCondition, chainCondition.toString())) {
+            var expected = bookService.count(condition);
+            var actual = bookSqlService.count(condition);
+
+            assert (expected.isSuccess());
+            assert (actual.isSuccess());
+            assert (expected.data().equals(actual.data()));
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Conditions of the same shape share one compiled SQL")
+    void sameShapeOneTemplateTest() {
+        sqlConditionCompiler.clearCache();
+        var sameShape = List.of(
+                "{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 100 }",
+                "{ \"rhs\": 300, \"op\": \">\", \"lhs\": \"noPages\" }",
+                "{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 500 }",
+                "{ \"op\": \"in\", \"lhs\": \"id\", \"rhs\": [1, 2, 3] }",
+                "{ \"op\": \"in\", \"lhs\": \"id\", \"rhs\": [5, 6, 7, 8] }"
+        );
+        for (var condition : sameShape) {
+            assert (bookSqlService.count(condition).isSuccess());
+        }
+        var statistics = sqlConditionCompiler.getCacheStatistics();
+        System.out.println(statistics);
+        // the 3 lists of 3 and 4 values are both padded to 4
+        assert (statistics.size() == 2);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("getOne and invalid conditions")
+    void getOneAndInvalidConditionsTest() {
+        var condition = library.onBooks("{ \"op\": \"=\", \"lhs\": \"title\", \"rhs\": \"Misery\" }");
+        var serviceResponse = bookSqlService.getOne(condition);
+        assert (serviceResponse.isSuccess());
+        assert (serviceResponse.data().getTitle().equals("Misery"));
+
+        var unknownAttribute = bookSqlService.count("{ \"op\": \"=\", \"lhs\": \"isbn\", \"rhs\": 1 }");
+        assert (!unknownAttribute.isSuccess());
+        assert (unknownAttribute.errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+    }
+
+    private static List<Long> idsOf(List<GetOneBookOutputDto> books) {
+        return books.stream().map(GetOneBookOutputDto::getId).toList();
+    }
+}
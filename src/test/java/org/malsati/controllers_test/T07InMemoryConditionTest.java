@@ -0,0 +1,204 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.entities.Author;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.AuthorRepository;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.service.AuthorsService;
+import org.malsati.simple_web_app.service.BookService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.xrest.infrastructure.memory.InMemoryConditionCompiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T07InMemoryConditionTest {
+
+    public T07InMemoryConditionTest(@Autowired BookService bookService,
+                                    @Autowired AuthorsService authorService,
+                                    @Autowired BookRepository bookRepository,
+                                    @Autowired AuthorRepository authorRepository,
+                                    @Autowired InMemoryConditionCompiler inMemoryConditionCompiler,
+                                    @Autowired LibraryFixture libraryFixture) {
+        this.bookService = bookService;
+        this.authorService = authorService;
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.inMemoryConditionCompiler = inMemoryConditionCompiler;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final BookService bookService;
+    private final AuthorsService authorService;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final InMemoryConditionCompiler inMemoryConditionCompiler;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T07");
+    }
+
+    // %1$d: the id of J.K. Rowling, %2$s: the name of Stephen King, %3$s: the ids of the first 3 books, %4$d: the id of The Shining
+    private static final List<String> bookConditions = List.of(
+            """
+            { "op": "=", "lhs": "id", "rhs": %4$d }
+            """,
+            """
+            { "op": "in", "lhs": "id", "rhs": "%3$s" }
+            """,
+            """
+            { "op": "!=", "lhs": "press", "rhs": "Doubleday" }
+            """,
+            """
+            { "op": "in", "lhs": "title", "rhs": ["Misery", "The Shining", "Dune"] }
+            """,
+            """
+            { "op": "between", "lhs": "publishDate", "range1": "1980-01-01", "range2": "1999-12-31", "type": "Date" }
+            """,
+            """
+            { "op": "<=", "lhs": "noPages", "rhs": 300 }
+            """,
+            """
+            { "op": "like", "lhs": "title", "rhs": "Harry Potter and the %%" }
+            """,
+            """
+            { "op": "like", "lhs": "title", "rhs": "%%i_e%%" }
+            """,
+            """
+            { "op": "=", "lhs": "authors.fullName", "rhs": "%2$s" }
+            """,
+            """
+            { "op": "any", "lhs": "authors", "rhs": { "op": "<", "lhs": "birthDate", "rhs": "1948-01-01" } }
+            """,
+            """
+            { "op": "all", "lhs": "authors", "rhs": { "op": ">", "lhs": "id", "rhs": %1$d } }
+            """,
+            """
+            {
+              "op": "&&",
+              "lhs": { "op": ">", "lhs": "noPages", "rhs": 250 },
+              "rhs": {
+                "op": "or",
+                "args": [
+                  { "op": "<", "lhs": "publishDate", "rhs": "1990-01-01" },
+                  { "op": "like", "lhs": "press", "rhs": "%%Press%%" },
+                  { "op": "=", "lhs": "authors.books.title", "rhs": "Norwegian Wood" }
+                ]
+              }
+            }
+            """
+    );
+
+    @Test
+    @Order(1)
+    @Transactional
+    @DisplayName("The in-memory predicate matches the books the database matches")
+    void sameBooksTest() {
+        List<Book> books = bookRepository.findAllById(library.bookIds());
+        String firstBookIds = library.bookIds().subList(0, 3).stream().map(String::valueOf).collect(Collectors.joining(", "));
+        for (var bookCondition : bookConditions) {
+            var condition = bookCondition.formatted(library.authorId("J.K. Rowling"), library.authorName("Stephen King"), firstBookIds,
+                    library.bookId("The Shining"));
+            long expected = bookService.count(library.onBooks(condition)).data();
+            long actual = books.stream().filter(inMemoryConditionCompiler.compile(Book.class, condition)).count();
+            System.out.printf("condition: %s\ndatabase: %d, in memory: %d\n", condition, expected, actual);
+
+            assert (expected == actual);
+        }
+    }
+
+    @Test
+    @Order(2)
+    @Transactional
+    @DisplayName("The in-memory predicate matches the authors the database matches")
+    void sameAuthorsTest() {
+        // the service doesn't read the soft deleted authors
+        List<Author> authors = authorRepository.findAllById(library.authorIds()).stream().filter(author -> !author.getDeleted()).toList();
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(String.valueOf(library.authorIds().get(i % 3)));
+        }
+        var conditions = List.of(
+                "{ \"op\": \">\", \"lhs\": \"birthDate\", \"rhs\": \"1948-09-20\" }",
+                "{ \"op\": \"=\", \"lhs\": \"books.press\", \"rhs\": \"Doubleday\" }",
+                "{ \"op\": \"none\", \"lhs\": \"books\" }",
+                "{ \"op\": \"or\", \"args\": [%s] }".formatted(String.join(", ", ids.stream()
+                        .map(id -> "{ \"op\": \"=\", \"lhs\": \"id\", \"rhs\": %s }".formatted(id)).toList()))
+        );
+        for (var condition : conditions) {
+            long expected = authorService.count(library.onAuthors(condition)).data();
+            long actual = authors.stream().filter(inMemoryConditionCompiler.compile(Author.class, condition)).count();
+
+            assert (expected == actual);
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Unknown attributes are rejected at compilation")
+    void unknownAttributeTest() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> inMemoryConditionCompiler.compile(Book.class, "{ \"op\": \"=\", \"lhs\": \"isbn\", \"rhs\": 1 }"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> inMemoryConditionCompiler.compile(Book.class, "{ \"op\": \"=\", \"lhs\": \"authors\", \"rhs\": 1 }"));
+    }
+
+    @Test
+    @Order(4)
+    @Transactional
+    @DisplayName("all: an author without a birth date doesn't break it, like in the database")
+    void allWithNullAttributeTest() {
+        var undatedAuthor = new Author();
+        undatedAuthor.setFullName(library.authorName("Undated Author"));
+        undatedAuthor.setBooks(new ArrayList<>());
+        authorRepository.save(undatedAuthor);
+        // Stephen King was born in 1947, J.K. Rowling in 1965
+        var alone = createBook("Undated Alone", undatedAuthor);
+        var withOlder = createBook("Undated With King", undatedAuthor, authorRepository.findById(library.authorId("Stephen King")).orElseThrow());
+        var withYounger = createBook("Undated With Rowling", undatedAuthor, authorRepository.findById(library.authorId("J.K. Rowling")).orElseThrow());
+        bookRepository.flush();
+
+        var condition = """
+                {
+                  "op": "&&",
+                  "lhs": { "op": "in", "lhs": "id", "rhs": [%d, %d, %d] },
+                  "rhs": { "op": "all", "lhs": "authors", "rhs": { "op": "<", "lhs": "birthDate", "rhs": "1948-01-01" } }
+                }
+                """.formatted(alone.getId(), withOlder.getId(), withYounger.getId());
+        long expected = bookService.count(condition).data();
+        var matching = List.of(alone, withOlder, withYounger).stream()
+                .filter(inMemoryConditionCompiler.compile(Book.class, condition))
+                .toList();
+        System.out.printf("database: %d, in memory: %s\n", expected, matching.stream().map(Book::getTitle).toList());
+
+        // the null birth date is unknown: only J.K. Rowling breaks the condition
+        assert (expected == 2L);
+        assert (matching.equals(List.of(alone, withOlder)));
+    }
+
+    private Book createBook(String title, Author... authors) {
+        var book = new Book();
+        book.setTitle(title);
+        book.setPress("Undated Press");
+        book.setAuthors(new ArrayList<>(List.of(authors)));
+        bookRepository.save(book);
+        // the authors own the relation
+        for (var author : authors) {
+            author.getBooks().add(book);
+        }
+        return book;
+    }
+}
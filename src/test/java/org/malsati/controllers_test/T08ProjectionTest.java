@@ -0,0 +1,104 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.book.GetOneBookOutputDto;
+import org.malsati.simple_web_app.service.BookSqlService;
+import org.malsati.simple_web_app.service.ProjectedBookService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Objects;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T08ProjectionTest {
+
+    public T08ProjectionTest(@Autowired ProjectedBookService bookService,
+                             @Autowired BookSqlService bookSqlService,
+                             @Autowired SqlStatementRecorder sqlStatementRecorder,
+                             @Autowired LibraryFixture libraryFixture) {
+        this.bookService = bookService;
+        this.bookSqlService = bookSqlService;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final ProjectedBookService bookService;
+    // getMany of the SQL backend always loads the entities
+    private final BookSqlService bookSqlService;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T08");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("getOneById selects only the columns of the DTO")
+    void getOneByIdTest() {
+        sqlStatementRecorder.start();
+        var serviceResponse = bookService.getOneById(library.bookId("The Shining"));
+        List<String> statements = sqlStatementRecorder.stop();
+        System.out.println(statements);
+
+        assert (serviceResponse.isSuccess());
+        assert (serviceResponse.data().getTitle().equals("The Shining"));
+        assert (serviceResponse.data().getPress().equals("Doubleday"));
+        // the relations aren't projected
+        assert (serviceResponse.data().getAuthors().isEmpty());
+        assert (statements.size() == 1);
+        assert (!statements.get(0).contains("created_by"));
+
+        assert (!bookService.getOneById(10_000L).isSuccess());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("getOne and getMany return the values of the entities")
+    // the SQL backend maps the books with their lazy authors
+    @Transactional
+    void sameValuesTest() {
+        var condition = library.onBooks("{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 250 }");
+        for (var withTotal : List.of(true, false)) {
+            var pageable = PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "publishDate"));
+            sqlStatementRecorder.start();
+            var projected = bookService.getMany(condition, pageable, withTotal).data();
+            List<String> statements = sqlStatementRecorder.stop();
+            var loaded = bookSqlService.getMany(condition, pageable, withTotal).data();
+
+            // the page, and the count when asked: no lazy load
+            assert (statements.size() == (withTotal ? 2 : 1));
+            assert (projected.hasNext().equals(loaded.hasNext()));
+            assert (Objects.equals(projected.totalItems(), loaded.totalItems()));
+            assert (projected.data().size() == loaded.data().size());
+            for (int i = 0; i < projected.data().size(); i++) {
+                assert (sameValues(projected.data().get(i), loaded.data().get(i)));
+            }
+        }
+
+        var oneCondition = library.onBooks("{ \"op\": \"=\", \"lhs\": \"title\", \"rhs\": \"Misery\" }");
+        assert (sameValues(bookService.getOne(oneCondition).data(), bookSqlService.getOne(oneCondition).data()));
+    }
+
+    private static boolean sameValues(GetOneBookOutputDto projected, GetOneBookOutputDto loaded) {
+        return projected.getId().equals(loaded.getId()) &&
+                projected.getTitle().equals(loaded.getTitle()) &&
+                projected.getPublishDate().equals(loaded.getPublishDate()) &&
+                projected.getEdition().equals(loaded.getEdition()) &&
+                projected.getVolume().equals(loaded.getVolume()) &&
+                projected.getPress().equals(loaded.getPress()) &&
+                projected.getNoPages().equals(loaded.getNoPages());
+    }
+}
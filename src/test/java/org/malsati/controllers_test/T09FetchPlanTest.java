@@ -0,0 +1,95 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.service.AuthorsService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.dto.pagination.KeysetPageRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T09FetchPlanTest {
+
+    public T09FetchPlanTest(@Autowired AuthorsService authorsService,
+                            @Autowired SqlStatementRecorder sqlStatementRecorder,
+                            @Autowired LibraryFixture libraryFixture) {
+        this.authorsService = authorsService;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final AuthorsService authorsService;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T09");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("getOneById: the author, the books, the authors of the books")
+    void getOneByIdStatementCountTest() {
+        for (var authorId : library.authorIds().subList(0, 3)) {
+            var statements = recordStatements(() -> {
+                var serviceResponse = authorsService.getOneById(authorId);
+                assert (serviceResponse.isSuccess());
+                assert (!serviceResponse.data().getBooks().isEmpty());
+            });
+            assert (statements.size() == 3);
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("getMany: the same statements whatever the page size")
+    void getManyStatementCountTest() {
+        for (int pageSize : List.of(1, 3, 20)) {
+            // slice mode: the page, the books, the authors of the books
+            var statements = recordStatements(() -> {
+                var serviceResponse = authorsService.getMany(library.onAuthors(null), PageRequest.of(0, pageSize, Sort.by("id")), false);
+                assert (serviceResponse.isSuccess());
+                assert (serviceResponse.data().data().stream().allMatch(author -> !author.getBooks().isEmpty()));
+            });
+            assert (statements.size() == 3);
+
+            // keyset mode, same statements
+            statements = recordStatements(() -> {
+                var serviceResponse = authorsService.getManyByKeyset(library.onAuthors(null), new KeysetPageRequest(pageSize, "id", Sort.Direction.ASC, null));
+                assert (serviceResponse.isSuccess());
+            });
+            assert (statements.size() == 3);
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("getOne with a condition")
+    void getOneStatementCountTest() {
+        var statements = recordStatements(() -> {
+            var serviceResponse = authorsService.getOne("{ \"op\": \"=\", \"lhs\": \"fullName\", \"rhs\": \"%s\" }".formatted(library.authorName("Stephen King")));
+            assert (serviceResponse.isSuccess());
+            assert (serviceResponse.data().getBooks().size() == 2);
+        });
+        assert (statements.size() == 3);
+    }
+
+    private List<String> recordStatements(Runnable call) {
+        sqlStatementRecorder.start();
+        call.run();
+        List<String> statements = sqlStatementRecorder.stop();
+        System.out.printf("%d statements: %s\n", statements.size(), statements);
+        return statements;
+    }
+}
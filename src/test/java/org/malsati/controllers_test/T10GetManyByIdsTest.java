@@ -0,0 +1,120 @@
+package org.malsati.controllers_test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.author.DeleteOneAuthorOutputDto;
+import org.malsati.simple_web_app.dto.author.GetOneAuthorOutputDto;
+import org.malsati.simple_web_app.entities.Author;
+import org.malsati.utilities.LogHelper;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.json.JsonRestHitter;
+import org.malsati.xrest.controller.CrudEndpoints;
+import org.malsati.xrest.dto.ManyByIdsResponse;
+import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.infrastructure.jpql.SpecificationBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T10GetManyByIdsTest {
+    private static final String authorControllerBaseUrl = "/app/author";
+    private static final TypeReference<ServiceResponse<ManyByIdsResponse<GetOneAuthorOutputDto, Long>>> typeReference = new TypeReference<>() {};
+    // no author has this id
+    private static final Long unknownId = Long.MAX_VALUE;
+
+    private final JsonRestHitter jsonRestHitter;
+    private final SpecificationBuilder<Author> specificationBuilder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    public T10GetManyByIdsTest(@Autowired MockMvc mockMvc,
+                               @Autowired ObjectMapper objectMapper,
+                               @Autowired SpecificationBuilder<Author> specificationBuilder,
+                               @Autowired LibraryFixture libraryFixture) {
+        this.jsonRestHitter = new JsonRestHitter(mockMvc, objectMapper);
+        this.specificationBuilder = specificationBuilder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T10");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("the entities are returned in the order of the request, the unknown ids are reported")
+    void getManyByIdsTest() throws Exception {
+        var rowling = library.authorId("J.K. Rowling");
+        var king = library.authorId("Stephen King");
+        var murakami = library.authorId("Haruki Murakami");
+        var url = String.format("%s%s", authorControllerBaseUrl, CrudEndpoints.GET_MANY_BY_IDS);
+        var result = jsonRestHitter.getRequest(url, List.of(king, unknownId, rowling, king, murakami), typeReference);
+        LogHelper.printMvcResult("getManyByIdsTest", result.second());
+
+        assert (result.first().isSuccess());
+        var data = result.first().data().data();
+        assert (data.stream().map(GetOneAuthorOutputDto::getId).toList().equals(List.of(king, rowling, murakami)));
+        assert (data.get(1).getFullName().equals(library.authorName("J.K. Rowling")));
+        assert (result.first().data().notFoundIds().equals(List.of(unknownId)));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("the ids that don't fit in one in list are read with several")
+    void getManyByIdsChunksTest() throws Exception {
+        var ids = new ArrayList<Long>();
+        for (long id = unknownId; ids.size() <= specificationBuilder.getInListChunkSize(); id--) {
+            ids.add(id);
+        }
+        ids.addAll(library.authorIds());
+        var url = String.format("%s%s", authorControllerBaseUrl, CrudEndpoints.GET_MANY_BY_IDS);
+        var result = jsonRestHitter.getRequest(url, ids, typeReference);
+
+        assert (result.first().isSuccess());
+        assert (result.first().data().data().stream().map(GetOneAuthorOutputDto::getId).toList().equals(library.authorIds()));
+        assert (result.first().data().notFoundIds().size() == ids.size() - library.authorIds().size());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("a soft deleted entity is reported as not found")
+    void getManyByIdsSoftDeletedTest() throws Exception {
+        var rowling = library.authorId("J.K. Rowling");
+        var king = library.authorId("Stephen King");
+        var atwood = library.authorId("Margaret Atwood");
+        var deleteUrl = String.format("%s%s/%d", authorControllerBaseUrl, CrudEndpoints.DELETE_ONE, king);
+        var deleted = jsonRestHitter.deleteRequest(deleteUrl, null, new TypeReference<ServiceResponse<DeleteOneAuthorOutputDto>>() {});
+        assert (deleted.first().isSuccess());
+
+        var url = String.format("%s%s", authorControllerBaseUrl, CrudEndpoints.GET_MANY_BY_IDS);
+        var result = jsonRestHitter.getRequest(url, List.of(rowling, king, atwood), typeReference);
+        LogHelper.printMvcResult("getManyByIdsSoftDeletedTest", result.second());
+
+        assert (result.first().isSuccess());
+        assert (result.first().data().data().stream().map(GetOneAuthorOutputDto::getId).toList().equals(List.of(rowling, atwood)));
+        assert (result.first().data().notFoundIds().equals(List.of(king)));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("the ids are required")
+    void getManyByIdsEmptyTest() throws Exception {
+        var url = String.format("%s%s", authorControllerBaseUrl, CrudEndpoints.GET_MANY_BY_IDS);
+        var result = jsonRestHitter.getRequest(url, List.of(), typeReference);
+
+        assert (result.second().getResponse().getStatus() == HttpStatus.BAD_REQUEST.value());
+        assert (result.first().errors()[0].errorCode().equals(ErrorCode.RequiredField));
+    }
+}
@@ -0,0 +1,158 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.book.UpdateOneBookInputDto;
+import org.malsati.simple_web_app.service.CachedBookService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.dto.FieldSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T11DtoCacheTest {
+
+    public T11DtoCacheTest(@Autowired CachedBookService cachedBookService,
+                           @Autowired SqlStatementRecorder sqlStatementRecorder,
+                           @Autowired TransactionTemplate transactionTemplate,
+                           @Autowired LibraryFixture libraryFixture) {
+        this.cachedBookService = cachedBookService;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.transactionTemplate = transactionTemplate;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final CachedBookService cachedBookService;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final TransactionTemplate transactionTemplate;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T11");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("the second getOneById is served by the cache")
+    void getOneByIdReadThroughTest() {
+        var id = library.bookId("Harry Potter and the Philosopher's Stone");
+        // the cache is shared by the test classes
+        var statisticsBefore = cachedBookService.getDtoCacheStatistics();
+        var statements = recordStatements(() -> assertTitle(id, "Harry Potter and the Philosopher's Stone"));
+        assert (!statements.isEmpty());
+
+        statements = recordStatements(() -> assertTitle(id, "Harry Potter and the Philosopher's Stone"));
+        assert (statements.isEmpty());
+
+        var statistics = cachedBookService.getDtoCacheStatistics();
+        assert (statistics.hits() - statisticsBefore.hits() == 1 && statistics.misses() - statisticsBefore.misses() == 1);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("updateOne evicts the cached DTO")
+    void updateOneEvictionTest() {
+        var id = library.bookId("Harry Potter and the Chamber of Secrets");
+        assertTitle(id, "Harry Potter and the Chamber of Secrets");
+        assert (cachedBookService.updateOne(new UpdateOneBookInputDto("The Chamber of Secrets", 1, 1, id)).isSuccess());
+
+        var statements = recordStatements(() -> assertTitle(id, "The Chamber of Secrets"));
+        assert (!statements.isEmpty());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("a rolled back update doesn't leave its DTO in the cache")
+    void rolledBackUpdateTest() {
+        var id = library.bookId("The Shining");
+        assertTitle(id, "The Shining");
+        transactionTemplate.executeWithoutResult(status -> {
+            assert (cachedBookService.updateOne(new UpdateOneBookInputDto("The Shining (draft)", 1, 1, id)).isSuccess());
+            assertTitle(id, "The Shining (draft)");
+            status.setRollbackOnly();
+        });
+        assertTitle(id, "The Shining");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("a DTO read before an update commits isn't cached after the eviction")
+    void readBeforeEvictionTest() throws Exception {
+        var id = library.bookId("Misery");
+        var rowRead = new CountDownLatch(1);
+        var updated = new CountDownLatch(1);
+        // the book row is read first, its authors are loaded by the mapper: the update commits in between
+        var reader = CompletableFuture.supplyAsync(() -> {
+            sqlStatementRecorder.start(sql -> {
+                if (sql.contains("author_books") && rowRead.getCount() > 0) {
+                    rowRead.countDown();
+                    await(updated);
+                }
+            });
+            try {
+                return cachedBookService.getOneById(id);
+            } finally {
+                sqlStatementRecorder.stop();
+            }
+        });
+        await(rowRead);
+        assert (cachedBookService.updateOne(new UpdateOneBookInputDto("Misery (2nd edition)", 2, 1, id)).isSuccess());
+        updated.countDown();
+
+        var serviceResponse = reader.get(10, TimeUnit.SECONDS);
+        assert (serviceResponse.isSuccess());
+        assert (serviceResponse.data().getTitle().equals("Misery"));
+        assertTitle(id, "Misery (2nd edition)");
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("getOneById with fields doesn't serve the cached DTO of an entity written in the current transaction")
+    void writtenInTransactionFieldsTest() {
+        var id = library.bookId("Norwegian Wood");
+        assertTitle(id, "Norwegian Wood");
+        transactionTemplate.executeWithoutResult(status -> {
+            assert (cachedBookService.updateOne(new UpdateOneBookInputDto("Norwegian Wood (draft)", 1, 1, id)).isSuccess());
+            var serviceResponse = cachedBookService.getOneById(id, FieldSet.parse("id,title"));
+            assert (serviceResponse.isSuccess());
+            assert (serviceResponse.data().getTitle().equals("Norwegian Wood (draft)"));
+            status.setRollbackOnly();
+        });
+        var serviceResponse = cachedBookService.getOneById(id, FieldSet.parse("id,title"));
+        assert (serviceResponse.data().getTitle().equals("Norwegian Wood"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assert (latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assertTitle(Long id, String title) {
+        var serviceResponse = cachedBookService.getOneById(id);
+        assert (serviceResponse.isSuccess());
+        assert (serviceResponse.data().getTitle().equals(title));
+    }
+
+    private List<String> recordStatements(Runnable call) {
+        sqlStatementRecorder.start();
+        call.run();
+        List<String> statements = sqlStatementRecorder.stop();
+        System.out.printf("%d statements: %s\n", statements.size(), statements);
+        return statements;
+    }
+}
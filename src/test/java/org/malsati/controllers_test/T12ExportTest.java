@@ -0,0 +1,166 @@
+package org.malsati.controllers_test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.book.GetOneBookOutputDto;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.service.SmallBatchBookService;
+import org.malsati.utilities.LogHelper;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.xrest.controller.CrudEndpoints;
+import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T12ExportTest {
+    private static final String bookControllerBaseUrl = "/app/book";
+
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final SmallBatchBookService smallBatchBookService;
+    private final BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    public T12ExportTest(@Autowired MockMvc mockMvc,
+                         @Autowired ObjectMapper objectMapper,
+                         @Autowired SmallBatchBookService smallBatchBookService,
+                         @Autowired BookRepository bookRepository,
+                         @Autowired EntityManager entityManager,
+                         @Autowired TransactionTemplate transactionTemplate,
+                         @Autowired LibraryFixture libraryFixture) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.smallBatchBookService = smallBatchBookService;
+        this.bookRepository = bookRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.libraryFixture = libraryFixture;
+    }
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T12");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("NDJSON: one book per line, in the requested order")
+    void exportNdjsonTest() throws Exception {
+        var mvcResult = export("?sortBy=id&sortDir=DESC", library.onBooks(null));
+        LogHelper.printMvcResult("exportNdjsonTest", mvcResult);
+
+        assert (mvcResult.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (mvcResult.getResponse().getContentType().startsWith(MediaType.APPLICATION_NDJSON_VALUE));
+        var ids = new ArrayList<Long>();
+        for (String line : mvcResult.getResponse().getContentAsString().split("\n")) {
+            ids.add(objectMapper.readValue(line, GetOneBookOutputDto.class).getId());
+        }
+        var expectedIds = new ArrayList<Long>(library.bookIds());
+        Collections.reverse(expectedIds);
+        assert (ids.equals(expectedIds));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("JSON array filtered by a condition, relations mapped")
+    void exportJsonArrayTest() throws Exception {
+        var condition = library.onBooks("""
+                {
+                    "op": "=",
+                    "lhs": "press",
+                    "rhs": "Bloomsbury Publishing"
+                }
+                """);
+        var mvcResult = export("?format=json", condition);
+        LogHelper.printMvcResult("exportJsonArrayTest", mvcResult);
+
+        assert (mvcResult.getResponse().getStatus() == HttpStatus.OK.value());
+        List<GetOneBookOutputDto> books = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), new TypeReference<>() {});
+        assert (books.stream().map(GetOneBookOutputDto::getId).toList().equals(library.bookIds().subList(0, 2)));
+        assert (books.stream().allMatch(book -> book.getAuthors().size() == 1));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("nothing matched: an empty array")
+    void exportEmptyTest() throws Exception {
+        var mvcResult = export("?format=json", "{ \"op\": \"=\", \"lhs\": \"press\", \"rhs\": \"nobody\" }");
+        assert (mvcResult.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (mvcResult.getResponse().getContentAsString().equals("[]"));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("a rejected condition is reported before any row is written")
+    void exportBadConditionTest() throws Exception {
+        var mvcResult = export("", "{ \"op\": \"=\", \"lhs\": \"press\", ");
+        LogHelper.printMvcResult("exportBadConditionTest", mvcResult);
+
+        assert (mvcResult.getResponse().getStatus() == HttpStatus.BAD_REQUEST.value());
+        ServiceResponse<Object> serviceResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), new TypeReference<>() {});
+        assert (serviceResponse.errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("batches of 3: the 10 books are exported in 4 batches, with their relations")
+    void exportBatchesTest() {
+        var books = new ArrayList<GetOneBookOutputDto>();
+        var serviceResponse = smallBatchBookService.exportMany(library.onBooks(null), Sort.by("id"), books::add);
+
+        assert (serviceResponse.isSuccess());
+        assert (serviceResponse.data() == 10L);
+        assert (books.stream().map(GetOneBookOutputDto::getId).toList().equals(library.bookIds()));
+        assert (books.stream().allMatch(book -> book.getAuthors().size() == 1));
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("in the caller's transaction, the entities it manages stay managed with their unflushed changes")
+    void exportInTransactionTest() {
+        var id = library.bookId("Misery");
+        transactionTemplate.executeWithoutResult(status -> {
+            var misery = bookRepository.findById(id).orElseThrow();
+            misery.setPress("Viking Press (T12)");
+
+            var books = new ArrayList<GetOneBookOutputDto>();
+            assert (smallBatchBookService.exportMany(library.onBooks(null), Sort.by("id"), books::add).isSuccess());
+
+            assert (books.size() == 10);
+            assert (entityManager.contains(misery));
+            assert (books.stream().anyMatch(book -> book.getId().equals(id) && book.getPress().equals("Viking Press (T12)")));
+        });
+        assert (bookRepository.findById(id).orElseThrow().getPress().equals("Viking Press (T12)"));
+    }
+
+    private MvcResult export(String queryString, String condition) throws Exception {
+        var request = get(bookControllerBaseUrl + CrudEndpoints.EXPORT_MANY + queryString).contentType(MediaType.APPLICATION_JSON);
+        if (condition != null) {
+            request.content(condition);
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+}
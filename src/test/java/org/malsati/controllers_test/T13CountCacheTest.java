@@ -0,0 +1,110 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.book.CreateOneBookInputDto;
+import org.malsati.simple_web_app.service.CachedBookService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.utilities.cache.CountCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T13CountCacheTest {
+
+    public T13CountCacheTest(@Autowired CachedBookService cachedBookService,
+                             @Autowired SqlStatementRecorder sqlStatementRecorder,
+                             @Autowired LibraryFixture libraryFixture) {
+        this.cachedBookService = cachedBookService;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final CachedBookService cachedBookService;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T13");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("the same condition, formatted differently, is counted once")
+    void countReadThroughTest() {
+        // the cache is shared by the test classes
+        var statisticsBefore = cachedBookService.getCountCacheStatistics();
+        var statements = recordStatements(() -> assertCount(library.onBooks("{ \"op\": \"=\", \"lhs\": \"press\", \"rhs\": \"Doubleday\" }"), 1));
+        assert (!statements.isEmpty());
+
+        statements = recordStatements(() -> assertCount(library.onBooks("{\"rhs\":\"Doubleday\",\"lhs\":\"press\",\"op\":\"=\"}"), 1));
+        assert (statements.isEmpty());
+
+        var statistics = cachedBookService.getCountCacheStatistics();
+        assert (statistics.hits() - statisticsBefore.hits() == 1 && statistics.misses() - statisticsBefore.misses() == 1);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("a write through the service drops the cached counts")
+    void writeInvalidationTest() {
+        var taggedPress = "{ \"op\": \"=\", \"lhs\": \"press\", \"rhs\": \"Doubleday (T13)\" }";
+        assertCount(library.onBooks(null), 10);
+        assertCount(taggedPress, 0);
+        var statements = recordStatements(() -> {
+            assertCount(library.onBooks(null), 10);
+            assertCount(taggedPress, 0);
+        });
+        assert (statements.isEmpty());
+
+        var created = cachedBookService.createOne(new CreateOneBookInputDto("The Stand", LocalDate.of(1978, 9, 1), 1, 1, "Doubleday (T13)", 823));
+        assert (created.isSuccess());
+
+        // all the counts are dropped, not only the ones the new book changes
+        statements = recordStatements(() -> {
+            assertCount(library.onBooks(null), 10);
+            assertCount(taggedPress, 1);
+        });
+        assert (statements.size() == 2);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("approximate mode ignores the writes, a count read before an invalidation isn't cached")
+    void countCacheModesTest() {
+        var approximate = CountCache.approximate(10, Duration.ofMinutes(1));
+        approximate.put("", 10, approximate.getGeneration());
+        approximate.invalidate();
+        assert (approximate.get("") == 10);
+
+        var exact = CountCache.exact(10);
+        long generation = exact.getGeneration();
+        exact.invalidate();
+        exact.put("", 10, generation);
+        assert (exact.get("") == null);
+    }
+
+    private void assertCount(String condition, long expectedCount) {
+        var serviceResponse = cachedBookService.count(condition);
+        assert (serviceResponse.isSuccess());
+        assert (serviceResponse.data() == expectedCount);
+    }
+
+    private List<String> recordStatements(Runnable call) {
+        sqlStatementRecorder.start();
+        call.run();
+        List<String> statements = sqlStatementRecorder.stop();
+        System.out.printf("%d statements: %s\n", statements.size(), statements);
+        return statements;
+    }
+}
@@ -0,0 +1,82 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.book.UpdateOneBookInputDto;
+import org.malsati.simple_web_app.service.BookService;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.sql.CountingDataSource;
+import org.malsati.xrest.infrastructure.datasource.ReadReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+// two pools over the same H2 database, see ReplicaDataSourceConfig
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T14ReadReplicaRoutingTest {
+
+    public T14ReadReplicaRoutingTest(@Autowired BookService bookService,
+                                     @Autowired @Qualifier("primaryPool") CountingDataSource primaryPool,
+                                     @Autowired @Qualifier("replicaPool") CountingDataSource replicaPool,
+                                     @Autowired LibraryFixture libraryFixture) {
+        this.bookService = bookService;
+        this.primaryPool = primaryPool;
+        this.replicaPool = replicaPool;
+        this.libraryFixture = libraryFixture;
+    }
+
+    private final BookService bookService;
+    private final CountingDataSource primaryPool;
+    private final CountingDataSource replicaPool;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T14");
+    }
+
+    @BeforeEach
+    void resetPools() {
+        primaryPool.reset();
+        replicaPool.reset();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("the reads run on the replica")
+    void readsOnReplicaTest() {
+        assert (bookService.getOneById(library.bookId("Harry Potter and the Philosopher's Stone")).isSuccess());
+        assert (bookService.getMany(library.onBooks(null), PageRequest.of(0, 5)).isSuccess());
+        assert (bookService.count(library.onBooks("{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 300 }")).isSuccess());
+
+        System.out.printf("primary: %d, replica: %d\n", primaryPool.getConnectionCount(), replicaPool.getConnectionCount());
+        assert (replicaPool.getConnectionCount() > 0);
+        assert (primaryPool.getConnectionCount() == 0);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("the writes run on the primary")
+    void writesOnPrimaryTest() {
+        assert (bookService.updateOne(new UpdateOneBookInputDto("Misery", 2, 1, library.bookId("Misery"))).isSuccess());
+
+        assert (primaryPool.getConnectionCount() > 0);
+        assert (replicaPool.getConnectionCount() == 0);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("a read can be sent to the primary")
+    void readOnPrimaryTest() {
+        var serviceResponse = ReadReplicaRoutingDataSource.onPrimary(() -> bookService.getOneById(library.bookId("Misery")));
+        assert (serviceResponse.isSuccess() && serviceResponse.data().getEdition() == 2);
+
+        assert (primaryPool.getConnectionCount() > 0);
+        assert (replicaPool.getConnectionCount() == 0);
+    }
+}
@@ -0,0 +1,148 @@
+package org.malsati.controllers_test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.malsati.utilities.LogHelper;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.json.JsonRestHitter;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.controller.CrudEndpoints;
+import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.aggregation.AggregateResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T15AggregateTest {
+    private static final String bookControllerBaseUrl = "/app/book";
+    private static final String aggregateUrl = bookControllerBaseUrl + CrudEndpoints.AGGREGATE;
+    private static final TypeReference<ServiceResponse<AggregateResponse>> typeReference = new TypeReference<>() {};
+
+    private final JsonRestHitter jsonRestHitter;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    public T15AggregateTest(@Autowired MockMvc mockMvc,
+                            @Autowired ObjectMapper objectMapper,
+                            @Autowired SqlStatementRecorder sqlStatementRecorder,
+                            @Autowired LibraryFixture libraryFixture) {
+        this.jsonRestHitter = new JsonRestHitter(mockMvc, objectMapper);
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T15");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("the groups and their aggregates are read with one group by statement")
+    void aggregateByPressTest() throws Exception {
+        var request = """
+                {
+                    "condition": %s,
+                    "groupBy": ["press"],
+                    "aggregates": ["count", "sum(noPages)", "max(noPages)"]
+                }
+                """.formatted(library.onBooks("{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 300 }"));
+        sqlStatementRecorder.start();
+        var result = jsonRestHitter.getRequest(aggregateUrl, request, typeReference);
+        List<String> statements = sqlStatementRecorder.stop();
+        LogHelper.printMvcResult("aggregateByPressTest", result.second());
+
+        assert (result.first().isSuccess());
+        assert (statements.size() == 1);
+        assert (statements.get(0).toLowerCase().contains("group by"));
+
+        var data = result.first().data();
+        assert (data.columns().equals(List.of("press", "count", "sum(noPages)", "max(noPages)")));
+        assert (asLongs(data.rows()).equals(List.of(
+                List.of("Bantam Spectra", 2L, 1462L, 768L),
+                List.of("Doubleday", 1L, 447L, 447L),
+                List.of("McClelland & Stewart", 2L, 871L, 560L),
+                List.of("Shinchosha", 1L, 1157L, 1157L),
+                List.of("Viking Press", 1L, 310L, 310L)
+        )));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("without group by, one row aggregates all the entities")
+    void aggregateAllTest() throws Exception {
+        var request = """
+                { "condition": %s, "aggregates": ["count", "min(noPages)", "avg(noPages)"] }
+                """.formatted(library.onBooks(null));
+        var result = jsonRestHitter.getRequest(aggregateUrl, request, typeReference);
+        LogHelper.printMvcResult("aggregateAllTest", result.second());
+
+        assert (result.first().isSuccess());
+        var rows = result.first().data().rows();
+        assert (rows.size() == 1);
+        assert (((Number) rows.get(0).get(0)).longValue() == 10L);
+        assert (((Number) rows.get(0).get(1)).longValue() == 223L);
+        assert (Math.abs(((Number) rows.get(0).get(2)).doubleValue() - 501.7) < 0.001);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("the group by paths may go through a collection")
+    void aggregateByAuthorTest() throws Exception {
+        var request = """
+                {
+                    "condition": %s,
+                    "groupBy": ["authors.fullName"],
+                    "aggregates": ["count", "sum(noPages)"]
+                }
+                """.formatted(library.onBooks(null));
+        var result = jsonRestHitter.getRequest(aggregateUrl, request, typeReference);
+        LogHelper.printMvcResult("aggregateByAuthorTest", result.second());
+
+        assert (result.first().isSuccess());
+        assert (asLongs(result.first().data().rows()).equals(List.of(
+                List.of(library.authorName("George R.R. Martin"), 2L, 1462L),
+                List.of(library.authorName("Haruki Murakami"), 2L, 1453L),
+                List.of(library.authorName("J.K. Rowling"), 2L, 474L),
+                List.of(library.authorName("Margaret Atwood"), 2L, 871L),
+                List.of(library.authorName("Stephen King"), 2L, 757L)
+        )));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("an unknown function, an unknown path or a sum over a text is rejected")
+    void aggregateInvalidTest() throws Exception {
+        for (var aggregate : List.of("median(noPages)", "sum(pages)", "sum(title)", "sum")) {
+            var request = "{ \"groupBy\": [\"press\"], \"aggregates\": [\"%s\"] }".formatted(aggregate);
+            var result = jsonRestHitter.getRequest(aggregateUrl, request, typeReference);
+            LogHelper.printMvcResult("aggregateInvalidTest", result.second());
+
+            assert (!result.first().isSuccess());
+            assert (result.second().getResponse().getStatus() == HttpStatus.BAD_REQUEST.value());
+            assert (result.first().errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+        }
+
+        var result = jsonRestHitter.getRequest(aggregateUrl, "{ \"groupBy\": [] }", typeReference);
+        assert (!result.first().isSuccess());
+        assert (result.first().errors()[0].errorCode().equals(ErrorCode.RequiredField));
+    }
+
+    // JSON numbers are read back as Integer or Long depending on their size
+    private static List<List<Object>> asLongs(List<List<Object>> rows) {
+        return rows.stream()
+                .map(row -> row.stream().map(value -> value instanceof Number number ? (Object) number.longValue() : value).toList())
+                .toList();
+    }
+}
@@ -0,0 +1,134 @@
+package org.malsati.controllers_test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.author.DeleteOneAuthorOutputDto;
+import org.malsati.utilities.LogHelper;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.json.JsonRestHitter;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.controller.CrudEndpoints;
+import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T16CountManyTest {
+    private static final String bookControllerBaseUrl = "/app/book";
+    private static final String authorControllerBaseUrl = "/app/author";
+    private static final TypeReference<ServiceResponse<Map<String, Long>>> typeReference = new TypeReference<>() {};
+
+    private final JsonRestHitter jsonRestHitter;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    public T16CountManyTest(@Autowired MockMvc mockMvc,
+                            @Autowired ObjectMapper objectMapper,
+                            @Autowired SqlStatementRecorder sqlStatementRecorder,
+                            @Autowired LibraryFixture libraryFixture) {
+        this.jsonRestHitter = new JsonRestHitter(mockMvc, objectMapper);
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T16");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("all the conditions are counted with one statement, in the order of the request")
+    void countManyTest() throws Exception {
+        var request = """
+                {
+                    "bloomsbury": %s,
+                    "long": %s,
+                    "byStephenKing": %s,
+                    "none": %s,
+                    "all": %s
+                }
+                """.formatted(
+                library.onBooks("{ \"op\": \"=\", \"lhs\": \"press\", \"rhs\": \"Bloomsbury Publishing\" }"),
+                library.onBooks("{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 500 }"),
+                library.onBooks("{ \"op\": \"=\", \"lhs\": \"authors.fullName\", \"rhs\": \"%s\" }".formatted(library.authorName("Stephen King"))),
+                library.onBooks("{ \"op\": \"=\", \"lhs\": \"press\", \"rhs\": \"Unknown Press\" }"),
+                library.onBooks(null));
+        var url = String.format("%s%s", bookControllerBaseUrl, CrudEndpoints.COUNT_MANY);
+        sqlStatementRecorder.start();
+        var result = jsonRestHitter.getRequest(url, request, typeReference);
+        List<String> statements = sqlStatementRecorder.stop();
+        LogHelper.printMvcResult("countManyTest", result.second());
+
+        assert (result.first().isSuccess());
+        assert (statements.size() == 1);
+        var counts = result.first().data();
+        assert (List.copyOf(counts.keySet()).equals(List.of("bloomsbury", "long", "byStephenKing", "none", "all")));
+        assert (counts.get("bloomsbury") == 2L);
+        assert (counts.get("long") == 4L);
+        assert (counts.get("byStephenKing") == 2L);
+        assert (counts.get("none") == 0L);
+        assert (counts.get("all") == 10L);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("the soft deleted entities aren't counted")
+    void countManySoftDeletedTest() throws Exception {
+        var deleteUrl = String.format("%s%s/%d", authorControllerBaseUrl, CrudEndpoints.DELETE_ONE, library.authorId("Stephen King"));
+        var deleted = jsonRestHitter.deleteRequest(deleteUrl, null, new TypeReference<ServiceResponse<DeleteOneAuthorOutputDto>>() {});
+        assert (deleted.first().isSuccess());
+
+        var request = """
+                {
+                    "bornBefore1950": %s,
+                    "all": %s
+                }
+                """.formatted(
+                library.onAuthors("{ \"op\": \"<\", \"lhs\": \"birthDate\", \"rhs\": \"1950-01-01\", \"type\": \"Date\" }"),
+                library.onAuthors(null));
+        var url = String.format("%s%s", authorControllerBaseUrl, CrudEndpoints.COUNT_MANY);
+        var result = jsonRestHitter.getRequest(url, request, typeReference);
+        LogHelper.printMvcResult("countManySoftDeletedTest", result.second());
+
+        assert (result.first().isSuccess());
+        assert (result.first().data().get("bornBefore1950") == 3L);
+        assert (result.first().data().get("all") == 4L);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("a bad condition is reported by name, the conditions are required")
+    void countManyInvalidTest() throws Exception {
+        var url = String.format("%s%s", bookControllerBaseUrl, CrudEndpoints.COUNT_MANY);
+        var request = """
+                {
+                    "all": {},
+                    "broken": "{ \\"op\\": \\"=\\", \\"lhs\\": "
+                }
+                """;
+        var result = jsonRestHitter.getRequest(url, request, typeReference);
+        LogHelper.printMvcResult("countManyInvalidTest", result.second());
+
+        assert (!result.first().isSuccess());
+        assert (result.second().getResponse().getStatus() == HttpStatus.BAD_REQUEST.value());
+        assert (result.first().errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+        assert (result.first().errors()[0].message().startsWith("broken: "));
+
+        result = jsonRestHitter.getRequest(url, "{}", typeReference);
+        assert (!result.first().isSuccess());
+        assert (result.first().errors()[0].errorCode().equals(ErrorCode.RequiredField));
+    }
+}
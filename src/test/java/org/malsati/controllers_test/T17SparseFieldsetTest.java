@@ -0,0 +1,139 @@
+package org.malsati.controllers_test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.malsati.utilities.LogHelper;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.json.JsonRestHitter;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.controller.CrudEndpoints;
+import org.malsati.xrest.dto.ServiceResponse;
+import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.dto.pagination.PaginatedResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T17SparseFieldsetTest {
+    private static final String bookControllerBaseUrl = "/app/book";
+    private static final String authorControllerBaseUrl = "/app/author";
+    private static final TypeReference<ServiceResponse<JsonNode>> oneTypeReference = new TypeReference<>() {};
+    private static final TypeReference<ServiceResponse<PaginatedResponse<JsonNode>>> manyTypeReference = new TypeReference<>() {};
+
+    private final JsonRestHitter jsonRestHitter;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+
+    public T17SparseFieldsetTest(@Autowired MockMvc mockMvc,
+                                 @Autowired ObjectMapper objectMapper,
+                                 @Autowired SqlStatementRecorder sqlStatementRecorder,
+                                 @Autowired LibraryFixture libraryFixture) {
+        this.jsonRestHitter = new JsonRestHitter(mockMvc, objectMapper);
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T17");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("getMany selects the columns of the requested fields only and reads no relation")
+    void getManyFieldsTest() throws Exception {
+        var url = String.format("%s%s?pageSize=3&withTotal=false&fields=id,title", bookControllerBaseUrl, CrudEndpoints.GET_MANY);
+        sqlStatementRecorder.start();
+        var result = jsonRestHitter.getRequest(url, library.onBooks(null), manyTypeReference);
+        List<String> statements = sqlStatementRecorder.stop();
+        LogHelper.printMvcResult("getManyFieldsTest", result.second());
+
+        assert (result.first().isSuccess());
+        assert (statements.size() == 1);
+        var statement = statements.get(0).toLowerCase();
+        assert (statement.contains("title"));
+        assert (!(statement.contains("press") || statement.contains("no_pages") || statement.contains("author")));
+
+        var books = result.first().data().data();
+        assert (books.size() == 3);
+        for (var book : books) {
+            assert (fieldNames(book).equals(List.of("id", "title")));
+        }
+        assert (books.get(0).get("title").asText().equals("Harry Potter and the Philosopher's Stone"));
+        assert (result.first().data().hasNext());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("getOne with a condition returns the requested fields only")
+    void getOneWhereFieldsTest() throws Exception {
+        var url = String.format("%s%s?fields=title,noPages", bookControllerBaseUrl, CrudEndpoints.GET_ONE);
+        var condition = library.onBooks("{ \"op\": \"=\", \"lhs\": \"press\", \"rhs\": \"Doubleday\" }");
+        var result = jsonRestHitter.getRequest(url, condition, oneTypeReference);
+        LogHelper.printMvcResult("getOneWhereFieldsTest", result.second());
+
+        assert (result.first().isSuccess());
+        var book = result.first().data();
+        assert (fieldNames(book).equals(List.of("title", "noPages")));
+        assert (book.get("title").asText().equals("The Shining"));
+        assert (book.get("noPages").asInt() == 447);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("a dotted field selects the properties of a nested relation")
+    void getOneByIdNestedFieldsTest() throws Exception {
+        var url = String.format("%s%s/%d?fields=fullName,books.title", authorControllerBaseUrl, CrudEndpoints.GET_ONE, library.authorId("J.K. Rowling"));
+        var result = jsonRestHitter.getRequest(url, null, oneTypeReference);
+        LogHelper.printMvcResult("getOneByIdNestedFieldsTest", result.second());
+
+        assert (result.first().isSuccess());
+        var author = result.first().data();
+        assert (fieldNames(author).equals(List.of("fullName", "books")));
+        assert (author.get("fullName").asText().equals(library.authorName("J.K. Rowling")));
+        var titles = new ArrayList<String>();
+        for (var book : author.get("books")) {
+            assert (fieldNames(book).equals(List.of("title")));
+            titles.add(book.get("title").asText());
+        }
+        assert (titles.size() == 2);
+        assert (titles.contains("Harry Potter and the Chamber of Secrets"));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("an unknown or malformed field is rejected")
+    void invalidFieldsTest() throws Exception {
+        var url = String.format("%s%s?fields=id,isbn", bookControllerBaseUrl, CrudEndpoints.GET_MANY);
+        var result = jsonRestHitter.getRequest(url, null, manyTypeReference);
+        LogHelper.printMvcResult("invalidFieldsTest", result.second());
+
+        assert (!result.first().isSuccess());
+        assert (result.second().getResponse().getStatus() == HttpStatus.BAD_REQUEST.value());
+        assert (result.first().errors()[0].errorCode().equals(ErrorCode.InvalidInput));
+        assert ("isbn".equals(result.first().errors()[0].errorData()));
+
+        url = String.format("%s%s/%d?fields=id,,title", bookControllerBaseUrl, CrudEndpoints.GET_ONE, library.bookId("Misery"));
+        var oneResult = jsonRestHitter.getRequest(url, null, oneTypeReference);
+        assert (!oneResult.first().isSuccess());
+        assert (oneResult.second().getResponse().getStatus() == HttpStatus.BAD_REQUEST.value());
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        var names = new ArrayList<String>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
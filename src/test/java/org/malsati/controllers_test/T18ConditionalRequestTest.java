@@ -0,0 +1,186 @@
+package org.malsati.controllers_test;
+
+import org.junit.jupiter.api.*;
+import org.malsati.simple_web_app.dto.author.UpdateOneAuthorInputDto;
+import org.malsati.simple_web_app.service.AuthorsService;
+import org.malsati.utilities.LogHelper;
+import org.malsati.utilities.data.LibraryFixture;
+import org.malsati.utilities.sql.SqlStatementRecorder;
+import org.malsati.xrest.dto.FieldSet;
+import org.malsati.xrest.controller.CrudEndpoints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class T18ConditionalRequestTest {
+    private static final String bookControllerBaseUrl = "/app/book";
+    private static final String authorControllerBaseUrl = "/app/author";
+    private static final String authorsPageUrl = String.format("%s%s?pageSize=2&withTotal=false", authorControllerBaseUrl, CrudEndpoints.GET_MANY);
+
+    private final MockMvc mockMvc;
+    private final AuthorsService authorsService;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final LibraryFixture libraryFixture;
+    private LibraryFixture.Library library;
+    private String authorUrl;
+    // the condition of the authors page
+    private String authorsPageCondition;
+
+    // the validators of the first requests, checked again after the update
+    private String authorEtag;
+    private String authorsPageEtag;
+
+    public T18ConditionalRequestTest(@Autowired MockMvc mockMvc,
+                                     @Autowired AuthorsService authorsService,
+                                     @Autowired SqlStatementRecorder sqlStatementRecorder,
+                                     @Autowired LibraryFixture libraryFixture) {
+        this.mockMvc = mockMvc;
+        this.authorsService = authorsService;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.libraryFixture = libraryFixture;
+    }
+
+    @BeforeAll
+    void createLibrary() {
+        library = libraryFixture.create("T18");
+        authorUrl = String.format("%s%s/%d", authorControllerBaseUrl, CrudEndpoints.GET_ONE, library.authorId("J.K. Rowling"));
+        authorsPageCondition = library.onAuthors(null);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("getOne by id answers an unchanged entity with 304 after reading its version only")
+    void getOneNotModifiedTest() throws Exception {
+        var first = perform(authorUrl, null, null);
+        LogHelper.printMvcResult("getOneNotModifiedTest", first);
+        assert (first.getResponse().getStatus() == HttpStatus.OK.value());
+        authorEtag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assert (authorEtag != null);
+        // the version of Author is a counter, not a timestamp
+        assert (first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED) == null);
+
+        sqlStatementRecorder.start();
+        var second = perform(authorUrl, null, authorEtag);
+        List<String> statements = sqlStatementRecorder.stop();
+        LogHelper.printMvcResult("getOneNotModifiedTest", second);
+
+        assert (second.getResponse().getStatus() == HttpStatus.NOT_MODIFIED.value());
+        assert (second.getResponse().getContentAsString().isEmpty());
+        assert (authorEtag.equals(second.getResponse().getHeader(HttpHeaders.ETAG)));
+        assert (statements.size() == 1);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("getMany answers an unchanged page with 304, and the entity tag depends on the requested fields")
+    void getManyNotModifiedTest() throws Exception {
+        var first = perform(authorsPageUrl, authorsPageCondition, null);
+        assert (first.getResponse().getStatus() == HttpStatus.OK.value());
+        authorsPageEtag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assert (authorsPageEtag != null);
+
+        sqlStatementRecorder.start();
+        var second = perform(authorsPageUrl, authorsPageCondition, authorsPageEtag);
+        List<String> statements = sqlStatementRecorder.stop();
+        LogHelper.printMvcResult("getManyNotModifiedTest", second);
+
+        assert (second.getResponse().getStatus() == HttpStatus.NOT_MODIFIED.value());
+        assert (second.getResponse().getContentAsString().isEmpty());
+        assert (statements.size() == 1);
+
+        var fields = perform(authorsPageUrl + "&fields=fullName", authorsPageCondition, authorsPageEtag);
+        assert (fields.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (!authorsPageEtag.equals(fields.getResponse().getHeader(HttpHeaders.ETAG)));
+
+        var nextPage = perform(authorsPageUrl + "&pageNo=2", authorsPageCondition, authorsPageEtag);
+        assert (nextPage.getResponse().getStatus() == HttpStatus.OK.value());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("updating an entity changes the entity tags of its reads")
+    void modifiedAfterUpdateTest() throws Exception {
+        var update = authorsService.updateOne(new UpdateOneAuthorInputDto(library.authorId("J.K. Rowling"), LocalDate.of(1965, 8, 1), null));
+        assert (update.isSuccess());
+
+        var author = perform(authorUrl, null, authorEtag);
+        LogHelper.printMvcResult("modifiedAfterUpdateTest", author);
+        assert (author.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (author.getResponse().getContentAsString().contains("1965-08-01"));
+        assert (!authorEtag.equals(author.getResponse().getHeader(HttpHeaders.ETAG)));
+
+        var authorsPage = perform(authorsPageUrl, authorsPageCondition, authorsPageEtag);
+        assert (authorsPage.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (!authorsPageEtag.equals(authorsPage.getResponse().getHeader(HttpHeaders.ETAG)));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("an entity without a version attribute has no entity tag")
+    void noVersionTest() throws Exception {
+        var url = String.format("%s%s/%d", bookControllerBaseUrl, CrudEndpoints.GET_ONE, library.bookId("Misery"));
+        var result = perform(url, null, "\"anything\"");
+        assert (result.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (result.getResponse().getHeader(HttpHeaders.ETAG) == null);
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("a request without validators runs no version query, and its entity tag is the one of the version query")
+    void unconditionalReadTest() throws Exception {
+        sqlStatementRecorder.start();
+        var serviceAuthor = authorsService.getOneById(library.authorId("J.K. Rowling"), FieldSet.ALL);
+        List<String> serviceAuthorStatements = sqlStatementRecorder.stop();
+        assert (serviceAuthor.isSuccess());
+
+        sqlStatementRecorder.start();
+        var author = perform(authorUrl, null, null);
+        List<String> authorStatements = sqlStatementRecorder.stop();
+        LogHelper.printMvcResult("unconditionalReadTest", author);
+        assert (author.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (authorStatements.size() == serviceAuthorStatements.size());
+        var etag = author.getResponse().getHeader(HttpHeaders.ETAG);
+        assert (perform(authorUrl, null, etag).getResponse().getStatus() == HttpStatus.NOT_MODIFIED.value());
+
+        sqlStatementRecorder.start();
+        var servicePage = authorsService.getMany(authorsPageCondition, PageRequest.of(0, 2, Sort.by("id").ascending()), true, FieldSet.ALL);
+        List<String> servicePageStatements = sqlStatementRecorder.stop();
+        assert (servicePage.isSuccess());
+
+        var url = authorsPageUrl.replace("withTotal=false", "withTotal=true");
+        sqlStatementRecorder.start();
+        var page = perform(url, authorsPageCondition, null);
+        List<String> pageStatements = sqlStatementRecorder.stop();
+        assert (page.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (pageStatements.size() == servicePageStatements.size());
+        var pageEtag = page.getResponse().getHeader(HttpHeaders.ETAG);
+        assert (perform(url, authorsPageCondition, pageEtag).getResponse().getStatus() == HttpStatus.NOT_MODIFIED.value());
+    }
+
+    private MvcResult perform(String url, String condition, String ifNoneMatch) throws Exception {
+        var request = get(url);
+        if (condition != null) {
+            request.contentType(MediaType.APPLICATION_JSON).content(condition);
+        }
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+}
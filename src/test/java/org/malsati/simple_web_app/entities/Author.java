@@ -14,6 +14,11 @@ import lombok.NoArgsConstructor;
 @Data
 @Entity
 @Table(name = "Author")
+@NamedEntityGraph(
+        name = "Author.books",
+        attributeNodes = @NamedAttributeNode(value = "books", subgraph = "books"),
+        subgraphs = @NamedSubgraph(name = "books", attributeNodes = @NamedAttributeNode("authors"))
+)
 public class Author extends FullAuditEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,6 +30,11 @@ public class Author extends FullAuditEntity {
     @Column(name = "birth_date")
     private LocalDate birthDate;
 
+    // the seeded rows start at version 0
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
     @ManyToMany
     @JoinTable(
             name = "author_books",
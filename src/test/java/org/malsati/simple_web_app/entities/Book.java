@@ -14,7 +14,7 @@ import java.util.List;
 @NoArgsConstructor
 @Data
 @Entity
-@Table(name = "Book")
+@Table(name = "Book", indexes = @Index(name = "book_title_idx", columnList = "title"))
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -40,6 +40,10 @@ public class Book {
     @Column(name = "no_pages")
     private int noPages;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "previous_volume_id")
+    private Book previousVolume;
+
     @ManyToMany(mappedBy = "books")
     @JsonBackReference
     private List<Author> authors = new ArrayList<>();
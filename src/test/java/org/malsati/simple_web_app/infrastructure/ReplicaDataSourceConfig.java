@@ -0,0 +1,37 @@
+package org.malsati.simple_web_app.infrastructure;
+
+import org.malsati.utilities.sql.CountingDataSource;
+import org.malsati.xrest.infrastructure.datasource.ReadReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * A primary pool and a replica pool behind a {@link ReadReplicaRoutingDataSource}.<br>
+ * In the tests, both pools open the database of spring.datasource (the embedded one when no url is set):
+ * the replica is always up to date, and the pools only tell which one was used.
+ */
+@Configuration
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public CountingDataSource primaryPool(DataSourceProperties dataSourceProperties) {
+        return new CountingDataSource(dataSourceProperties.initializeDataSourceBuilder().build());
+    }
+
+    @Bean
+    public CountingDataSource replicaPool(DataSourceProperties dataSourceProperties) {
+        return new CountingDataSource(dataSourceProperties.initializeDataSourceBuilder().build());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryPool") CountingDataSource primaryPool,
+                                 @Qualifier("replicaPool") CountingDataSource replicaPool) {
+        return ReadReplicaRoutingDataSource.of(primaryPool, replicaPool);
+    }
+}
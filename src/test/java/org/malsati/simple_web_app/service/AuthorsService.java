@@ -9,6 +9,7 @@ import org.malsati.simple_web_app.mapper.AuthorMapper;
 
 import org.malsati.xrest.dto.errors.AppError;
 import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.infrastructure.jpql.FetchPlan;
 import org.malsati.xrest.service.CrudServiceORM;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,6 +30,9 @@ public class AuthorsService extends CrudServiceORM<
             AuthorRepository authorRepository,
             AuthorMapper mapper) {
         super(authorRepository, mapper);
+        // the mapper walks the books of an author, then the authors of each book
+        getOneFetchPlan = FetchPlan.ofEntityGraph("Author.books");
+        getManyFetchPlan = FetchPlan.of("books.authors");
     }
 
     @Autowired
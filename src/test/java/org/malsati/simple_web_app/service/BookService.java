@@ -7,6 +7,7 @@ import org.malsati.simple_web_app.infrastructure.BookRepository;
 import org.malsati.simple_web_app.mapper.BookMapper;
 import org.malsati.xrest.dto.errors.AppError;
 import org.malsati.xrest.dto.errors.ErrorCode;
+import org.malsati.xrest.infrastructure.jpql.condition_builder.ConditionBudget;
 import org.malsati.xrest.service.CrudServiceORM;
 import org.malsati.simple_web_app.dto.book.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,6 +30,7 @@ public class BookService extends CrudServiceORM<
     public BookService(BookRepository bookRepository,
                        BookMapper mapper) {
         super(bookRepository, mapper);
+        conditionBudget = ConditionBudget.DEFAULT;
     }
 
     @Autowired
@@ -0,0 +1,28 @@
+package org.malsati.simple_web_app.service;
+
+import org.malsati.simple_web_app.dto.book.*;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.mapper.BookMapper;
+import org.malsati.xrest.service.CrudServiceSql;
+import org.springframework.stereotype.Service;
+
+/**
+ * The reads of {@link BookService} executed as native SQL, to compare both condition backends.
+ */
+@Service
+public class BookSqlService extends CrudServiceSql<
+        Book,
+        Long,
+        CreateOneBookInputDto,
+        CreateOneBookOutputDto,
+        UpdateOneBookInputDto,
+        DeleteOneBookOutputDto,
+        GetOneBookOutputDto
+        > {
+
+    public BookSqlService(BookRepository bookRepository,
+                          BookMapper mapper) {
+        super(bookRepository, mapper);
+    }
+}
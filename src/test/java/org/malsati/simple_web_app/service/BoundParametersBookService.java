@@ -0,0 +1,35 @@
+package org.malsati.simple_web_app.service;
+
+import jakarta.annotation.PostConstruct;
+import org.malsati.simple_web_app.dto.book.*;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.mapper.BookMapper;
+import org.malsati.xrest.service.CrudServiceORM;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link BookService} with the condition values bound as query parameters (xrest.condition.bind-parameters for this service only).
+ */
+@Service
+public class BoundParametersBookService extends CrudServiceORM<
+        Book,
+        Long,
+        CreateOneBookInputDto,
+        CreateOneBookOutputDto,
+        UpdateOneBookInputDto,
+        DeleteOneBookOutputDto,
+        GetOneBookOutputDto
+        > {
+
+    public BoundParametersBookService(BookRepository bookRepository,
+                                      BookMapper mapper) {
+        super(bookRepository, mapper);
+    }
+
+    // the xrest properties are injected after the constructor
+    @PostConstruct
+    void bindConditionParameters() {
+        isConditionBoundAsParameters = true;
+    }
+}
@@ -0,0 +1,34 @@
+package org.malsati.simple_web_app.service;
+
+import org.malsati.simple_web_app.dto.book.*;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.mapper.BookMapper;
+import org.malsati.xrest.service.CrudServiceORM;
+import org.malsati.xrest.utilities.cache.CountCache;
+import org.malsati.xrest.utilities.cache.DtoCache;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * {@link BookService} with getOneById read through a DTO cache, and the counts cached.
+ */
+@Service
+public class CachedBookService extends CrudServiceORM<
+        Book,
+        Long,
+        CreateOneBookInputDto,
+        CreateOneBookOutputDto,
+        UpdateOneBookInputDto,
+        DeleteOneBookOutputDto,
+        GetOneBookOutputDto
+        > {
+
+    public CachedBookService(BookRepository bookRepository,
+                             BookMapper mapper) {
+        super(bookRepository, mapper);
+        getOneByIdCache = DtoCache.bounded(100, 100, Duration.ofMinutes(10));
+        countCache = CountCache.exact(100);
+    }
+}
@@ -0,0 +1,30 @@
+package org.malsati.simple_web_app.service;
+
+import org.malsati.simple_web_app.dto.book.*;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.mapper.BookMapper;
+import org.malsati.xrest.service.CrudServiceORM;
+import org.malsati.xrest.service.UnindexedFilterPolicy;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link BookService} with the filters and sorts that can't use an index logged and reported.
+ */
+@Service
+public class IndexCheckedBookService extends CrudServiceORM<
+        Book,
+        Long,
+        CreateOneBookInputDto,
+        CreateOneBookOutputDto,
+        UpdateOneBookInputDto,
+        DeleteOneBookOutputDto,
+        GetOneBookOutputDto
+        > {
+
+    public IndexCheckedBookService(BookRepository bookRepository,
+                                   BookMapper mapper) {
+        super(bookRepository, mapper);
+        unindexedFilterPolicy = UnindexedFilterPolicy.WARN;
+    }
+}
@@ -0,0 +1,35 @@
+package org.malsati.simple_web_app.service;
+
+import jakarta.annotation.PostConstruct;
+import org.malsati.simple_web_app.dto.book.*;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.mapper.BookMapper;
+import org.malsati.xrest.service.CrudServiceORM;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link BookService} with the reads projected to the columns of the DTO (xrest.read.projection for this service only).
+ */
+@Service
+public class ProjectedBookService extends CrudServiceORM<
+        Book,
+        Long,
+        CreateOneBookInputDto,
+        CreateOneBookOutputDto,
+        UpdateOneBookInputDto,
+        DeleteOneBookOutputDto,
+        GetOneBookOutputDto
+        > {
+
+    public ProjectedBookService(BookRepository bookRepository,
+                                BookMapper mapper) {
+        super(bookRepository, mapper);
+    }
+
+    // the xrest properties are injected after the constructor
+    @PostConstruct
+    void enableProjection() {
+        isProjectionEnabled = true;
+    }
+}
@@ -0,0 +1,35 @@
+package org.malsati.simple_web_app.service;
+
+import jakarta.annotation.PostConstruct;
+import org.malsati.simple_web_app.dto.book.*;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.malsati.simple_web_app.mapper.BookMapper;
+import org.malsati.xrest.service.CrudServiceORM;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link BookService} exporting 3 rows per batch (xrest.export.fetch-size for this service only), so the 10 books of a library take 4 batches.
+ */
+@Service
+public class SmallBatchBookService extends CrudServiceORM<
+        Book,
+        Long,
+        CreateOneBookInputDto,
+        CreateOneBookOutputDto,
+        UpdateOneBookInputDto,
+        DeleteOneBookOutputDto,
+        GetOneBookOutputDto
+        > {
+
+    public SmallBatchBookService(BookRepository bookRepository,
+                                 BookMapper mapper) {
+        super(bookRepository, mapper);
+    }
+
+    // the xrest properties are injected after the constructor
+    @PostConstruct
+    void useSmallBatches() {
+        exportFetchSize = 3;
+    }
+}
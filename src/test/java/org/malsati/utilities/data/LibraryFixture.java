@@ -0,0 +1,159 @@
+package org.malsati.utilities.data;
+
+import org.malsati.simple_web_app.entities.Author;
+import org.malsati.simple_web_app.entities.Book;
+import org.malsati.simple_web_app.infrastructure.AuthorRepository;
+import org.malsati.simple_web_app.infrastructure.BookRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the authors and books of sql/seed.sql through the repositories, for a test class sharing the database with the others.<br>
+ * The ids are generated and the names of the authors are tagged by the test class (full_name is unique):
+ * the tests look the rows up by title and name, and restrict their conditions to the rows they created.
+ * <pre>{@code
+ * library = libraryFixture.create("T08");
+ * bookService.count(library.onBooks("{ \"op\": \">\", \"lhs\": \"noPages\", \"rhs\": 300 }"));
+ * bookService.getOneById(library.bookId("Misery"));
+ * }</pre>
+ */
+@Component
+public class LibraryFixture {
+
+    private record SeedAuthor(String fullName, LocalDate birthDate) {
+    }
+
+    private record SeedBook(String author, String title, LocalDate publishDate, String press, int noPages) {
+    }
+
+    private static final List<SeedAuthor> seedAuthors = List.of(
+            new SeedAuthor("J.K. Rowling", LocalDate.of(1965, 7, 31)),
+            new SeedAuthor("Stephen King", LocalDate.of(1947, 9, 21)),
+            new SeedAuthor("Haruki Murakami", LocalDate.of(1949, 1, 12)),
+            new SeedAuthor("Margaret Atwood", LocalDate.of(1939, 11, 18)),
+            new SeedAuthor("George R.R. Martin", LocalDate.of(1948, 9, 20))
+    );
+
+    private static final List<SeedBook> seedBooks = List.of(
+            new SeedBook("J.K. Rowling", "Harry Potter and the Philosopher's Stone", LocalDate.of(1997, 6, 26), "Bloomsbury Publishing", 223),
+            new SeedBook("J.K. Rowling", "Harry Potter and the Chamber of Secrets", LocalDate.of(1998, 7, 2), "Bloomsbury Publishing", 251),
+            new SeedBook("Stephen King", "The Shining", LocalDate.of(1977, 1, 28), "Doubleday", 447),
+            new SeedBook("Stephen King", "Misery", LocalDate.of(1987, 6, 8), "Viking Press", 310),
+            new SeedBook("Haruki Murakami", "Norwegian Wood", LocalDate.of(1987, 9, 4), "Kodansha", 296),
+            new SeedBook("Haruki Murakami", "1Q84", LocalDate.of(2009, 5, 29), "Shinchosha", 1157),
+            new SeedBook("Margaret Atwood", "The Handmaid's Tale", LocalDate.of(1985, 9, 24), "McClelland & Stewart", 311),
+            new SeedBook("Margaret Atwood", "Alias Grace", LocalDate.of(1996, 9, 3), "McClelland & Stewart", 560),
+            new SeedBook("George R.R. Martin", "A Game of Thrones", LocalDate.of(1996, 8, 6), "Bantam Spectra", 694),
+            new SeedBook("George R.R. Martin", "A Clash of Kings", LocalDate.of(1998, 11, 16), "Bantam Spectra", 768)
+    );
+
+    private final AuthorRepository authorRepository;
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public LibraryFixture(AuthorRepository authorRepository,
+                          BookRepository bookRepository,
+                          TransactionTemplate transactionTemplate) {
+        this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * The rows created by one test class. The ids are listed in the order of seed.sql.
+     */
+    public record Library(String tag, Map<String, Long> authorIdsByName, Map<String, Long> bookIdsByTitle) {
+
+        public Long authorId(String fullName) {
+            return authorIdsByName.get(fullName);
+        }
+
+        /**
+         * @param fullName the name of the author in seed.sql
+         * @return the name stored in the database
+         */
+        public String authorName(String fullName) {
+            return "%s (%s)".formatted(fullName, tag);
+        }
+
+        public Long bookId(String title) {
+            return bookIdsByTitle.get(title);
+        }
+
+        public List<Long> authorIds() {
+            return List.copyOf(authorIdsByName.values());
+        }
+
+        public List<Long> bookIds() {
+            return List.copyOf(bookIdsByTitle.values());
+        }
+
+        /**
+         * @return the condition restricted to the books of the library, or all of them if the condition is null
+         */
+        public String onBooks(String condition) {
+            return restrict(bookIds(), condition);
+        }
+
+        /**
+         * @return the condition restricted to the authors of the library, or all of them if the condition is null
+         */
+        public String onAuthors(String condition) {
+            return restrict(authorIds(), condition);
+        }
+
+        private static String restrict(List<Long> ids, String condition) {
+            String idCondition = """
+                    { "op": "in", "lhs": "id", "rhs": [%s] }
+                    """.formatted(ids.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+            if (condition == null) {
+                return idCondition;
+            }
+            return """
+                    {
+                      "op": "&&",
+                      "lhs": %s,
+                      "rhs": %s
+                    }
+                    """.formatted(idCondition, condition);
+        }
+    }
+
+    /**
+     * @param tag a tag unique to the test class, appended to the names of the authors
+     */
+    public Library create(String tag) {
+        return transactionTemplate.execute(status -> {
+            var authorIdsByName = new LinkedHashMap<String, Long>();
+            var booksByAuthor = new LinkedHashMap<String, List<Book>>();
+            var bookIdsByTitle = new LinkedHashMap<String, Long>();
+            for (var seedBook : seedBooks) {
+                var book = new Book();
+                book.setTitle(seedBook.title());
+                book.setPublishDate(seedBook.publishDate());
+                book.setEdition(1);
+                book.setVolume(1);
+                book.setPress(seedBook.press());
+                book.setNoPages(seedBook.noPages());
+                bookIdsByTitle.put(seedBook.title(), bookRepository.save(book).getId());
+                booksByAuthor.computeIfAbsent(seedBook.author(), author -> new ArrayList<>()).add(book);
+            }
+            for (var seedAuthor : seedAuthors) {
+                var author = new Author();
+                author.setFullName("%s (%s)".formatted(seedAuthor.fullName(), tag));
+                author.setBirthDate(seedAuthor.birthDate());
+                // the authors own the relation
+                author.setBooks(booksByAuthor.get(seedAuthor.fullName()));
+                authorIdsByName.put(seedAuthor.fullName(), authorRepository.save(author).getId());
+            }
+            return new Library(tag, authorIdsByName, bookIdsByTitle);
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package org.malsati.utilities.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the connections taken from a pool, so tests can tell which pool served an operation.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    public CountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        connectionCount.incrementAndGet();
+        return super.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        connectionCount.incrementAndGet();
+        return super.getConnection(username, password);
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public void reset() {
+        connectionCount.set(0);
+    }
+}
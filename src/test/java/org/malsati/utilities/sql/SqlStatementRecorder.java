@@ -0,0 +1,76 @@
+package org.malsati.utilities.sql;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Records the SQL statements that Hibernate prepares on the current thread, so tests can assert on the generated SQL.
+ * <pre>{@code
+ * sqlStatementRecorder.start();
+ * bookService.count(condition);
+ * List<String> statements = sqlStatementRecorder.stop();
+ * }</pre>
+ */
+@Component
+public class SqlStatementRecorder implements StatementInspector, HibernatePropertiesCustomizer {
+    private final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+    private final ThreadLocal<Consumer<String>> beforeStatement = new ThreadLocal<>();
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        var recorded = statements.get();
+        if (recorded != null) {
+            recorded.add(sql);
+        }
+        var action = beforeStatement.get();
+        if (action != null) {
+            action.accept(sql);
+        }
+        return sql;
+    }
+
+    public void start() {
+        statements.set(new ArrayList<>());
+    }
+
+    /**
+     * Also runs the action before every statement prepared on the current thread, until {@link #stop()},
+     * so a test can pause a read between two statements and write from another thread meanwhile.
+     */
+    public void start(Consumer<String> beforeStatement) {
+        start();
+        this.beforeStatement.set(beforeStatement);
+    }
+
+    /**
+     * @return the statements recorded since {@link #start()}
+     */
+    public List<String> stop() {
+        var recorded = statements.get();
+        statements.remove();
+        beforeStatement.remove();
+        return recorded != null ? recorded : List.of();
+    }
+
+    public static int countOccurrences(String sql, String token) {
+        var lowerSql = sql.toLowerCase();
+        var lowerToken = token.toLowerCase();
+        int count = 0;
+        for (int index = lowerSql.indexOf(lowerToken); index >= 0; index = lowerSql.indexOf(lowerToken, index + lowerToken.length())) {
+            count++;
+        }
+        return count;
+    }
+}